@@ -0,0 +1,153 @@
+package com.lynkai.service;
+
+import com.lynkai.model.EmbeddingCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a lossy codec costs in answers and buys in latency, by codec and shortlist
+ * size ({@code app.search.rerank-factor}; 1 means no re-ranking). The timed path is
+ * {@link VectorSearchService#search} without the database: scan the codes, shortlist
+ * {@code k * rerankFactor} rows, re-rank them on float32 copies held in memory.
+ * <p>
+ * Recall@k against an exact float32 scan is the same on every run, so it is computed
+ * once per trial and printed as a {@code recall@5} line next to the timings. Rows are
+ * drawn around a few hundred centres, as real embeddings cluster by topic; queries
+ * are perturbed rows, so each has true near neighbours to find.
+ * <p>
+ * Run with {@code mvn -P benchmark test-compile exec:exec -Djmh.include=EmbeddingCodec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class EmbeddingCodecBenchmark {
+
+    private static final int K = 5;
+    private static final int QUERIES = 200;
+    private static final int CENTRES = 200;
+
+    @Param({"10000"})
+    public int chunks;
+
+    @Param({"768"})
+    public int dimension;
+
+    @Param({"FLOAT32", "INT8", "BINARY"})
+    public EmbeddingCodec codec;
+
+    @Param({"1", "4", "10"})
+    public int rerankFactor;
+
+    private SimilarityKernel kernel;
+    private EmbeddingMatrix matrix;
+    private float[][] full;
+    private float[][] queries;
+    private float[] scores;
+    private double recall;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        kernel = new VectorSimilarityKernel();
+        SplittableRandom random = new SplittableRandom(42);
+
+        float[][] centres = new float[CENTRES][];
+        for (int i = 0; i < CENTRES; i++) {
+            centres[i] = randomUnitVector(random, null, 0);
+        }
+        matrix = new EmbeddingMatrix(codec, chunks, dimension);
+        full = new float[chunks][];
+        for (int row = 0; row < chunks; row++) {
+            full[row] = randomUnitVector(random, centres[random.nextInt(CENTRES)], 0.6);
+            matrix.add(row, row, codec.encode(full[row]));
+        }
+        queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = randomUnitVector(random, full[random.nextInt(chunks)], 0.3);
+        }
+        scores = new float[chunks];
+
+        int found = 0;
+        float[] exact = new float[chunks];
+        for (float[] query : queries) {
+            for (int row = 0; row < chunks; row++) {
+                exact[row] = Embeddings.dot(full[row], query);
+            }
+            int[] truth = VectorSearchService.topK(exact, K);
+            int[] answer = search(query);
+            for (int row : answer) {
+                for (int expected : truth) {
+                    if (row == expected) {
+                        found++;
+                        break;
+                    }
+                }
+            }
+        }
+        recall = (double) found / (QUERIES * K);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("recall@%d of %s with rerank factor %d against float32: %.3f over %d queries%n",
+                K, codec, rerankFactor, recall, QUERIES);
+    }
+
+    @Benchmark
+    public int[] query() {
+        float[] query = queries[next];
+        next = (next + 1) % QUERIES;
+        return search(query);
+    }
+
+    // Same steps as VectorSearchService.search, with the re-rank vectors in memory instead of the database
+    private int[] search(float[] query) {
+        float[] normalized = query.clone();
+        Embeddings.normalize(normalized);
+        matrix.scoreAll(kernel, normalized, scores);
+
+        boolean rerank = rerankFactor > 1 && codec.isLossy();
+        int[] top = VectorSearchService.topK(scores, rerank ? Math.min(chunks, K * rerankFactor) : K);
+        if (!rerank) {
+            return top;
+        }
+        for (int row : top) {
+            scores[row] = Embeddings.dot(full[row], normalized);
+        }
+        Integer[] ordered = Arrays.stream(top).boxed().toArray(Integer[]::new);
+        Arrays.sort(ordered, (a, b) -> Float.compare(scores[b], scores[a]));
+        int[] best = new int[K];
+        for (int i = 0; i < K; i++) {
+            best[i] = ordered[i];
+        }
+        return best;
+    }
+
+    // A unit vector: uniform on the sphere without a centre, otherwise the centre plus Gaussian noise of the given spread
+    private float[] randomUnitVector(SplittableRandom random, float[] centre, double spread) {
+        float[] vector = new float[dimension];
+        double scale = centre == null ? 1 : spread / Math.sqrt(dimension);
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) (random.nextGaussian() * scale) + (centre == null ? 0 : centre[i]);
+        }
+        Embeddings.normalize(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,88 @@
+package com.lynkai.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and allocation of counting a PDF's pages, by page count: the page-tree
+ * reader {@link PdfPageCounter} uses first, its budgeted PDFBox fallback, and a plain
+ * {@code PDDocument.load}, which is what the counter replaced. Allocation per call is
+ * the {@code gc.alloc.rate.norm} column of the gc profiler the benchmark profile enables.
+ * <p>
+ * Run with {@code mvn -P benchmark test-compile exec:exec -Djmh.include=PdfPageCount}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PdfPageCountBenchmark {
+
+    @Param({"10", "300", "3000"})
+    public int pages;
+
+    private Path file;
+    private PdfPageCounter counter;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("page-count-", ".pdf");
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page " + (i + 1) + " of a generated benchmark document.");
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+        counter = new PdfPageCounter(Long.MAX_VALUE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int pageTree() throws IOException {
+        return counter.countPages(file);
+    }
+
+    @Benchmark
+    public int budgetedPdfBox() throws IOException {
+        return counter.countWithPdfBox(file);
+    }
+
+    @Benchmark
+    public int pdDocumentLoad() throws IOException {
+        try (PDDocument document = PDDocument.load(file.toFile())) {
+            return document.getNumberOfPages();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.lynkai.service;
+
+import com.lynkai.model.EmbeddingCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one in-process query against a document's float32 embeddings, by chunk
+ * count and kernel: normalize the query, score every row, pick the top k. This is
+ * {@link VectorSearchService#search} without the database reads around it.
+ * <p>
+ * Run with {@code mvn -P benchmark test-compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorSearchBenchmark {
+
+    private static final int K = 5;
+
+    @Param({"1000", "10000", "100000"})
+    public int chunks;
+
+    @Param({"768"})
+    public int dimension;
+
+    @Param({"scalar", "simd"})
+    public String kernelName;
+
+    private SimilarityKernel kernel;
+    private EmbeddingMatrix matrix;
+    private float[] query;
+    private float[] scores;
+
+    @Setup
+    public void setUp() {
+        kernel = "simd".equals(kernelName) ? new VectorSimilarityKernel() : new ScalarSimilarityKernel();
+        SplittableRandom random = new SplittableRandom(42);
+        matrix = new EmbeddingMatrix(EmbeddingCodec.FLOAT32, chunks, dimension);
+        for (int row = 0; row < chunks; row++) {
+            float[] vector = randomUnitVector(random);
+            matrix.add(row, row, EmbeddingCodec.FLOAT32.encode(vector));
+        }
+        query = randomUnitVector(random);
+        scores = new float[chunks];
+    }
+
+    @Benchmark
+    public int[] query() {
+        float[] normalized = query.clone();
+        Embeddings.normalize(normalized);
+        matrix.scoreAll(kernel, normalized, scores);
+        return VectorSearchService.topK(scores, K);
+    }
+
+    private float[] randomUnitVector(SplittableRandom random) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        Embeddings.normalize(vector);
+        return vector;
+    }
+}
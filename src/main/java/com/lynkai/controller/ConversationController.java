@@ -1,14 +1,23 @@
 package com.lynkai.controller;
 
 import com.lynkai.dto.*;
+import com.lynkai.service.ChatStreamService;
 import com.lynkai.service.ConversationService;
+import com.lynkai.service.MessageGroupCommitService;
+import com.lynkai.service.MessageSearchService;
 import com.lynkai.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/conversations")
@@ -18,6 +27,9 @@ public class ConversationController {
 
     private final ConversationService conversationService;
     private final UserService userService;
+    private final MessageGroupCommitService groupCommitService;
+    private final ChatStreamService chatStreamService;
+    private final MessageSearchService searchService;
 
     /**
      * Create a new conversation
@@ -69,15 +81,35 @@ public class ConversationController {
 
     /**
      * Get all conversations for the authenticated user
-     * GET /api/conversations
+     * GET /api/conversations?sort=started|activity
      */
     @GetMapping
-    public ResponseEntity<List<ConversationDTO>> getUserConversations() {
+    public ResponseEntity<List<ConversationDTO>> getUserConversations(
+            @RequestParam(value = "sort", required = false, defaultValue = "started") String sort) {
+        if (!"started".equals(sort) && !"activity".equals(sort)) {
+            return ResponseEntity.badRequest().build();
+        }
         Long userId = userService.getCurrentUserId();
-        List<ConversationDTO> conversations = conversationService.getUserConversations(userId);
+        List<ConversationDTO> conversations = conversationService.getUserConversations(userId, "activity".equals(sort));
         return ResponseEntity.ok(conversations);
     }
 
+    /**
+     * Full-text search across the authenticated user's messages, best match first
+     * GET /api/conversations/search?q=...&limit=20
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<MessageSearchResult>> searchMessages(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        Long userId = userService.getCurrentUserId();
+        try {
+            return ResponseEntity.ok(searchService.search(userId, query, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Get all conversations for a document (for the authenticated user)
      * GET /api/conversations/by-document/{documentId}
@@ -107,28 +139,68 @@ public class ConversationController {
     /**
      * Add a message to a conversation
      * POST /api/conversations/messages
+     * With group commit enabled the response is sent once the message's batch has committed.
      */
     @PostMapping("/messages")
-    public ResponseEntity<MessageDTO> addMessage(@RequestBody SendMessageRequest request) {
-        try {
-            Long userId = userService.getCurrentUserId();
-            MessageDTO message = conversationService.addMessage(request, userId);
-            return ResponseEntity.status(HttpStatus.CREATED).body(message);
-        } catch (Exception e) {
+    public CompletableFuture<ResponseEntity<MessageDTO>> addMessage(@RequestBody SendMessageRequest request) {
+        Long userId = userService.getCurrentUserId();
+        if (!groupCommitService.isEnabled()) {
+            try {
+                MessageDTO message = conversationService.addMessage(request, userId);
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CREATED).body(message));
+            } catch (Exception e) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+            }
+        }
+        return groupCommitService.submit(request, userId).handle((message, error) -> {
+            if (error == null) {
+                return ResponseEntity.status(HttpStatus.CREATED).body(message);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof RejectedExecutionException) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+            }
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        });
+    }
+
+    /**
+     * Ask a question and stream the answer as Server-Sent Events:
+     * {@code question} (the stored question), {@code token}s as they arrive, then
+     * {@code done} (the stored answer) or {@code error}.
+     * POST /api/conversations/{id}/chat/stream
+     */
+    @PostMapping(value = "/{id}/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChat(@PathVariable Long id, @RequestBody ChatRequest request) {
+        Long userId = userService.getCurrentUserId();
+        try {
+            SseEmitter emitter = chatStreamService.ask(id, userId, request.getContent());
+            // Keep reverse proxies from buffering the stream
+            return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
     }
 
     /**
-     * Get all messages for a conversation
-     * GET /api/conversations/{id}/messages
+     * Get a page of messages for a conversation, oldest first
+     * GET /api/conversations/{id}/messages?limit=50&before={messageId}
      */
     @GetMapping("/{id}/messages")
-    public ResponseEntity<List<MessageDTO>> getConversationMessages(@PathVariable Long id) {
+    public ResponseEntity<CursorPage<MessageDTO>> getConversationMessages(
+            @PathVariable Long id,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "before", required = false) Long before) {
         try {
             Long userId = userService.getCurrentUserId();
-            List<MessageDTO> messages = conversationService.getConversationMessages(id, userId);
+            CursorPage<MessageDTO> messages = conversationService.getConversationMessages(id, userId, limit, before);
             return ResponseEntity.ok(messages);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
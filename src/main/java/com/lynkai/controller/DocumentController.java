@@ -1,24 +1,45 @@
 package com.lynkai.controller;
 
+import com.lynkai.dto.AdmissionStats;
+import com.lynkai.dto.ChunkEmbeddingDTO;
+import com.lynkai.dto.ChunkSearchRequest;
+import com.lynkai.dto.ChunkSearchResult;
+import com.lynkai.dto.CursorPage;
+import com.lynkai.dto.DocumentListItem;
 import com.lynkai.dto.DocumentResponse;
-import com.lynkai.model.Document;
+import com.lynkai.dto.DocumentStatusResponse;
+import com.lynkai.model.ProcessingStatus;
 import com.lynkai.model.User;
+import com.lynkai.service.AdmissionControlService;
+import com.lynkai.service.AdmissionRejectedException;
+import com.lynkai.service.BulkUploadService;
+import com.lynkai.service.DocumentDeletionService;
+import com.lynkai.service.DocumentExtractionService;
+import com.lynkai.service.DocumentPreviewService;
 import com.lynkai.service.DocumentService;
+import com.lynkai.service.DocumentStorageService;
+import com.lynkai.service.FileDownloadService;
+import com.lynkai.service.IndexNotReadyException;
 import com.lynkai.service.UserService;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import com.lynkai.service.UserVectorIndexService;
+import com.lynkai.service.VectorSearchService;
 import lombok.RequiredArgsConstructor;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.ZipException;
 
 @RestController
 @RequestMapping("/documents")
@@ -27,12 +48,22 @@ import java.util.Map;
 public class DocumentController {
 
     private final DocumentService documentService;
+    private final DocumentStorageService storageService;
+    private final FileDownloadService fileDownloadService;
     private final UserService userService;
+    private final VectorSearchService vectorSearchService;
+    private final UserVectorIndexService userVectorIndexService;
+    private final BulkUploadService bulkUploadService;
+    private final DocumentPreviewService previewService;
+    private final DocumentDeletionService deletionService;
+    private final AdmissionControlService admissionControlService;
+    private final DocumentExtractionService extractionService;
 
     /**
      * Upload a document for the authenticated user.
+     * Returns as soon as the file is stored; metadata extraction runs in the background.
      */
-    @PostMapping("/upload")
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<DocumentResponse> uploadDocument(
             @RequestParam("file") MultipartFile file,
             @RequestParam("title") String title
@@ -40,55 +71,246 @@ public class DocumentController {
         Long userId = userService.getCurrentUserId();
         User user = userService.getUserById(userId);
 
-        DocumentResponse response = documentService.saveDocument(file, title, user);
-        return ResponseEntity.ok(response);
+        try (AdmissionControlService.Permit permit = admissionControlService.admitUpload(userId, file.getSize())) {
+            DocumentResponse response = documentService.saveDocument(file, title, user);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        }
     }
 
     /**
-     * Get all documents uploaded by the current user.
+     * Upload a document sent as the raw request body.
+     * The body is streamed straight to disk without multipart buffering. Bodies over
+     * {@code app.upload.max-size} get 413, up front when Content-Length says so and
+     * otherwise as soon as the limit is crossed. A body without Content-Length is
+     * charged to admission control at that limit.
      */
-    @GetMapping
-    public ResponseEntity<List<DocumentResponse>> getUserDocuments() {
+    @PostMapping(value = "/upload", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<DocumentResponse> uploadDocumentStream(
+            HttpServletRequest request,
+            @RequestParam("title") String title,
+            @RequestParam(value = "filename", required = false) String filename
+    ) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length > storageService.getMaxUploadBytes()) {
+            throw new MaxUploadSizeExceededException(storageService.getMaxUploadBytes());
+        }
         Long userId = userService.getCurrentUserId();
         User user = userService.getUserById(userId);
 
-        List<DocumentResponse> documents = documentService.getUserDocuments(user);
-        return ResponseEntity.ok(documents);
+        try (AdmissionControlService.Permit permit = admissionControlService.admitUpload(
+                userId, length >= 0 ? length : storageService.getMaxUploadBytes())) {
+            DocumentResponse response = documentService.saveDocument(
+                    request.getInputStream(), filename != null ? filename : title, title, user);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        }
     }
 
-    @GetMapping("/download/{id}")
-    public ResponseEntity<Resource> downloadDocument(@PathVariable Long id) throws IOException {
-        DocumentResponse doc = documentService.getDocumentById(id);
-        if (doc == null) return ResponseEntity.notFound().build();
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Map<String, String>> handleTooLarge(MaxUploadSizeExceededException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(Map.of("error", "Uploads are limited to " + e.getMaxUploadSize() + " bytes."));
+    }
 
-        Path path = Paths.get(doc.getFilePath());
-        if (!Files.exists(path)) return ResponseEntity.notFound().build();
+    /**
+     * Uploads turned away by admission control get 429 and a hint when to retry.
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleAdmissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage()));
+    }
+
+    /**
+     * Upload and extraction load on this node: in-flight work, admissions, rejections and queue depth.
+     */
+    @GetMapping("/upload/stats")
+    public ResponseEntity<AdmissionStats> getUploadStats() {
+        AdmissionStats stats = admissionControlService.getStats();
+        stats.setExtractionQueueDepth(extractionService.getQueueDepth());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Upload many documents at once: any number of {@code files} parts, where zip
+     * archives are expanded. One JSON result per file is streamed back (NDJSON)
+     * as each finishes; extraction runs in the background as for single uploads.
+     * The request counts against the upload admission budget like a single upload.
+     */
+    @PostMapping(value = "/upload/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> uploadDocuments(
+            @RequestParam("files") List<MultipartFile> files
+    ) throws IOException {
+        Long userId = userService.getCurrentUserId();
+        User user = userService.getUserById(userId);
 
-        Resource resource = new UrlResource(path.toUri());
-        String contentType = Files.probeContentType(path);
-        if (contentType == null) contentType = "application/octet-stream";
+        try {
+            ResponseBodyEmitter emitter = bulkUploadService.upload(files, user);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+        } catch (IllegalArgumentException | ZipException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + doc.getTitle() + "\"")
-                .header(HttpHeaders.CONTENT_TYPE, contentType)
-                .body(resource);
+    /**
+     * List the current user's documents, newest first, one page at a time.
+     * Content is left out; fetch a single document for it. Pass {@code nextCursor}
+     * from the previous page as {@code cursor} to continue.
+     */
+    @GetMapping
+    public ResponseEntity<CursorPage<DocumentListItem>> getUserDocuments(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "status", required = false) ProcessingStatus status,
+            @RequestParam(value = "titlePrefix", required = false) String titlePrefix
+    ) {
+        Long userId = userService.getCurrentUserId();
+        try {
+            return ResponseEntity.ok(documentService.getUserDocuments(userId, cursor, limit, status, titlePrefix));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
-    @GetMapping("/uploads/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename) throws IOException {
-        Path file = Paths.get("uploads").resolve(filename).normalize();
-        if (!Files.exists(file)) {
+    /**
+     * Delete one of the current user's documents with its conversations, chunks and summaries.
+     * The stored file and index entries are removed in the background.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteDocument(@PathVariable Long id) {
+        Long userId = userService.getCurrentUserId();
+        if (!deletionService.deleteDocument(id, userId)) {
             return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Extraction status of one of the current user's documents.
+     */
+    @GetMapping("/{id}/status")
+    public ResponseEntity<DocumentStatusResponse> getDocumentStatus(@PathVariable Long id) {
+        Long userId = userService.getCurrentUserId();
+        DocumentStatusResponse status = documentService.getDocumentStatus(id, userId);
+        if (status == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Download a document. Supports conditional GET (ETag / Last-Modified) and byte ranges.
+     */
+    @GetMapping("/download/{id}")
+    public void downloadDocument(@PathVariable Long id,
+                                 HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        FileDownloadService.DownloadTarget target = documentService.getDownloadTarget(id);
+        if (target == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        fileDownloadService.send(target, request, response);
+    }
+
+    /**
+     * A downscaled image of one page (default the first) of a PDF document.
+     * Renders are cached, so repeat requests are plain file sends with ETag revalidation.
+     * Answers 503 with Retry-After when the renderers are saturated.
+     */
+    @GetMapping("/{id}/preview")
+    public void previewDocument(@PathVariable Long id,
+                                @RequestParam(value = "page", required = false) Integer page,
+                                @RequestParam(value = "width", required = false) Integer width,
+                                @RequestParam(value = "format", required = false) String format,
+                                HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        Long userId = userService.getCurrentUserId();
+        FileDownloadService.DownloadTarget source = documentService.isOwnedBy(id, userId)
+                ? documentService.getDownloadTarget(id)
+                : null;
+        if (source == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        DocumentPreviewService.Preview preview;
+        try {
+            preview = previewService.preview(source, id, page, width, format);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        } catch (RejectedExecutionException e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        fileDownloadService.send(new FileDownloadService.DownloadTarget(
+                preview.path(), preview.key(), preview.format().getMimeType(), preview.key()), request, response);
+    }
+
+    @GetMapping("/uploads/{filename:.+}")
+    public void serveFile(@PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        FileDownloadService.DownloadTarget target = storageService.getDownloadTarget(filename);
+        if (target == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        fileDownloadService.send(target, request, response);
+    }
+
+    /**
+     * Store embeddings computed for the document's chunks, addressed by chunk index.
+     */
+    @PutMapping("/{id}/embeddings")
+    public ResponseEntity<Map<String, Integer>> storeEmbeddings(
+            @PathVariable Long id,
+            @RequestBody List<ChunkEmbeddingDTO> embeddings
+    ) {
+        Long userId = userService.getCurrentUserId();
+        if (!documentService.isOwnedBy(id, userId)) return ResponseEntity.notFound().build();
+        try {
+            int updated = vectorSearchService.storeEmbeddings(id, embeddings);
+            return ResponseEntity.ok(Map.of("updated", updated));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 
-        Resource resource = new UrlResource(file.toUri());
-        String contentType = Files.probeContentType(file);
-        if (contentType == null) contentType = "application/octet-stream";
+    /**
+     * Top-k chunks of the document by cosine similarity to a query embedding.
+     */
+    @PostMapping("/{id}/search")
+    public ResponseEntity<List<ChunkSearchResult>> searchDocument(
+            @PathVariable Long id,
+            @RequestBody ChunkSearchRequest request
+    ) {
+        Long userId = userService.getCurrentUserId();
+        if (!documentService.isOwnedBy(id, userId)) return ResponseEntity.notFound().build();
+        try {
+            return ResponseEntity.ok(vectorSearchService.search(id, request.getVector(), request.getK()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                .header(HttpHeaders.CONTENT_TYPE, contentType)
-                .body(resource);
+    /**
+     * Top-k chunks across all of the current user's documents, from the user's HNSW index.
+     * Answers 503 with Retry-After while that index is being built.
+     */
+    @PostMapping("/search")
+    public ResponseEntity<List<ChunkSearchResult>> searchLibrary(@RequestBody ChunkSearchRequest request) {
+        Long userId = userService.getCurrentUserId();
+        try {
+            return ResponseEntity.ok(userVectorIndexService.search(userId, request.getVector(), request.getK()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IndexNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        }
     }
 
     @PatchMapping("/{id}/rag")
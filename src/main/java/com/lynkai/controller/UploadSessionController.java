@@ -0,0 +1,110 @@
+package com.lynkai.controller;
+
+import com.lynkai.dto.CreateUploadSessionRequest;
+import com.lynkai.dto.DocumentResponse;
+import com.lynkai.dto.UploadSessionResponse;
+import com.lynkai.model.User;
+import com.lynkai.service.AdmissionControlService;
+import com.lynkai.service.AdmissionRejectedException;
+import com.lynkai.service.UploadSessionService;
+import com.lynkai.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Resumable uploads: open a session, PUT its chunks (in any order, retrying freely),
+ * then complete it to create the document. GET a session to see which chunks are
+ * still missing after a dropped connection.
+ */
+@RestController
+@RequestMapping("/documents/upload-sessions")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class UploadSessionController {
+
+    static final String CHUNK_SHA256_HEADER = "X-Chunk-SHA256";
+
+    private final UploadSessionService uploadSessionService;
+    private final AdmissionControlService admissionControlService;
+    private final UserService userService;
+
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> createSession(@RequestBody CreateUploadSessionRequest request)
+            throws IOException {
+        Long userId = userService.getCurrentUserId();
+        User user = userService.getUserById(userId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(uploadSessionService.createSession(request, user));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionResponse> getSession(@PathVariable Long id) {
+        Long userId = userService.getCurrentUserId();
+        return ResponseEntity.of(uploadSessionService.getSession(id, userId));
+    }
+
+    /**
+     * Send chunk {@code number} as the raw request body. {@code offset} must be
+     * {@code number * chunkSize} and the {@value #CHUNK_SHA256_HEADER} header the hex SHA-256 of the body.
+     */
+    @PutMapping(value = "/{id}/chunks/{number}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionResponse> putChunk(@PathVariable Long id,
+                                                          @PathVariable int number,
+                                                          @RequestParam("offset") long offset,
+                                                          @RequestHeader(CHUNK_SHA256_HEADER) String sha256,
+                                                          HttpServletRequest request) throws IOException {
+        Long userId = userService.getCurrentUserId();
+        // A chunked body has no length; it is charged as a full chunk, the most it may carry
+        long length = request.getContentLengthLong();
+        try (AdmissionControlService.Permit permit = admissionControlService.admitUpload(
+                userId, length >= 0 ? length : uploadSessionService.getChunkSize())) {
+            return ResponseEntity.of(uploadSessionService.writeChunk(
+                    id, userId, number, offset, sha256, request.getInputStream()));
+        }
+    }
+
+    /**
+     * Assemble the received chunks into a document; extraction then runs in the background.
+     */
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<DocumentResponse> complete(@PathVariable Long id) throws IOException {
+        Long userId = userService.getCurrentUserId();
+        User user = userService.getUserById(userId);
+        return uploadSessionService.complete(id, user)
+                .map(document -> ResponseEntity.status(HttpStatus.ACCEPTED).body(document))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abort(@PathVariable Long id) {
+        Long userId = userService.getCurrentUserId();
+        if (!uploadSessionService.abort(id, userId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, String>> handleConflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleAdmissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage()));
+    }
+}
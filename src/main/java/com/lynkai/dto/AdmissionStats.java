@@ -0,0 +1,31 @@
+package com.lynkai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of upload and extraction admission on this node.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdmissionStats {
+    private StageStats upload;
+    private StageStats extraction;
+    private int extractionQueueDepth; // documents waiting for an extraction worker
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StageStats {
+        private int active;
+        private int activeUsers;
+        private long bytesInFlight;
+        private long admitted;
+        private long rejected;
+    }
+}
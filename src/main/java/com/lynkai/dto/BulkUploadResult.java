@@ -0,0 +1,18 @@
+package com.lynkai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of one file in a bulk upload, streamed back as soon as it is known.
+ * {@code index} is the file's position in the request (zip entries in archive order).
+ */
+@Data
+@Builder
+public class BulkUploadResult {
+    private int index;
+    private String filename;
+    private boolean success;
+    private DocumentResponse document;
+    private String error;
+}
@@ -0,0 +1,10 @@
+package com.lynkai.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatRequest {
+    private String content; // the user's question
+}
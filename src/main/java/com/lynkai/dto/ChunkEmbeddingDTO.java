@@ -0,0 +1,11 @@
+package com.lynkai.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkEmbeddingDTO {
+    private Integer chunkIndex;
+    private float[] embedding;
+}
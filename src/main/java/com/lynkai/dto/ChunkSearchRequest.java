@@ -0,0 +1,11 @@
+package com.lynkai.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkSearchRequest {
+    private float[] vector; // Query embedding, same model and dimension as the stored chunks
+    private Integer k;      // Number of results, defaults to 5
+}
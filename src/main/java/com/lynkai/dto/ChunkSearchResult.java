@@ -0,0 +1,15 @@
+package com.lynkai.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChunkSearchResult {
+    private Long chunkId;
+    private Long documentId;
+    private Integer chunkIndex;
+    private Float score; // Cosine similarity, -1 to 1
+    private String textContent;
+}
@@ -16,6 +16,9 @@ public class ConversationDTO {
     private String documentTitle;
     private Long userId;
     private LocalDateTime startedAt;
-    private List<MessageDTO> messages;
+    private List<MessageDTO> messages; // the most recent page, oldest first
+    private Boolean hasMoreMessages; // older messages exist; page with before = messages[0].id
     private Integer messageCount;
+    private LocalDateTime lastMessageAt;
+    private String lastMessagePreview;
 }
\ No newline at end of file
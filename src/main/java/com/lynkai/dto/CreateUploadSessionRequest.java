@@ -0,0 +1,13 @@
+package com.lynkai.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateUploadSessionRequest {
+    private String title;
+    private String filename;
+    private Long totalSize;
+    private String sha256; // optional; checked against the assembled file on completion
+}
@@ -0,0 +1,20 @@
+package com.lynkai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Pass {@code nextCursor} back to get the
+ * following page; it is null when {@code hasMore} is false.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,27 @@
+package com.lynkai.dto;
+
+import com.lynkai.model.DocumentFormat;
+import com.lynkai.model.ProcessingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A document in a listing: everything in {@link DocumentResponse} except the extracted content.
+ * Built directly by a JPQL constructor expression, so content is never read.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentListItem {
+    private Long id;
+    private String title;
+    private String filePath;
+    private Integer pageCount;
+    private Long fileSize;
+    private DocumentFormat format;
+    private ProcessingStatus processingStatus;
+    private LocalDateTime createdAt;
+}
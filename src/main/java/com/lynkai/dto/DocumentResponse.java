@@ -1,6 +1,8 @@
 package com.lynkai.dto;
 
 import com.lynkai.model.Document;
+import com.lynkai.model.DocumentFormat;
+import com.lynkai.model.ProcessingStatus;
 import lombok.Builder;
 import lombok.Data;
 
@@ -14,6 +16,9 @@ public class DocumentResponse {
     private String filePath;
     private String content;
     private Integer pageCount;
+    private Long fileSize;
+    private DocumentFormat format;
+    private ProcessingStatus processingStatus;
     private LocalDateTime createdAt;
 
     public static DocumentResponse fromEntity(Document document) {
@@ -24,6 +29,9 @@ public class DocumentResponse {
                 .content(document.getContent())
                 .createdAt(document.getCreatedAt())
                 .pageCount(document.getPageCount())
+                .fileSize(document.getFileSize())
+                .format(document.getFormat())
+                .processingStatus(document.getProcessingStatus())
                 .build();
     }
 }
@@ -0,0 +1,24 @@
+package com.lynkai.dto;
+
+import com.lynkai.model.Document;
+import com.lynkai.model.ProcessingStatus;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class DocumentStatusResponse {
+    private Long id;
+    private ProcessingStatus status;
+    private Integer pageCount;
+    private String error;
+
+    public static DocumentStatusResponse fromEntity(Document document) {
+        return DocumentStatusResponse.builder()
+                .id(document.getId())
+                .status(document.getProcessingStatus())
+                .pageCount(document.getPageCount())
+                .error(document.getProcessingError())
+                .build();
+    }
+}
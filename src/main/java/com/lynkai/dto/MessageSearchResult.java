@@ -0,0 +1,19 @@
+package com.lynkai.dto;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageSearchResult {
+    private Long messageId;
+    private Long conversationId;
+    private Long documentId;
+    private String documentTitle;
+    private String sender; // "user" or "ai"
+    private String snippet; // text around the first matching term
+    private LocalDateTime timestamp;
+    private Float score; // BM25; only comparable within one search
+}
@@ -0,0 +1,29 @@
+package com.lynkai.dto;
+
+import com.lynkai.model.UploadSessionStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * State of a resumable upload. Chunk {@code n} covers bytes
+ * {@code [n * chunkSize, min((n + 1) * chunkSize, totalSize))}; resume by sending
+ * the chunks missing from {@code receivedChunks}.
+ */
+@Data
+@Builder
+public class UploadSessionResponse {
+    private Long id;
+    private String title;
+    private String filename;
+    private Long totalSize;
+    private int chunkSize;
+    private int chunkCount;
+    private List<Integer> receivedChunks;
+    private long receivedBytes;
+    private UploadSessionStatus status;
+    private Long documentId;
+    private LocalDateTime expiresAt;
+}
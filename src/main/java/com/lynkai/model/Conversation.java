@@ -2,11 +2,15 @@ package com.lynkai.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "conversations")
+@Table(name = "conversations",
+        indexes = @Index(name = "idx_conversations_user_activity", columnList = "user_id, last_message_at"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversations_active",
+                columnNames = {"user_id", "document_id", "active_slot"}))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -14,6 +18,10 @@ import java.util.List;
 @Builder
 public class Conversation {
 
+    public static final int PREVIEW_LENGTH = 160;
+
+    public static final int ACTIVE_SLOT = 1;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -29,11 +37,49 @@ public class Conversation {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    // ACTIVE_SLOT on the conversation handed out by getOrCreateConversation, null on others.
+    // Unique per (user, document), so two concurrent creators cannot both insert one.
+    @Column(name = "active_slot")
+    private Integer activeSlot;
+
+    // Denormalized message stats, bumped with every message and reconciled by a periodic repair
+    @ColumnDefault("0")
+    @Column(name = "message_count", nullable = false)
+    private Integer messageCount;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    @Column(name = "last_message_preview", length = Conversation.PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Message> messages;
 
     @PrePersist
     public void onStart() {
         this.startedAt = LocalDateTime.now();
+        if (this.messageCount == null) {
+            this.messageCount = 0;
+        }
+    }
+
+    /**
+     * The start of a message as shown in conversation listings.
+     */
+    public static String previewOf(String content) {
+        if (content == null) {
+            return null;
+        }
+        String preview = content.strip().replaceAll("\\s+", " ");
+        if (preview.length() <= PREVIEW_LENGTH) {
+            return preview;
+        }
+        int end = PREVIEW_LENGTH;
+        // Do not cut a surrogate pair in half
+        if (Character.isHighSurrogate(preview.charAt(end - 1))) {
+            end--;
+        }
+        return preview.substring(0, end);
     }
 }
@@ -8,7 +8,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents",
+        indexes = @Index(name = "idx_documents_user_created", columnList = "user_id, created_at, id"))
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -29,7 +30,7 @@ public class Document {
     @Column(columnDefinition = "TEXT")
     private String content;
 
-    @Column(nullable = false)
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -42,9 +43,32 @@ public class Document {
     @Column(name = "page_count")
     private Integer pageCount;
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // SHA-256 of the stored file, hex encoded
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "format", length = 16)
+    private DocumentFormat format;
+
     @Column(name = "is_processed")
     private Boolean isProcessed = false;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "processing_status", length = 16)
+    private ProcessingStatus processingStatus; // metadata extraction job state
+
+    @Column(name = "processing_error", length = 500)
+    private String processingError;
+
+    @Column(name = "extraction_claimed_by", length = 64)
+    private String extractionClaimedBy; // node running the extraction job
+
+    @Column(name = "extraction_lease_at")
+    private LocalDateTime extractionLeaseAt; // last heartbeat of that node; stale leases are reclaimed
+
     @OneToMany(
             mappedBy = "document",
             cascade = CascadeType.ALL,
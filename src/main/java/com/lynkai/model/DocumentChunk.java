@@ -4,7 +4,8 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "document_chunks")
+@Table(name = "document_chunks",
+        indexes = @Index(name = "idx_document_chunks_document", columnList = "document_id, chunk_index"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -12,19 +13,30 @@ import lombok.*;
 @Builder
 public class DocumentChunk {
 
+    // Pooled sequence so chunk inserts can be JDBC-batched (IDENTITY forces one round-trip per row)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_chunks_seq")
+    @SequenceGenerator(name = "document_chunks_seq", sequenceName = "document_chunks_seq", allocationSize = 500)
     private Long id;
 
     @Column(columnDefinition = "TEXT", nullable = false)
     private String textContent; // The actual text of the chunk
 
-    @Column(nullable = false)
+    @Column(name = "chunk_index", nullable = false)
     private int chunkIndex; // The order of this chunk in the document
 
     @Lob
     @Column(name="embedding")
-    private byte[] embedding;
+    private byte[] embedding; // Encoded with embeddingCodec
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "embedding_codec", length = 16)
+    private EmbeddingCodec embeddingCodec; // null for rows written before codecs existed: FLOAT32
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "embedding_full")
+    private byte[] embeddingFull; // FLOAT32 copy kept for re-ranking when embedding is lossy
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "document_id", nullable = false)
@@ -0,0 +1,43 @@
+package com.lynkai.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cleanup still owed outside the database for a deleted document: its stored file,
+ * previews and vector index entries. Written in the transaction that deletes the
+ * document row and removed once the cleanup has succeeded.
+ */
+@Entity
+@Table(name = "document_cleanups", indexes = @Index(name = "idx_document_cleanups_created_at", columnList = "created_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DocumentCleanup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // null for files stored before hashing
+
+    @Column(name = "file_path")
+    private String filePath;
+
+    @Column(name = "file_released", nullable = false)
+    private boolean fileReleased; // the stored file's reference has been dropped
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,73 @@
+package com.lynkai.model;
+
+import java.util.Locale;
+
+public enum DocumentFormat {
+    PDF("application/pdf", ".pdf"),
+    DOCX("application/vnd.openxmlformats-officedocument.wordprocessingml.document", ".docx"),
+    DOC("application/msword", ".doc"),
+    UNKNOWN("application/octet-stream", "");
+
+    /**
+     * Number of leading bytes needed by {@link #sniff(byte[], int, String)}.
+     */
+    public static final int SNIFF_LENGTH = 8;
+
+    private static final byte[] PDF_MAGIC = {'%', 'P', 'D', 'F'};
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 0x03, 0x04};
+    private static final byte[] OLE2_MAGIC = {
+            (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1
+    };
+
+    private final String mimeType;
+    private final String extension;
+
+    DocumentFormat(String mimeType, String extension) {
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Detect the format from the first bytes of the file.
+     * Zip and OLE2 containers are shared by other Office formats, so the
+     * original filename is only used to rule those out.
+     */
+    public static DocumentFormat sniff(byte[] header, int length, String originalFilename) {
+        if (startsWith(header, length, PDF_MAGIC)) {
+            return PDF;
+        }
+
+        String name = originalFilename == null ? "" : originalFilename.toLowerCase(Locale.ROOT);
+        boolean hasExtension = name.lastIndexOf('.') > 0;
+
+        if (startsWith(header, length, ZIP_MAGIC)) {
+            return !hasExtension || name.endsWith(DOCX.extension) ? DOCX : UNKNOWN;
+        }
+
+        if (startsWith(header, length, OLE2_MAGIC)) {
+            return !hasExtension || name.endsWith(DOC.extension) ? DOC : UNKNOWN;
+        }
+
+        return UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
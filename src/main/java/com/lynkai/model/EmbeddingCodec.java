@@ -0,0 +1,159 @@
+package com.lynkai.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Byte encodings of an embedding vector, all little-endian.
+ * <ul>
+ *   <li>{@link #FLOAT32} - the components as float32, {@code 4 * dim} bytes.</li>
+ *   <li>{@link #INT8} - a float32 scale, then one signed byte per component
+ *       ({@code component ≈ byte * scale}), {@code 4 + dim} bytes.</li>
+ *   <li>{@link #BINARY} - an int32 dimension, then one sign bit per component packed
+ *       into 64-bit words, {@code 4 + 8 * ceil(dim / 64)} bytes. Compared by Hamming distance.</li>
+ * </ul>
+ * Vectors are expected to be unit length, so similarity is a dot product.
+ */
+public enum EmbeddingCodec {
+    FLOAT32 {
+        @Override
+        public int codeLength(int dimension) {
+            return dimension * Float.BYTES;
+        }
+
+        @Override
+        public int dimensionOf(byte[] code) {
+            if (code.length % Float.BYTES != 0) {
+                throw new IllegalArgumentException("FLOAT32 code length is not a multiple of 4 bytes");
+            }
+            return code.length / Float.BYTES;
+        }
+
+        @Override
+        public byte[] encode(float[] vector) {
+            ByteBuffer buffer = ByteBuffer.allocate(codeLength(vector.length)).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asFloatBuffer().put(vector);
+            return buffer.array();
+        }
+
+        @Override
+        public float[] decode(byte[] code) {
+            float[] vector = new float[dimensionOf(code)];
+            ByteBuffer.wrap(code).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+            return vector;
+        }
+    },
+
+    INT8 {
+        @Override
+        public int codeLength(int dimension) {
+            return Float.BYTES + dimension;
+        }
+
+        @Override
+        public int dimensionOf(byte[] code) {
+            return code.length - Float.BYTES;
+        }
+
+        @Override
+        public byte[] encode(float[] vector) {
+            float max = 0f;
+            for (float v : vector) {
+                max = Math.max(max, Math.abs(v));
+            }
+            float scale = max == 0f ? 1f : max / 127f;
+
+            ByteBuffer buffer = ByteBuffer.allocate(codeLength(vector.length)).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putFloat(scale);
+            for (float v : vector) {
+                buffer.put((byte) Math.round(v / scale));
+            }
+            return buffer.array();
+        }
+
+        @Override
+        public float[] decode(byte[] code) {
+            ByteBuffer buffer = ByteBuffer.wrap(code).order(ByteOrder.LITTLE_ENDIAN);
+            float scale = buffer.getFloat();
+            float[] vector = new float[dimensionOf(code)];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = buffer.get() * scale;
+            }
+            return vector;
+        }
+    },
+
+    BINARY {
+        @Override
+        public int codeLength(int dimension) {
+            return Integer.BYTES + wordCount(dimension) * Long.BYTES;
+        }
+
+        @Override
+        public int dimensionOf(byte[] code) {
+            return ByteBuffer.wrap(code).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        }
+
+        @Override
+        public byte[] encode(float[] vector) {
+            ByteBuffer buffer = ByteBuffer.allocate(codeLength(vector.length)).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(vector.length);
+            for (long word : signBits(vector)) {
+                buffer.putLong(word);
+            }
+            return buffer.array();
+        }
+
+        // Only the signs survive; each component decodes to ±1/sqrt(dim) so the result is unit length
+        @Override
+        public float[] decode(byte[] code) {
+            ByteBuffer buffer = ByteBuffer.wrap(code).order(ByteOrder.LITTLE_ENDIAN);
+            int dimension = buffer.getInt();
+            float magnitude = (float) (1.0 / Math.sqrt(dimension));
+            float[] vector = new float[dimension];
+            long word = 0;
+            for (int i = 0; i < dimension; i++) {
+                if (i % 64 == 0) {
+                    word = buffer.getLong();
+                }
+                vector[i] = (word >>> (i % 64) & 1L) != 0 ? magnitude : -magnitude;
+            }
+            return vector;
+        }
+    };
+
+    /**
+     * Size in bytes of the code of a {@code dimension}-component vector.
+     */
+    public abstract int codeLength(int dimension);
+
+    public abstract int dimensionOf(byte[] code);
+
+    public abstract byte[] encode(float[] vector);
+
+    /**
+     * The vector a code stands for; exact for {@link #FLOAT32}, approximate otherwise.
+     */
+    public abstract float[] decode(byte[] code);
+
+    public boolean isLossy() {
+        return this != FLOAT32;
+    }
+
+    /**
+     * One bit per component, set when the component is positive.
+     */
+    public static long[] signBits(float[] vector) {
+        long[] words = new long[wordCount(vector.length)];
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] > 0) {
+                words[i / 64] |= 1L << (i % 64);
+            }
+        }
+        return words;
+    }
+
+    private static int wordCount(int dimension) {
+        return (dimension + 63) / 64;
+    }
+}
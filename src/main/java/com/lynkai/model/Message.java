@@ -5,7 +5,8 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages",
+        indexes = @Index(name = "idx_messages_conversation_time", columnList = "conversation_id, timestamp, id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,9 @@
+package com.lynkai.model;
+
+public enum ProcessingStatus {
+    PENDING,
+    EXTRACTING,
+    DONE,
+    FAILED,
+    DELETING // rows are being purged; the document is no longer visible to its owner
+}
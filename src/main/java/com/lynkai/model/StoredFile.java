@@ -0,0 +1,53 @@
+package com.lynkai.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A file in the content-addressed store, shared by every document with the same bytes.
+ */
+@Entity
+@Table(name = "stored_files")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredFile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private String path;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private DocumentFormat format;
+
+    @Column(nullable = false)
+    private int refCount; // number of documents pointing at this file
+
+    @Column(name = "page_count")
+    private Integer pageCount; // cached extraction result, null until extracted
+
+    @Column(name = "text_length")
+    private Long textLength; // length of the extracted text, null until its pages are stored
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+}
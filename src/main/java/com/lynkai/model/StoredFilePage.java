@@ -0,0 +1,35 @@
+package com.lynkai.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Extracted text of one page of a stored file, shared by all documents with the same bytes.
+ */
+@Entity
+@Table(name = "stored_file_pages",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"stored_file_id", "page_number"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredFilePage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "stored_file_id", nullable = false)
+    private StoredFile storedFile;
+
+    @Column(name = "page_number", nullable = false)
+    private int pageNumber; // 1-based
+
+    @Column(name = "char_offset", nullable = false)
+    private long charOffset; // where this page starts in the full document text
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String text;
+}
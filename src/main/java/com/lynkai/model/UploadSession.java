@@ -0,0 +1,68 @@
+package com.lynkai.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resumable upload: the file is assembled chunk by chunk in {@code tempPath}
+ * and becomes a document when the session is completed.
+ */
+@Entity
+@Table(name = "upload_sessions",
+        indexes = @Index(name = "idx_upload_sessions_expires", columnList = "expires_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSession {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private int chunkSize;
+
+    @Column(name = "chunk_count", nullable = false)
+    private int chunkCount;
+
+    @Column(name = "expected_sha256", length = 64)
+    private String expectedSha256; // optional whole-file hash checked on completion
+
+    @Column(name = "temp_path", nullable = false)
+    private String tempPath;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private UploadSessionStatus status;
+
+    @Column(name = "document_id")
+    private Long documentId; // set once completed
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+}
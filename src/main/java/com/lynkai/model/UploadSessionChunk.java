@@ -0,0 +1,37 @@
+package com.lynkai.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * A chunk of an upload session that has been written and verified.
+ * The unique key makes a retried or duplicated chunk PUT detectable.
+ */
+@Entity
+@Table(name = "upload_session_chunks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_upload_session_chunks",
+                columnNames = {"session_id", "chunk_number"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSessionChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "session_id", nullable = false)
+    private UploadSession session;
+
+    @Column(name = "chunk_number", nullable = false)
+    private int chunkNumber;
+
+    @Column(nullable = false)
+    private int size;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+}
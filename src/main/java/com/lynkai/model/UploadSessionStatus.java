@@ -0,0 +1,7 @@
+package com.lynkai.model;
+
+public enum UploadSessionStatus {
+    OPEN,       // accepting chunks
+    COMPLETING, // all chunks in; the file is being hashed and registered
+    COMPLETED   // the document exists; kept until expiry so clients can read the result
+}
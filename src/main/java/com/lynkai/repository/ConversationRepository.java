@@ -1,11 +1,15 @@
 package com.lynkai.repository;
 
 import com.lynkai.model.Conversation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,10 +25,116 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
     // Find conversations by user and document
     List<Conversation> findByUserIdAndDocumentIdOrderByStartedAtDesc(Long userId, Long documentId);
 
-    // Find the most recent conversation for a user and document
-    @Query("SELECT c FROM Conversation c WHERE c.user.id = :userId AND c.document.id = :documentId ORDER BY c.startedAt DESC")
-    Optional<Conversation> findLatestByUserAndDocument(@Param("userId") Long userId, @Param("documentId") Long documentId);
+    // Find the most recent conversation for a user and document (LIMIT 1, so duplicates cannot make it throw)
+    Optional<Conversation> findFirstByUserIdAndDocumentIdOrderByStartedAtDescIdDesc(Long userId, Long documentId);
 
     // Check if conversation exists
     boolean existsByIdAndUserId(Long conversationId, Long userId);
+
+    // What a chat turn needs to know about the conversation and its document; empty unless the user owns it
+    interface ChatTargetView {
+        Long getDocumentId();
+
+        Integer getRagDocumentId();
+
+        Integer getMessageCount();
+
+        LocalDateTime getLastMessageAt();
+    }
+
+    @Query("SELECT d.id AS documentId, d.ragDocumentId AS ragDocumentId, " +
+            "c.messageCount AS messageCount, c.lastMessageAt AS lastMessageAt " +
+            "FROM Conversation c JOIN c.document d WHERE c.id = :id AND c.user.id = :userId")
+    Optional<ChatTargetView> findChatTarget(@Param("id") Long conversationId, @Param("userId") Long userId);
+
+    // A conversation as listed: no entities, no lazy associations, message stats read from the row itself
+    interface ConversationSummaryView {
+        Long getId();
+
+        Long getDocumentId();
+
+        String getDocumentTitle();
+
+        Long getUserId();
+
+        LocalDateTime getStartedAt();
+
+        Integer getMessageCount();
+
+        LocalDateTime getLastMessageAt();
+
+        String getLastMessagePreview();
+    }
+
+    String SUMMARY_SELECT = "SELECT c.id AS id, d.id AS documentId, d.title AS documentTitle, " +
+            "c.user.id AS userId, c.startedAt AS startedAt, c.messageCount AS messageCount, " +
+            "c.lastMessageAt AS lastMessageAt, c.lastMessagePreview AS lastMessagePreview " +
+            "FROM Conversation c JOIN c.document d ";
+
+    // All of a user's conversations in one round trip
+    @Query(SUMMARY_SELECT + "WHERE c.user.id = :userId ORDER BY c.startedAt DESC")
+    List<ConversationSummaryView> findSummariesByUserId(@Param("userId") Long userId);
+
+    // Most recently active first, walking idx_conversations_user_activity; conversations without messages come last
+    @Query(SUMMARY_SELECT + "WHERE c.user.id = :userId ORDER BY c.lastMessageAt DESC, c.id DESC")
+    List<ConversationSummaryView> findSummariesByUserIdOrderByActivity(@Param("userId") Long userId);
+
+    @Query(SUMMARY_SELECT + "WHERE c.user.id = :userId AND d.id = :documentId ORDER BY c.startedAt DESC")
+    List<ConversationSummaryView> findSummariesByUserIdAndDocumentId(@Param("userId") Long userId,
+                                                                     @Param("documentId") Long documentId);
+
+    // Count a new message and move the activity marker forward in one statement, without reading the row.
+    // The preview is assigned first: MySQL evaluates SET clauses left to right against already-updated values.
+    @Modifying
+    @Query("UPDATE Conversation c SET c.messageCount = c.messageCount + 1, " +
+            "c.lastMessagePreview = CASE WHEN c.lastMessageAt IS NULL OR c.lastMessageAt <= :timestamp " +
+            "THEN :preview ELSE c.lastMessagePreview END, " +
+            "c.lastMessageAt = CASE WHEN c.lastMessageAt IS NULL OR c.lastMessageAt <= :timestamp " +
+            "THEN :timestamp ELSE c.lastMessageAt END " +
+            "WHERE c.id = :id")
+    int recordMessage(@Param("id") Long id, @Param("timestamp") LocalDateTime timestamp,
+                      @Param("preview") String preview);
+
+    // Stored stats next to the ones the messages table actually implies, for the repair job
+    interface ConversationStatsView {
+        Long getId();
+
+        Integer getMessageCount();
+
+        LocalDateTime getLastMessageAt();
+
+        long getActualCount();
+
+        LocalDateTime getActualLastMessageAt();
+    }
+
+    @Query("SELECT c.id AS id, c.messageCount AS messageCount, c.lastMessageAt AS lastMessageAt, " +
+            "COUNT(m.id) AS actualCount, MAX(m.timestamp) AS actualLastMessageAt " +
+            "FROM Conversation c LEFT JOIN c.messages m WHERE c.id > :afterId " +
+            "GROUP BY c.id, c.messageCount, c.lastMessageAt ORDER BY c.id")
+    List<ConversationStatsView> findStatsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Recompute the stats from the messages in the statement itself, so messages written since they
+    // were checked are counted. The preview, built by the caller from the newest message at
+    // previewAt, is only taken while that message is still the newest; the empty case clears it.
+    @Modifying
+    @Transactional
+    @Query("UPDATE Conversation c SET " +
+            "c.messageCount = (SELECT CAST(COUNT(m.id) AS Integer) FROM Message m WHERE m.conversation.id = :id), " +
+            "c.lastMessagePreview = CASE " +
+            "WHEN (SELECT MAX(m.timestamp) FROM Message m WHERE m.conversation.id = :id) IS NULL THEN NULL " +
+            "WHEN (SELECT MAX(m.timestamp) FROM Message m WHERE m.conversation.id = :id) = :previewAt THEN :preview " +
+            "ELSE c.lastMessagePreview END, " +
+            "c.lastMessageAt = (SELECT MAX(m.timestamp) FROM Message m WHERE m.conversation.id = :id) " +
+            "WHERE c.id = :id")
+    int repairStats(@Param("id") Long id, @Param("previewAt") LocalDateTime previewAt,
+                    @Param("preview") String preview);
+
+    @Query("SELECT c.id FROM Conversation c WHERE c.document.id = :documentId")
+    List<Long> findIdsByDocumentId(@Param("documentId") Long documentId, Pageable pageable);
+
+    // Set-based; the caller deletes the messages first
+    @Modifying
+    @Query("DELETE FROM Conversation c WHERE c.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") List<Long> ids);
 }
\ No newline at end of file
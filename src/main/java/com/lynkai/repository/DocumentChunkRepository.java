@@ -0,0 +1,119 @@
+package com.lynkai.repository;
+
+import com.lynkai.model.DocumentChunk;
+import com.lynkai.model.EmbeddingCodec;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Long> {
+
+    // Just what the similarity search needs; the chunk text stays in the database
+    interface ChunkEmbeddingView {
+        Long getId();
+
+        int getChunkIndex();
+
+        Long getDocumentId();
+
+        EmbeddingCodec getEmbeddingCodec();
+
+        byte[] getEmbedding();
+    }
+
+    interface ChunkVectorView {
+        Long getId();
+
+        EmbeddingCodec getEmbeddingCodec();
+
+        byte[] getEmbedding();
+
+        byte[] getEmbeddingFull();
+    }
+
+    interface OwnedChunkVectorView extends ChunkVectorView {
+        Long getDocumentId();
+    }
+
+    interface ChunkTextView {
+        Long getId();
+
+        int getChunkIndex();
+
+        String getTextContent();
+    }
+
+    interface ChunkKeyView {
+        Long getId();
+
+        int getChunkIndex();
+    }
+
+    List<DocumentChunk> findByDocumentIdOrderByChunkIndexAsc(Long documentId);
+
+    long countByDocumentId(Long documentId);
+
+    long countByDocumentIdAndEmbeddingIsNotNull(Long documentId);
+
+    // One keyset page of a document's embeddings in chunk order, so that only a page of rows is ever held at once;
+    // a fetch-size hint would not do on MySQL, where Connector/J reads the whole result unless useCursorFetch is set
+    @Query("SELECT c.id AS id, c.chunkIndex AS chunkIndex, c.document.id AS documentId, " +
+            "c.embeddingCodec AS embeddingCodec, c.embedding AS embedding " +
+            "FROM DocumentChunk c WHERE c.document.id = :documentId AND c.embedding IS NOT NULL " +
+            "AND c.chunkIndex > :afterChunkIndex ORDER BY c.chunkIndex")
+    List<ChunkEmbeddingView> findEmbeddingsPage(@Param("documentId") Long documentId,
+                                                @Param("afterChunkIndex") int afterChunkIndex,
+                                                Pageable pageable);
+
+    // One keyset page of a user's vectors in id order, for building the library index a page at a time
+    @Query("SELECT c.id AS id, c.document.id AS documentId, c.embeddingCodec AS embeddingCodec, " +
+            "c.embedding AS embedding, c.embeddingFull AS embeddingFull " +
+            "FROM DocumentChunk c WHERE c.document.user.id = :userId AND c.embedding IS NOT NULL " +
+            "AND c.id > :afterId ORDER BY c.id")
+    List<OwnedChunkVectorView> findVectorsPageByUserId(@Param("userId") Long userId,
+                                                       @Param("afterId") long afterId,
+                                                       Pageable pageable);
+
+    // Full-precision vectors of a search shortlist
+    @Query("SELECT c.id AS id, c.embeddingCodec AS embeddingCodec, c.embedding AS embedding, " +
+            "c.embeddingFull AS embeddingFull FROM DocumentChunk c WHERE c.id IN :ids")
+    List<ChunkVectorView> findVectorsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Text of search hits, without dragging the embedding blobs along
+    @Query("SELECT c.id AS id, c.chunkIndex AS chunkIndex, c.textContent AS textContent " +
+            "FROM DocumentChunk c WHERE c.id IN :ids")
+    List<ChunkTextView> findTextsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT c.id AS id, c.chunkIndex AS chunkIndex FROM DocumentChunk c " +
+            "WHERE c.document.id = :documentId AND c.chunkIndex IN :chunkIndexes")
+    List<ChunkKeyView> findKeysByDocumentIdAndChunkIndexIn(@Param("documentId") Long documentId,
+                                                          @Param("chunkIndexes") Collection<Integer> chunkIndexes);
+
+    @Modifying
+    @Query("UPDATE DocumentChunk c SET c.embedding = :embedding, c.embeddingCodec = :codec, " +
+            "c.embeddingFull = :embeddingFull WHERE c.document.id = :documentId AND c.chunkIndex = :chunkIndex")
+    int updateEmbedding(@Param("documentId") Long documentId,
+                        @Param("chunkIndex") int chunkIndex,
+                        @Param("codec") EmbeddingCodec codec,
+                        @Param("embedding") byte[] embedding,
+                        @Param("embeddingFull") byte[] embeddingFull);
+
+    // Set-based delete; does not load the chunks into the persistence context
+    @Modifying
+    @Query("DELETE FROM DocumentChunk c WHERE c.document.id = :documentId")
+    int deleteAllByDocumentId(@Param("documentId") Long documentId);
+
+    @Query("SELECT c.id FROM DocumentChunk c WHERE c.document.id = :documentId")
+    List<Long> findIdsByDocumentId(@Param("documentId") Long documentId, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM DocumentChunk c WHERE c.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,24 @@
+package com.lynkai.repository;
+
+import com.lynkai.model.DocumentCleanup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DocumentCleanupRepository extends JpaRepository<DocumentCleanup, Long> {
+
+    List<DocumentCleanup> findByCreatedAtBefore(LocalDateTime cutoff);
+
+    // Claim the file reference for release; returns 0 if it was already released
+    @Modifying
+    @Transactional
+    @Query("UPDATE DocumentCleanup c SET c.fileReleased = true WHERE c.id = :id AND c.fileReleased = false")
+    int markFileReleased(@Param("id") Long id);
+}
@@ -1,15 +1,125 @@
 package com.lynkai.repository;
 
+import com.lynkai.dto.DocumentListItem;
 import com.lynkai.model.Document;
+import com.lynkai.model.ProcessingStatus;
 import com.lynkai.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
     List<Document> findAllByUser(User user);
 
     List<Document> findAllByUserId(Long userId);
+
+    String LIST_ITEM = "SELECT new com.lynkai.dto.DocumentListItem(d.id, d.title, d.filePath, d.pageCount, " +
+            "d.fileSize, d.format, d.processingStatus, d.createdAt) FROM Document d ";
+
+    // Optional filters: null status / titlePrefix match everything; titlePrefix is a LIKE pattern escaped with '!'.
+    // Documents being deleted are never listed.
+    String LIST_FILTERS = "WHERE d.user.id = :userId " +
+            "AND (d.processingStatus IS NULL OR d.processingStatus <> com.lynkai.model.ProcessingStatus.DELETING) " +
+            "AND (:status IS NULL OR d.processingStatus = :status) " +
+            "AND (:titlePrefix IS NULL OR d.title LIKE :titlePrefix ESCAPE '!') ";
+
+    String LIST_ORDER = "ORDER BY d.createdAt DESC, d.id DESC";
+
+    // First page of a user's documents, newest first; the page size comes from the Pageable
+    @Query(LIST_ITEM + LIST_FILTERS + LIST_ORDER)
+    List<DocumentListItem> findListFirstPage(@Param("userId") Long userId,
+                                             @Param("status") ProcessingStatus status,
+                                             @Param("titlePrefix") String titlePrefix,
+                                             Pageable pageable);
+
+    // Keyset continuation: rows strictly after (createdAt, id) in listing order
+    @Query(LIST_ITEM + LIST_FILTERS +
+            "AND (d.createdAt < :createdAt OR (d.createdAt = :createdAt AND d.id < :id)) " + LIST_ORDER)
+    List<DocumentListItem> findListPageAfter(@Param("userId") Long userId,
+                                             @Param("status") ProcessingStatus status,
+                                             @Param("titlePrefix") String titlePrefix,
+                                             @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id,
+                                             Pageable pageable);
+
+    @Query("SELECT d.user.id FROM Document d WHERE d.id = :id")
+    Optional<Long> findOwnerIdById(@Param("id") Long id);
+
+    // What is left to clean up once a document's rows are gone
+    interface DocumentFileView {
+        Long getUserId();
+
+        String getContentHash();
+
+        String getFilePath();
+    }
+
+    @Query("SELECT d.user.id AS userId, d.contentHash AS contentHash, d.filePath AS filePath " +
+            "FROM Document d WHERE d.id = :id")
+    Optional<DocumentFileView> findFileViewById(@Param("id") Long id);
+
+    // Hide a document from its owner ahead of deletion; returns 0 if it is not theirs or already going
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.processingStatus = com.lynkai.model.ProcessingStatus.DELETING " +
+            "WHERE d.id = :id AND d.user.id = :userId AND (d.processingStatus IS NULL " +
+            "OR d.processingStatus <> com.lynkai.model.ProcessingStatus.DELETING)")
+    int markDeleting(@Param("id") Long id, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM Document d WHERE d.id = :id")
+    int purgeById(@Param("id") Long id);
+
+    @Query("SELECT d.id FROM Document d WHERE d.processingStatus = :status ORDER BY d.id")
+    List<Long> findIdsByProcessingStatus(@Param("status") ProcessingStatus status);
+
+    // Atomically move a PENDING document to EXTRACTING under a lease held by this node; returns 0 if someone else claimed it
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.processingStatus = com.lynkai.model.ProcessingStatus.EXTRACTING, " +
+            "d.extractionClaimedBy = :node, d.extractionLeaseAt = :now " +
+            "WHERE d.id = :id AND d.processingStatus = com.lynkai.model.ProcessingStatus.PENDING")
+    int claimForExtraction(@Param("id") Long id, @Param("node") String node, @Param("now") LocalDateTime now);
+
+    // Heartbeat for the jobs a node is still running
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.extractionLeaseAt = :now WHERE d.id IN :ids AND d.extractionClaimedBy = :node " +
+            "AND d.processingStatus = com.lynkai.model.ProcessingStatus.EXTRACTING")
+    int renewExtractionLeases(@Param("ids") Collection<Long> ids, @Param("node") String node,
+                              @Param("now") LocalDateTime now);
+
+    // Put back jobs whose node stopped renewing their lease, or that this node owned before it restarted
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.processingStatus = com.lynkai.model.ProcessingStatus.PENDING, " +
+            "d.extractionClaimedBy = null, d.extractionLeaseAt = null " +
+            "WHERE d.processingStatus = com.lynkai.model.ProcessingStatus.EXTRACTING " +
+            "AND (d.extractionLeaseAt IS NULL OR d.extractionLeaseAt < :staleBefore OR d.extractionClaimedBy = :node)")
+    int releaseInterruptedExtractions(@Param("staleBefore") LocalDateTime staleBefore, @Param("node") String node);
+
+    @Modifying
+    @Transactional
+    // Extraction results only land on a document still claimed for extraction, never on one being deleted
+    @Query("UPDATE Document d SET d.pageCount = :pageCount, d.content = :content, d.processingError = null, " +
+            "d.processingStatus = com.lynkai.model.ProcessingStatus.DONE " +
+            "WHERE d.id = :id AND d.processingStatus = com.lynkai.model.ProcessingStatus.EXTRACTING")
+    int completeExtraction(@Param("id") Long id, @Param("pageCount") Integer pageCount, @Param("content") String content);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.processingError = :error, " +
+            "d.processingStatus = com.lynkai.model.ProcessingStatus.FAILED " +
+            "WHERE d.id = :id AND d.processingStatus = com.lynkai.model.ProcessingStatus.EXTRACTING")
+    int failExtraction(@Param("id") Long id, @Param("error") String error);
 }
@@ -3,6 +3,7 @@ package com.lynkai.repository;
 import com.lynkai.dto.DocumentSummaryDTO;
 import com.lynkai.model.DocumentSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -30,6 +31,11 @@ public interface DocumentSummaryRepository extends JpaRepository<DocumentSummary
     // Delete all summaries for a document
     void deleteByDocumentId(Long documentId);
 
+    // Same, as one statement instead of loading each summary first
+    @Modifying
+    @Query("DELETE FROM DocumentSummary s WHERE s.documentId = :documentId")
+    int purgeByDocumentId(@Param("documentId") Long documentId);
+
     // Find summaries by style
     List<DocumentSummary> findBySummaryStyle(String summaryStyle);
 
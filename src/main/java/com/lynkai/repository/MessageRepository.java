@@ -1,10 +1,21 @@
 package com.lynkai.repository;
 
+import com.lynkai.dto.MessageDTO;
 import com.lynkai.model.Message;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
@@ -20,4 +31,72 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     // Delete all messages for a conversation
     void deleteByConversationId(Long conversationId);
+
+    String PAGE_SELECT = "SELECT new com.lynkai.dto.MessageDTO(m.id, m.sender, m.content, m.timestamp, m.conversation.id) " +
+            "FROM Message m WHERE m.conversation.id = :conversationId ";
+
+    String PAGE_ORDER = "ORDER BY m.timestamp DESC, m.id DESC";
+
+    // Newest messages first; the page size comes from the Pageable
+    @Query(PAGE_SELECT + PAGE_ORDER)
+    List<MessageDTO> findLatestPage(@Param("conversationId") Long conversationId, Pageable pageable);
+
+    // Keyset continuation: messages strictly older than (timestamp, id), newest first
+    @Query(PAGE_SELECT + "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " + PAGE_ORDER)
+    List<MessageDTO> findPageBefore(@Param("conversationId") Long conversationId,
+                                    @Param("timestamp") LocalDateTime timestamp,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+
+    @Query("SELECT m.timestamp FROM Message m WHERE m.id = :id AND m.conversation.id = :conversationId")
+    Optional<LocalDateTime> findTimestamp(@Param("conversationId") Long conversationId, @Param("id") Long id);
+
+    // What the full-text index needs of a message
+    interface IndexedMessageView {
+        Long getId();
+
+        Long getConversationId();
+
+        String getContent();
+    }
+
+    // A user's messages newer than afterId, in id order, for building or catching up their search index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "256"))
+    @Query("SELECT m.id AS id, m.conversation.id AS conversationId, m.content AS content " +
+            "FROM Message m WHERE m.conversation.user.id = :userId AND m.id > :afterId ORDER BY m.id")
+    Stream<IndexedMessageView> streamForIndexByUserId(@Param("userId") Long userId, @Param("afterId") Long afterId);
+
+    // How many messages a user has, to tell whether their search index is missing any
+    long countByConversationUserId(Long userId);
+
+    // A message found by search, with its conversation's document
+    interface SearchHitView {
+        Long getId();
+
+        Long getConversationId();
+
+        Long getDocumentId();
+
+        String getDocumentTitle();
+
+        String getSender();
+
+        String getContent();
+
+        LocalDateTime getTimestamp();
+    }
+
+    // Hits that were deleted since they were indexed, or are not the user's, are simply not returned
+    @Query("SELECT m.id AS id, c.id AS conversationId, d.id AS documentId, d.title AS documentTitle, " +
+            "m.sender AS sender, m.content AS content, m.timestamp AS timestamp " +
+            "FROM Message m JOIN m.conversation c JOIN c.document d WHERE m.id IN :ids AND c.user.id = :userId")
+    List<SearchHitView> findSearchHits(@Param("userId") Long userId, @Param("ids") List<Long> ids);
+
+    // One batch of message ids across all conversations about a document
+    @Query("SELECT m.id FROM Message m WHERE m.conversation.document.id = :documentId")
+    List<Long> findIdsByDocumentId(@Param("documentId") Long documentId, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") List<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.lynkai.repository;
+
+import com.lynkai.model.StoredFilePage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface StoredFilePageRepository extends JpaRepository<StoredFilePage, Long> {
+
+    @Query("SELECT p.text FROM StoredFilePage p WHERE p.storedFile.id = :storedFileId ORDER BY p.pageNumber")
+    List<String> findTextsByStoredFileId(@Param("storedFileId") Long storedFileId);
+
+    // Drop pages left behind by an interrupted extraction
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredFilePage p WHERE p.storedFile.id = :storedFileId")
+    int deleteByStoredFileId(@Param("storedFileId") Long storedFileId);
+}
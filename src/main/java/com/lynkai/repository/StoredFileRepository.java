@@ -0,0 +1,42 @@
+package com.lynkai.repository;
+
+import com.lynkai.model.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+
+    Optional<StoredFile> findBySha256(String sha256);
+
+    boolean existsBySha256(String sha256);
+
+    // Add a reference to an existing file; returns 0 if the hash is not stored yet
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.refCount = f.refCount + 1 WHERE f.sha256 = :sha256")
+    int incrementRefCount(@Param("sha256") String sha256);
+
+    // Drop a reference; the caller removes the file once the count reaches zero
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.refCount = f.refCount - 1 WHERE f.sha256 = :sha256 AND f.refCount > 0")
+    int decrementRefCount(@Param("sha256") String sha256);
+
+    // Remember the extraction result so duplicates can skip parsing
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.pageCount = :pageCount WHERE f.sha256 = :sha256")
+    int cachePageCount(@Param("sha256") String sha256, @Param("pageCount") Integer pageCount);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.textLength = :textLength WHERE f.id = :id")
+    int cacheTextLength(@Param("id") Long id, @Param("textLength") Long textLength);
+}
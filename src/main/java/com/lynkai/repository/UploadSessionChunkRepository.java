@@ -0,0 +1,32 @@
+package com.lynkai.repository;
+
+import com.lynkai.model.UploadSessionChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionChunkRepository extends JpaRepository<UploadSessionChunk, Long> {
+
+    @Query("SELECT c.chunkNumber FROM UploadSessionChunk c WHERE c.session.id = :sessionId ORDER BY c.chunkNumber")
+    List<Integer> findChunkNumbers(@Param("sessionId") Long sessionId);
+
+    @Query("SELECT c.sha256 FROM UploadSessionChunk c WHERE c.session.id = :sessionId AND c.chunkNumber = :chunkNumber")
+    Optional<String> findSha256(@Param("sessionId") Long sessionId, @Param("chunkNumber") int chunkNumber);
+
+    @Query("SELECT COALESCE(SUM(c.size), 0) FROM UploadSessionChunk c WHERE c.session.id = :sessionId")
+    long sumSize(@Param("sessionId") Long sessionId);
+
+    long countBySessionId(Long sessionId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadSessionChunk c WHERE c.session.id = :sessionId")
+    int deleteAllBySessionId(@Param("sessionId") Long sessionId);
+}
@@ -0,0 +1,39 @@
+package com.lynkai.repository;
+
+import com.lynkai.model.UploadSession;
+import com.lynkai.model.UploadSessionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, Long> {
+
+    Optional<UploadSession> findByIdAndUserId(Long id, Long userId);
+
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime time);
+
+    // Atomic status transition; returns 0 if the session was not in the expected state
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.status = :to WHERE s.id = :id AND s.status = :from")
+    int transition(@Param("id") Long id, @Param("from") UploadSessionStatus from, @Param("to") UploadSessionStatus to);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.expiresAt = :expiresAt WHERE s.id = :id")
+    int extend(@Param("id") Long id, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.status = com.lynkai.model.UploadSessionStatus.COMPLETED, " +
+            "s.documentId = :documentId, s.expiresAt = :expiresAt WHERE s.id = :id")
+    int complete(@Param("id") Long id, @Param("documentId") Long documentId, @Param("expiresAt") LocalDateTime expiresAt);
+}
@@ -0,0 +1,86 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.AdmissionStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Back-pressure for parse-heavy work, so a burst of large uploads cannot exhaust
+ * the heap and starve the rest of the application.
+ * <p>
+ * Uploads and extraction jobs each pass a gate with a global and a per-user
+ * concurrency limit and byte budget ({@code app.admission.upload.*},
+ * {@code app.admission.extraction.*}). Uploads over budget are rejected with a
+ * retry hint ({@code app.admission.retry-after-seconds}); extraction jobs over
+ * budget stay PENDING and are picked up again by the extraction sweep.
+ */
+@Service
+public class AdmissionControlService {
+
+    /**
+     * An admitted unit of work; close it when the work is done.
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final AdmissionGate uploads;
+    private final AdmissionGate extractions;
+    private final long retryAfterSeconds;
+    private final long unknownUploadSize;
+
+    public AdmissionControlService(
+            @Value("${app.admission.upload.max-concurrent:16}") int uploadMaxConcurrent,
+            @Value("${app.admission.upload.max-concurrent-per-user:4}") int uploadMaxConcurrentPerUser,
+            @Value("${app.admission.upload.max-bytes:1073741824}") long uploadMaxBytes,
+            @Value("${app.admission.upload.max-bytes-per-user:268435456}") long uploadMaxBytesPerUser,
+            @Value("${app.admission.upload.unknown-size-bytes:52428800}") long unknownUploadSize,
+            @Value("${app.admission.extraction.max-concurrent:2}") int extractionMaxConcurrent,
+            @Value("${app.admission.extraction.max-concurrent-per-user:2}") int extractionMaxConcurrentPerUser,
+            @Value("${app.admission.extraction.max-bytes:536870912}") long extractionMaxBytes,
+            @Value("${app.admission.extraction.max-bytes-per-user:268435456}") long extractionMaxBytesPerUser,
+            @Value("${app.admission.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.uploads = new AdmissionGate("upload", uploadMaxConcurrent, uploadMaxConcurrentPerUser,
+                uploadMaxBytes, uploadMaxBytesPerUser);
+        this.extractions = new AdmissionGate("extraction", extractionMaxConcurrent, extractionMaxConcurrentPerUser,
+                extractionMaxBytes, extractionMaxBytesPerUser);
+        this.unknownUploadSize = unknownUploadSize;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Admit an upload of {@code bytes} bytes (negative when the size is not known up front).
+     * Throws {@link AdmissionRejectedException} when the upload budgets are exhausted.
+     */
+    public Permit admitUpload(Long userId, long bytes) {
+        return uploads.acquire(userId, bytes >= 0 ? bytes : unknownUploadSize, retryAfterSeconds);
+    }
+
+    /**
+     * Admit the extraction of a stored file of {@code bytes} bytes, or return null when it has to wait.
+     */
+    public Permit tryAdmitExtraction(Long userId, long bytes) {
+        return extractions.tryAcquire(userId, bytes);
+    }
+
+    /**
+     * Current load and admission counters; the extraction queue depth is filled in by the caller.
+     */
+    public AdmissionStats getStats() {
+        return AdmissionStats.builder()
+                .upload(stats(uploads))
+                .extraction(stats(extractions))
+                .build();
+    }
+
+    private static AdmissionStats.StageStats stats(AdmissionGate gate) {
+        return AdmissionStats.StageStats.builder()
+                .active(gate.active())
+                .activeUsers(gate.activeUsers())
+                .bytesInFlight(gate.bytesInFlight())
+                .admitted(gate.admitted())
+                .rejected(gate.rejected())
+                .build();
+    }
+}
@@ -0,0 +1,146 @@
+package com.lynkai.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency and byte budgets for one stage, both globally and per user.
+ * <p>
+ * A unit of work holds one slot and its size in bytes until it is released. Work is
+ * admitted only while every budget has room; the only exception is that a single item
+ * larger than a byte budget is let through when nothing else is in flight, so an
+ * oversized file is slow rather than impossible.
+ */
+final class AdmissionGate {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxConcurrentPerUser;
+    private final long maxBytes;
+    private final long maxBytesPerUser;
+
+    // Guarded by this
+    private int active;
+    private long bytes;
+    private final Map<Long, Usage> users = new HashMap<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private static final class Usage {
+        int active;
+        long bytes;
+    }
+
+    AdmissionGate(String name, int maxConcurrent, int maxConcurrentPerUser, long maxBytes, long maxBytesPerUser) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxConcurrentPerUser = Math.max(1, maxConcurrentPerUser);
+        this.maxBytes = maxBytes;
+        this.maxBytesPerUser = maxBytesPerUser;
+    }
+
+    // A held slot; closing it gives the slot and bytes back. Closing twice is harmless.
+    private final class Slot implements AdmissionControlService.Permit {
+        private final Long userId;
+        private final long size;
+        private boolean released;
+
+        private Slot(Long userId, long size) {
+            this.userId = userId;
+            this.size = size;
+        }
+
+        @Override
+        public void close() {
+            synchronized (AdmissionGate.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                active--;
+                bytes -= size;
+                Usage usage = users.get(userId);
+                usage.active--;
+                usage.bytes -= size;
+                if (usage.active == 0) {
+                    users.remove(userId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Take a slot for {@code size} bytes of work on behalf of {@code userId},
+     * or throw if any budget is exhausted.
+     */
+    synchronized AdmissionControlService.Permit acquire(Long userId, long size, long retryAfterSeconds) {
+        String reason = rejection(userId, size);
+        if (reason != null) {
+            throw new AdmissionRejectedException(reason, retryAfterSeconds);
+        }
+        return admit(userId, size);
+    }
+
+    /**
+     * Like {@link #acquire} but returns null instead of throwing.
+     */
+    synchronized AdmissionControlService.Permit tryAcquire(Long userId, long size) {
+        return rejection(userId, size) == null ? admit(userId, size) : null;
+    }
+
+    // Why the work cannot be admitted right now, or null if it can; counts rejections
+    private String rejection(Long userId, long size) {
+        Usage usage = users.get(userId);
+        int userActive = usage != null ? usage.active : 0;
+        long userBytes = usage != null ? usage.bytes : 0;
+        long weight = Math.max(0, size);
+
+        String reason = null;
+        if (active >= maxConcurrent) {
+            reason = name + ": too many concurrent requests";
+        } else if (userActive >= maxConcurrentPerUser) {
+            reason = name + ": too many concurrent requests for this user";
+        } else if (active > 0 && bytes + weight > maxBytes) {
+            reason = name + ": byte budget exhausted";
+        } else if (userActive > 0 && userBytes + weight > maxBytesPerUser) {
+            reason = name + ": byte budget exhausted for this user";
+        }
+        if (reason != null) {
+            rejected.increment();
+        }
+        return reason;
+    }
+
+    private AdmissionControlService.Permit admit(Long userId, long size) {
+        long weight = Math.max(0, size);
+        Usage usage = users.computeIfAbsent(userId, id -> new Usage());
+        usage.active++;
+        usage.bytes += weight;
+        active++;
+        bytes += weight;
+        admitted.increment();
+        return new Slot(userId, weight);
+    }
+
+    synchronized int active() {
+        return active;
+    }
+
+    synchronized long bytesInFlight() {
+        return bytes;
+    }
+
+    synchronized int activeUsers() {
+        return users.size();
+    }
+
+    long admitted() {
+        return admitted.sum();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+}
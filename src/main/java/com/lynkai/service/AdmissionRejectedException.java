@@ -0,0 +1,18 @@
+package com.lynkai.service;
+
+import lombok.Getter;
+
+/**
+ * Work was turned away because a concurrency or byte budget is exhausted.
+ * Callers should try again after {@link #getRetryAfterSeconds()}.
+ */
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
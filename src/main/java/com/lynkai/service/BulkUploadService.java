@@ -0,0 +1,397 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.BulkUploadResult;
+import com.lynkai.dto.DocumentResponse;
+import com.lynkai.model.Document;
+import com.lynkai.model.ProcessingStatus;
+import com.lynkai.model.StoredFile;
+import com.lynkai.model.User;
+import com.lynkai.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Many uploads in one request: loose files and/or zip archives.
+ * <p>
+ * Every file is streamed into {@link DocumentStorageService} on its own virtual thread,
+ * at most {@code app.upload.bulk.concurrency} at a time. A single writer thread takes
+ * whatever has been stored so far and inserts those {@link Document} rows in one
+ * transaction, then queues them for extraction. Results are emitted as NDJSON,
+ * one line per file, in completion order.
+ * <p>
+ * Each file is capped at {@code app.upload.max-size} and the whole request at
+ * {@code app.upload.bulk.max-bytes}, counted on the bytes actually read, so an archive
+ * that understates its sizes cannot expand past them. The request is charged to the
+ * upload admission gate for the bytes it declares, up to that cap, and may not write more.
+ */
+@Service
+@Slf4j
+public class BulkUploadService {
+
+    private final DocumentRepository documentRepository;
+    private final DocumentStorageService storageService;
+    private final DocumentExtractionService extractionService;
+    private final AdmissionControlService admissionControlService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${app.upload.bulk.concurrency:16}")
+    private int concurrency;
+
+    @Value("${app.upload.bulk.max-files:1000}")
+    private int maxFiles;
+
+    @Value("${app.upload.bulk.max-bytes:1073741824}")
+    private long maxRequestBytes;
+
+    @Value("${app.upload.bulk.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.upload.bulk.timeout-ms:600000}")
+    private long timeoutMs;
+
+    public BulkUploadService(DocumentRepository documentRepository,
+                             DocumentStorageService storageService,
+                             DocumentExtractionService extractionService,
+                             AdmissionControlService admissionControlService,
+                             PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.storageService = storageService;
+        this.extractionService = extractionService;
+        this.admissionControlService = admissionControlService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    // declaredSize is what the part or archive claims, -1 when unknown
+    private record Entry(int index, String filename, long declaredSize, Source source) {}
+
+    // A stored file waiting for its document row, or a failure to report
+    private record Stored(Entry entry, StoredFile file, String error) {}
+
+    /**
+     * Start storing {@code files} for {@code user}. The returned emitter receives one
+     * {@link BulkUploadResult} per file and completes when every file has been reported.
+     * Archives are opened here, so a corrupt zip fails the request before anything is stored.
+     * Throws {@link AdmissionRejectedException} when the user's upload budget is used up.
+     */
+    public ResponseBodyEmitter upload(List<MultipartFile> files, User user) throws IOException {
+        List<ZipFile> archives = new ArrayList<>();
+        List<Path> tempFiles = new ArrayList<>();
+        List<Entry> entries;
+        long budget;
+        AdmissionControlService.Permit permit;
+        try {
+            entries = collectEntries(files, archives, tempFiles);
+            budget = budget(entries);
+            permit = admissionControlService.admitUpload(user.getId(), budget);
+        } catch (IOException | RuntimeException e) {
+            closeAll(archives, tempFiles);
+            throw e;
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutMs);
+        executor.execute(() -> {
+            try (permit) {
+                run(entries, budget, user, emitter);
+                emitter.complete();
+            } catch (Exception e) {
+                log.warn("Bulk upload for user {} aborted: {}", user.getId(), e.getMessage());
+                emitter.completeWithError(e);
+            } finally {
+                closeAll(archives, tempFiles);
+            }
+        });
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private List<Entry> collectEntries(List<MultipartFile> files, List<ZipFile> archives,
+                                       List<Path> tempFiles) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (MultipartFile file : files) {
+            if (file.isEmpty()) {
+                continue;
+            }
+            String name = file.getOriginalFilename() != null ? file.getOriginalFilename() : "upload";
+            if (!isZip(file, name)) {
+                entries.add(new Entry(entries.size(), name, file.getSize(), file::getInputStream));
+                checkCount(entries);
+                continue;
+            }
+
+            // ZipFile reads entries by offset, so their bytes can be streamed in parallel
+            Path temp = Files.createTempFile("bulk-", ".zip");
+            tempFiles.add(temp);
+            file.transferTo(temp);
+            ZipFile zip = new ZipFile(temp.toFile());
+            archives.add(zip);
+            Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                String entryName = fileName(zipEntry.getName());
+                if (zipEntry.isDirectory() || entryName.isEmpty() || entryName.startsWith(".")
+                        || zipEntry.getName().startsWith("__MACOSX/")) {
+                    continue;
+                }
+                entries.add(new Entry(entries.size(), entryName, zipEntry.getSize(), () -> zip.getInputStream(zipEntry)));
+                checkCount(entries);
+            }
+        }
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("No files to upload.");
+        }
+        return entries;
+    }
+
+    private void checkCount(List<Entry> entries) {
+        if (entries.size() > maxFiles) {
+            throw new IllegalArgumentException("A bulk upload may contain at most " + maxFiles + " files.");
+        }
+    }
+
+    // Bytes the request may write: what it declares, files of unknown size counted at the per-file cap
+    private long budget(List<Entry> entries) {
+        long maxFileBytes = storageService.getMaxUploadBytes();
+        long budget = 0;
+        for (Entry entry : entries) {
+            if (entry.declaredSize() <= maxFileBytes) {
+                long size = entry.declaredSize() >= 0 ? entry.declaredSize() : maxFileBytes;
+                budget = Math.min(maxRequestBytes, budget + size);
+            }
+        }
+        return budget;
+    }
+
+    private void run(List<Entry> entries, long budget, User user, ResponseBodyEmitter emitter)
+            throws InterruptedException {
+        AtomicLong remainingBytes = new AtomicLong(budget);
+        Semaphore permits = new Semaphore(Math.max(1, concurrency));
+        BlockingQueue<Stored> done = new LinkedBlockingQueue<>();
+
+        for (Entry entry : entries) {
+            permits.acquire();
+            executor.execute(() -> {
+                try {
+                    done.add(store(entry, remainingBytes, budget));
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        // Everything that finished while the previous batch was written goes into the next one.
+        // A client that goes away does not stop the upload; its files are still saved.
+        boolean connected = true;
+        int remaining = entries.size();
+        List<Stored> batch = new ArrayList<>();
+        while (remaining > 0) {
+            batch.clear();
+            batch.add(done.take());
+            done.drainTo(batch, Math.max(1, batchSize) - 1);
+            remaining -= batch.size();
+            for (BulkUploadResult result : persist(batch, user)) {
+                if (!connected) {
+                    continue;
+                }
+                try {
+                    emitter.send(result, MediaType.APPLICATION_JSON);
+                    emitter.send("\n", MediaType.TEXT_PLAIN);
+                } catch (IOException | IllegalStateException e) {
+                    connected = false;
+                    log.info("Bulk upload client for user {} disconnected; continuing", user.getId());
+                }
+            }
+        }
+    }
+
+    private Stored store(Entry entry, AtomicLong remainingBytes, long budget) {
+        try {
+            if (entry.declaredSize() > storageService.getMaxUploadBytes()) {
+                throw new MaxUploadSizeExceededException(storageService.getMaxUploadBytes());
+            }
+            InputStream in = new BudgetedInputStream(entry.source().open(), remainingBytes, budget);
+            return new Stored(entry, storageService.store(in, entry.filename()).file(), null);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Bulk upload of {} failed: {}", entry.filename(), e.getMessage());
+            return new Stored(entry, null, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    // Insert the documents of one batch in a single transaction and queue them once it commits
+    private List<BulkUploadResult> persist(List<Stored> batch, User user) {
+        List<BulkUploadResult> results = new ArrayList<>(batch.size());
+        List<Stored> stored = new ArrayList<>(batch.size());
+        for (Stored item : batch) {
+            if (item.file() == null) {
+                results.add(failure(item.entry(), item.error()));
+            } else {
+                stored.add(item);
+            }
+        }
+        if (stored.isEmpty()) {
+            return results;
+        }
+
+        try {
+            List<Document> saved = transactionTemplate.execute(status -> {
+                List<Document> documents = new ArrayList<>(stored.size());
+                for (Stored item : stored) {
+                    documents.add(newDocument(item, user));
+                }
+                List<Document> inserted = documentRepository.saveAll(documents);
+                inserted.forEach(document -> extractionService.submitAfterCommit(document.getId()));
+                return inserted;
+            });
+            for (int i = 0; i < stored.size(); i++) {
+                Entry entry = stored.get(i).entry();
+                results.add(BulkUploadResult.builder()
+                        .index(entry.index())
+                        .filename(entry.filename())
+                        .success(true)
+                        .document(DocumentResponse.fromEntity(saved.get(i)))
+                        .build());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Inserting a batch of {} bulk-uploaded documents failed", stored.size(), e);
+            for (Stored item : stored) {
+                storageService.release(item.file().getSha256());
+                results.add(failure(item.entry(), "Could not save document."));
+            }
+        }
+        return results;
+    }
+
+    private static Document newDocument(Stored item, User user) {
+        StoredFile file = item.file();
+        return Document.builder()
+                .title(title(item.entry().filename()))
+                .filePath(file.getPath())
+                .pageCount(file.getPageCount())
+                .contentHash(file.getSha256())
+                .fileSize(file.getSize())
+                .format(file.getFormat())
+                .isProcessed(false)
+                .processingStatus(ProcessingStatus.PENDING)
+                .createdAt(LocalDateTime.now())
+                .user(user)
+                .build();
+    }
+
+    private static BulkUploadResult failure(Entry entry, String error) {
+        return BulkUploadResult.builder()
+                .index(entry.index())
+                .filename(entry.filename())
+                .success(false)
+                .error(error)
+                .build();
+    }
+
+    /**
+     * Charges every byte read to the request's shared budget and fails once it is spent.
+     */
+    private static final class BudgetedInputStream extends FilterInputStream {
+
+        private final AtomicLong remainingBytes;
+        private final long budget;
+
+        BudgetedInputStream(InputStream in, AtomicLong remainingBytes, long budget) {
+            super(in);
+            this.remainingBytes = remainingBytes;
+            this.budget = budget;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                charge(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                charge(n);
+            }
+            return n;
+        }
+
+        private void charge(int bytes) throws IOException {
+            if (remainingBytes.addAndGet(-bytes) < 0) {
+                throw new IOException("Bulk upload exceeds its budget of " + budget + " bytes.");
+            }
+        }
+    }
+
+    private static boolean isZip(MultipartFile file, String name) {
+        String type = file.getContentType();
+        return name.toLowerCase(Locale.ROOT).endsWith(".zip")
+                || "application/zip".equals(type) || "application/x-zip-compressed".equals(type);
+    }
+
+    // Last path segment of an archive entry name
+    private static String fileName(String entryName) {
+        String name = entryName.replace('\\', '/');
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    // The file name without its extension
+    private static String title(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot > 0 ? filename.substring(0, dot) : filename;
+    }
+
+    private static void closeAll(List<ZipFile> archives, List<Path> tempFiles) {
+        for (ZipFile zip : archives) {
+            try {
+                zip.close();
+            } catch (IOException e) {
+                log.debug("Failed to close archive {}: {}", zip.getName(), e.getMessage());
+            }
+        }
+        for (Path temp : tempFiles) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                log.debug("Failed to delete {}: {}", temp, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.MessageDTO;
+import com.lynkai.dto.SendMessageRequest;
+import com.lynkai.repository.ConversationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Chat turns answered by the RAG service and relayed to the client as Server-Sent Events.
+ * <p>
+ * The question is stored before the RAG call; every token is forwarded as a {@code token}
+ * event as soon as it arrives, and the complete answer is stored once, at the end, and sent
+ * as a {@code done} event. A client that goes away does not stop the answer; it is still
+ * stored and shows up in the conversation history. A stream still running after
+ * {@code app.chat.timeout-ms} is cancelled, which also cancels the RAG request.
+ */
+@Service
+@Slf4j
+public class ChatStreamService {
+
+    private final ConversationRepository conversationRepository;
+    private final ConversationService conversationService;
+    private final RagClientProvider ragClientProvider;
+    private final ConversationContextCache contextCache;
+
+    // Streams mostly wait on the RAG service; one virtual thread each
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore streams;
+
+    @Value("${app.chat.context.max-tokens:2048}")
+    private int contextTokens;
+
+    @Value("${app.chat.timeout-ms:300000}")
+    private long timeoutMs;
+
+    public ChatStreamService(ConversationRepository conversationRepository,
+                             ConversationService conversationService,
+                             RagClientProvider ragClientProvider,
+                             ConversationContextCache contextCache,
+                             @Value("${app.chat.max-streams:256}") int maxStreams) {
+        this.conversationRepository = conversationRepository;
+        this.conversationService = conversationService;
+        this.ragClientProvider = ragClientProvider;
+        this.contextCache = contextCache;
+        this.streams = new Semaphore(Math.max(1, maxStreams));
+    }
+
+    /**
+     * Ask a question in a conversation and stream the answer. Throws IllegalArgumentException
+     * for an empty question, RuntimeException when the conversation is not the user's, and
+     * RejectedExecutionException when {@code app.chat.max-streams} answers are already streaming.
+     */
+    public SseEmitter ask(Long conversationId, Long userId, String question) {
+        if (question == null || question.isBlank()) {
+            throw new IllegalArgumentException("Question cannot be empty.");
+        }
+        ConversationRepository.ChatTargetView target = conversationRepository.findChatTarget(conversationId, userId)
+                .orElseThrow(() -> new RuntimeException("Conversation not found or unauthorized"));
+        if (!streams.tryAcquire()) {
+            throw new RejectedExecutionException("Too many chat streams in progress");
+        }
+
+        try {
+            // Hot conversations are answered from the cached window, without reading messages back,
+            // as long as it still agrees with the stats just read with the conversation
+            List<MessageDTO> history = List.copyOf(contextCache.context(conversationId,
+                    target.getMessageCount(), target.getLastMessageAt(), contextTokens));
+            MessageDTO asked = conversationService.addMessage(
+                    new SendMessageRequest(conversationId, "user", question), userId);
+            RagClient.Query query = new RagClient.Query(target.getDocumentId(), target.getRagDocumentId(), question, history);
+
+            SseEmitter emitter = new SseEmitter(timeoutMs);
+            Future<?> streaming = executor.submit(() -> {
+                try {
+                    answer(query, asked, userId, emitter);
+                } finally {
+                    streams.release();
+                }
+            });
+            emitter.onTimeout(() -> streaming.cancel(true));
+            return emitter;
+        } catch (RuntimeException e) {
+            streams.release();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void answer(RagClient.Query query, MessageDTO asked, Long userId, SseEmitter emitter) {
+        Relay relay = new Relay(emitter);
+        relay.send("question", asked);
+
+        StringBuilder answer = new StringBuilder();
+        long start = System.nanoTime();
+        try {
+            ragClientProvider.get().streamAnswer(query, token -> {
+                if (answer.isEmpty()) {
+                    log.debug("First token for conversation {} after {} ms",
+                            asked.getConversationId(), (System.nanoTime() - start) / 1_000_000);
+                }
+                answer.append(token);
+                relay.send("token", token);
+            });
+        } catch (IOException | RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                log.info("RAG answer for conversation {} cancelled after {} ms", asked.getConversationId(),
+                        (System.nanoTime() - start) / 1_000_000);
+                relay.complete();
+                return;
+            }
+            log.warn("RAG answer for conversation {} failed: {}", asked.getConversationId(), e.getMessage());
+            relay.send("error", "The answer could not be generated.");
+            relay.complete();
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            relay.complete();
+            return;
+        }
+
+        try {
+            MessageDTO reply = conversationService.addMessage(
+                    new SendMessageRequest(asked.getConversationId(), "ai", answer.toString()), userId);
+            relay.send("done", reply);
+        } catch (RuntimeException e) {
+            // E.g. the conversation was deleted while the answer streamed
+            log.warn("Storing the answer for conversation {} failed: {}", asked.getConversationId(), e.getMessage());
+            relay.send("error", "The answer could not be saved.");
+        }
+        relay.complete();
+    }
+
+    // Sends events until the client goes away, then drops them silently
+    private static final class Relay {
+
+        private final SseEmitter emitter;
+        private boolean connected = true;
+
+        Relay(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void send(String event, Object data) {
+            if (!connected) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data));
+            } catch (IOException | IllegalStateException e) {
+                connected = false;
+            }
+        }
+
+        void complete() {
+            if (connected) {
+                emitter.complete();
+            }
+        }
+    }
+}
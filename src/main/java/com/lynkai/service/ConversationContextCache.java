@@ -0,0 +1,297 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.MessageDTO;
+import com.lynkai.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The last {@code app.chat.context.window-size} messages of recently active conversations,
+ * kept in per-conversation ring buffers so that building the next prompt does not read
+ * the conversation back from the database.
+ * <p>
+ * A window is loaded from the database on first use and then kept current by
+ * {@link #appendAfterCommit}, called wherever messages are stored. Messages stored by
+ * other nodes never reach it, so every read is checked against the conversation's stored
+ * {@code messageCount} and {@code lastMessageAt}: a window that has seen fewer messages,
+ * or none as new, is loaded again. Windows are evicted least recently used first once
+ * their estimated size exceeds {@code app.chat.context.cache-bytes}.
+ */
+@Component
+@Slf4j
+public class ConversationContextCache {
+
+    // Rough JVM footprint of a cached message besides its text: DTO, strings, timestamp, slot
+    private static final long MESSAGE_OVERHEAD_BYTES = 160;
+
+    // Tokens are estimated at about four characters each, plus a few for the role marker
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int TOKENS_PER_MESSAGE = 4;
+
+    private final MessageRepository messageRepository;
+    private final int windowSize;
+    private final long cacheBytes;
+
+    // Windows in access order, with their total estimated size; guarded by itself
+    private final LinkedHashMap<Long, Window> windows = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    public ConversationContextCache(MessageRepository messageRepository,
+                                    @Value("${app.chat.context.window-size:32}") int windowSize,
+                                    @Value("${app.chat.context.cache-bytes:67108864}") long cacheBytes) {
+        this.messageRepository = messageRepository;
+        this.windowSize = Math.max(1, windowSize);
+        this.cacheBytes = cacheBytes;
+    }
+
+    /**
+     * The most recent messages of a conversation that fit in {@code maxTokens}, oldest first.
+     * The caller has checked that the conversation belongs to the user, and read its stored
+     * stats before calling.
+     */
+    public List<MessageDTO> context(Long conversationId, Integer messageCount, LocalDateTime lastMessageAt,
+                                    int maxTokens) {
+        List<MessageDTO> recent = recent(conversationId, messageCount, lastMessageAt);
+        int tokens = 0;
+        int from = recent.size();
+        while (from > 0) {
+            int cost = estimateTokens(recent.get(from - 1));
+            if (tokens + cost > maxTokens) {
+                break;
+            }
+            tokens += cost;
+            from--;
+        }
+        return recent.subList(from, recent.size());
+    }
+
+    /**
+     * The cached window of a conversation, oldest first, loading it on a miss or when it is
+     * behind the conversation's stored stats.
+     */
+    public List<MessageDTO> recent(Long conversationId, Integer messageCount, LocalDateTime lastMessageAt) {
+        Window window;
+        synchronized (windows) {
+            window = windows.get(conversationId);
+            if (window != null && window.loaded) {
+                if (window.isCurrent(messageCount, lastMessageAt)) {
+                    return window.snapshot();
+                }
+                log.debug("Reloading stale context window of conversation {}", conversationId);
+                windows.remove(conversationId);
+                cachedBytes -= window.bytes;
+                window = null;
+            }
+            if (window == null) {
+                // Registered before the read so that messages stored meanwhile are not lost
+                window = new Window(windowSize);
+                windows.put(conversationId, window);
+            }
+        }
+
+        List<MessageDTO> newestFirst = messageRepository.findLatestPage(conversationId, PageRequest.of(0, windowSize));
+        List<MessageDTO> loaded = new ArrayList<>(newestFirst);
+        Collections.reverse(loaded);
+
+        synchronized (windows) {
+            long before = window.bytes;
+            window.fill(loaded, messageCount, lastMessageAt);
+            // The window may have been evicted while loading; then it only serves this caller
+            if (windows.get(conversationId) == window) {
+                cachedBytes += window.bytes - before;
+                evictOverBudget();
+            }
+            return window.snapshot();
+        }
+    }
+
+    /**
+     * Add a stored message to its conversation's window once the current transaction (if any) commits.
+     */
+    public void appendAfterCommit(MessageDTO message) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(message);
+                }
+            });
+        } else {
+            append(message);
+        }
+    }
+
+    public void append(MessageDTO message) {
+        synchronized (windows) {
+            // Conversations that are not cached are loaded, with this message, on their next turn
+            Window window = windows.get(message.getConversationId());
+            if (window != null) {
+                long before = window.bytes;
+                window.add(message);
+                cachedBytes += window.bytes - before;
+                evictOverBudget();
+            }
+        }
+    }
+
+    /**
+     * Forget conversations once the current transaction (if any) commits, e.g. when they are deleted.
+     */
+    public void evictAfterCommit(Collection<Long> conversationIds) {
+        evict(conversationIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Long> ids = List.copyOf(conversationIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(ids);
+                }
+            });
+        }
+    }
+
+    public void evict(Collection<Long> conversationIds) {
+        synchronized (windows) {
+            for (Long id : conversationIds) {
+                Window removed = windows.remove(id);
+                if (removed != null) {
+                    cachedBytes -= removed.bytes;
+                }
+            }
+        }
+    }
+
+    static int estimateTokens(MessageDTO message) {
+        int chars = message.getContent() != null ? message.getContent().length() : 0;
+        return (chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + TOKENS_PER_MESSAGE;
+    }
+
+    private static long estimateBytes(MessageDTO message) {
+        long chars = (message.getContent() != null ? message.getContent().length() : 0)
+                + (message.getSender() != null ? message.getSender().length() : 0);
+        return MESSAGE_OVERHEAD_BYTES + 2 * chars;
+    }
+
+    // Caller holds the windows lock; the window just touched is the last one evicted
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Long, Window>> it = windows.entrySet().iterator();
+        while (cachedBytes > cacheBytes && windows.size() > 1 && it.hasNext()) {
+            Map.Entry<Long, Window> eldest = it.next();
+            cachedBytes -= eldest.getValue().bytes;
+            it.remove();
+            log.debug("Evicted context window of conversation {}", eldest.getKey());
+        }
+    }
+
+    /**
+     * Ring buffer of the newest messages of one conversation. Until it is loaded it only
+     * collects messages stored meanwhile, which {@link #fill} merges with the database read.
+     * It also counts the messages it has seen, starting from the stats read before loading,
+     * so that it can tell when the conversation has messages it never saw.
+     */
+    private static final class Window {
+
+        private final MessageDTO[] ring;
+        private int head;   // index of the oldest message
+        private int size;
+        private long bytes;
+        private boolean loaded;
+        private long messageCount;
+        private LocalDateTime newest;
+
+        Window(int capacity) {
+            this.ring = new MessageDTO[capacity];
+        }
+
+        boolean add(MessageDTO message) {
+            for (int i = 0; i < size; i++) {
+                if (message.getId() != null && message.getId().equals(at(i).getId())) {
+                    return false;
+                }
+            }
+            if (size == ring.length) {
+                bytes -= estimateBytes(ring[head]);
+                ring[head] = message;
+                head = (head + 1) % ring.length;
+            } else {
+                ring[(head + size) % ring.length] = message;
+                size++;
+            }
+            bytes += estimateBytes(message);
+            messageCount++;
+            if (newest == null || (message.getTimestamp() != null && message.getTimestamp().isAfter(newest))) {
+                newest = message.getTimestamp();
+            }
+            return true;
+        }
+
+        // The stats were read before the messages, so they cannot count a message the read missed;
+        // messages collected meanwhile that the read did miss were stored after both
+        void fill(List<MessageDTO> fromDatabase, Integer storedCount, LocalDateTime storedLastMessageAt) {
+            if (loaded) {
+                return;
+            }
+            Set<Long> ids = new HashSet<>();
+            List<MessageDTO> merged = new ArrayList<>(fromDatabase);
+            fromDatabase.forEach(message -> ids.add(message.getId()));
+            int storedSince = 0;
+            for (int i = 0; i < size; i++) {
+                if (!ids.contains(at(i).getId())) {
+                    merged.add(at(i));
+                    storedSince++;
+                }
+            }
+            merged.sort(Comparator.comparing(MessageDTO::getTimestamp).thenComparing(MessageDTO::getId));
+
+            head = 0;
+            size = 0;
+            bytes = 0;
+            Arrays.fill(ring, null);
+            newest = null;
+            merged.forEach(this::add);
+            messageCount = (storedCount != null ? storedCount : 0) + storedSince;
+            if (storedLastMessageAt != null && (newest == null || storedLastMessageAt.isAfter(newest))) {
+                newest = storedLastMessageAt;
+            }
+            loaded = true;
+        }
+
+        // Conversations only grow, so a window is behind when the row counts more messages or a newer one.
+        // Timestamps read back may be truncated to the column's precision, which only makes them older.
+        boolean isCurrent(Integer storedCount, LocalDateTime storedLastMessageAt) {
+            if (storedCount != null && storedCount != messageCount) {
+                return false;
+            }
+            return storedLastMessageAt == null || (newest != null && !storedLastMessageAt.isAfter(newest));
+        }
+
+        List<MessageDTO> snapshot() {
+            List<MessageDTO> messages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                messages.add(at(i));
+            }
+            return messages;
+        }
+
+        private MessageDTO at(int i) {
+            return ring[(head + i) % ring.length];
+        }
+    }
+}
@@ -12,11 +12,23 @@ import com.lynkai.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,9 +39,24 @@ public class ConversationService {
     private final MessageRepository messageRepository;
     private final DocumentRepository documentRepository;
     private final UserRepository userRepository;
+    private final ConversationContextCache contextCache;
+    private final MessageSearchService searchService;
+    private final PlatformTransactionManager transactionManager;
 
     private static final Logger log = LoggerFactory.getLogger(ConversationService.class);
 
+    @Value("${app.messages.page-size:50}")
+    private int defaultMessagePageSize;
+
+    @Value("${app.messages.max-page-size:200}")
+    private int maxMessagePageSize;
+
+    @Value("${app.conversations.repair-batch-size:500}")
+    private int repairBatchSize;
+
+    // getOrCreateConversation calls in progress per "userId:documentId"; duplicates wait for the first
+    private final ConcurrentHashMap<String, CompletableFuture<ConversationDTO>> pendingGetOrCreate = new ConcurrentHashMap<>();
+
     /**
      * Create a new conversation
      */
@@ -58,28 +85,65 @@ public class ConversationService {
 
     /**
      * Get or create conversation for user and document
-     * If a conversation already exists, return it; otherwise create new one
+     * If a conversation already exists, return it; otherwise create new one.
+     * Concurrent calls for the same user and document share one lookup; across nodes,
+     * the unique active slot lets only one of them insert.
      */
-    @Transactional
     public ConversationDTO getOrCreateConversation(Long userId, Long documentId) {
-        // Verify document belongs to user
-        Document document = documentRepository.findById(documentId)
-                .orElseThrow(() -> new RuntimeException("Document not found"));
-
-        log.info("Current userId: {}", userId);
-        log.info("Document userId: {}", document.getUser().getId());
+        String key = userId + ":" + documentId;
+        CompletableFuture<ConversationDTO> mine = new CompletableFuture<>();
+        CompletableFuture<ConversationDTO> existing = pendingGetOrCreate.putIfAbsent(key, mine);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+        }
 
-        if (!Objects.equals(document.getUser().getId(), userId)) {
-            throw new RuntimeException("Unauthorized: Document does not belong to user");
+        try {
+            ConversationDTO conversation = findOrCreateConversation(userId, documentId);
+            mine.complete(conversation);
+            return conversation;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingGetOrCreate.remove(key, mine);
         }
+    }
 
-        return conversationRepository.findLatestByUserAndDocument(userId, documentId)
-                .map(conv -> convertToDTO(conv, true))
-                .orElseGet(() -> {
-                    CreateConversationRequest request = new CreateConversationRequest();
-                    request.setDocumentId(documentId);
-                    return createConversation(request, userId);
-                });
+    // Runs in its own transaction, so waiting callers are only answered once the conversation is committed
+    private ConversationDTO findOrCreateConversation(Long userId, Long documentId) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            return transaction.execute(status -> {
+                // Verify document belongs to user
+                Document document = documentRepository.findById(documentId)
+                        .orElseThrow(() -> new RuntimeException("Document not found"));
+
+                if (!Objects.equals(document.getUser().getId(), userId)) {
+                    throw new RuntimeException("Unauthorized: Document does not belong to user");
+                }
+
+                return conversationRepository.findFirstByUserIdAndDocumentIdOrderByStartedAtDescIdDesc(userId, documentId)
+                        .map(conv -> convertToDTO(conv, true))
+                        .orElseGet(() -> {
+                            Conversation conversation = conversationRepository.saveAndFlush(Conversation.builder()
+                                    .user(userRepository.getReferenceById(userId))
+                                    .document(document)
+                                    .activeSlot(Conversation.ACTIVE_SLOT)
+                                    .build());
+                            return convertToDTO(conversation, true);
+                        });
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another node inserted the active conversation between our read and our insert
+            return transaction.execute(status ->
+                    conversationRepository.findFirstByUserIdAndDocumentIdOrderByStartedAtDescIdDesc(userId, documentId)
+                            .map(conv -> convertToDTO(conv, true))
+                            .orElseThrow(() -> e));
+        }
     }
 
     /**
@@ -103,9 +167,19 @@ public class ConversationService {
      */
     @Transactional(readOnly = true)
     public List<ConversationDTO> getUserConversations(Long userId) {
-        return conversationRepository.findByUserIdOrderByStartedAtDesc(userId)
-                .stream()
-                .map(conv -> convertToDTO(conv, false))
+        return getUserConversations(userId, false);
+    }
+
+    /**
+     * Get all conversations for a user, newest first or, with {@code byActivity}, most recently active first
+     */
+    @Transactional(readOnly = true)
+    public List<ConversationDTO> getUserConversations(Long userId, boolean byActivity) {
+        List<ConversationRepository.ConversationSummaryView> summaries = byActivity
+                ? conversationRepository.findSummariesByUserIdOrderByActivity(userId)
+                : conversationRepository.findSummariesByUserId(userId);
+        return summaries.stream()
+                .map(this::convertSummaryToDTO)
                 .collect(Collectors.toList());
     }
 
@@ -122,10 +196,7 @@ public class ConversationService {
             throw new RuntimeException("Unauthorized: Document does not belong to user");
         }
 
-        return conversationRepository.findByUserIdAndDocumentIdOrderByStartedAtDesc(userId, documentId)
-                .stream()
-                .map(conv -> convertToDTO(conv, false))
-                .collect(Collectors.toList());
+        return getUserDocumentConversations(userId, documentId);
     }
 
     /**
@@ -133,9 +204,9 @@ public class ConversationService {
      */
     @Transactional(readOnly = true)
     public List<ConversationDTO> getUserDocumentConversations(Long userId, Long documentId) {
-        return conversationRepository.findByUserIdAndDocumentIdOrderByStartedAtDesc(userId, documentId)
+        return conversationRepository.findSummariesByUserIdAndDocumentId(userId, documentId)
                 .stream()
-                .map(conv -> convertToDTO(conv, false))
+                .map(this::convertSummaryToDTO)
                 .collect(Collectors.toList());
     }
 
@@ -148,6 +219,8 @@ public class ConversationService {
             throw new RuntimeException("Conversation not found or unauthorized");
         }
         conversationRepository.deleteById(conversationId);
+        contextCache.evictAfterCommit(List.of(conversationId));
+        searchService.removeConversationsAfterCommit(userId, List.of(conversationId));
     }
 
     /**
@@ -170,38 +243,89 @@ public class ConversationService {
                 .build();
 
         message = messageRepository.save(message);
+        conversationRepository.recordMessage(conversation.getId(), message.getTimestamp(),
+                Conversation.previewOf(message.getContent()));
 
-        return convertMessageToDTO(message);
+        MessageDTO stored = convertMessageToDTO(message);
+        contextCache.appendAfterCommit(stored);
+        searchService.indexAfterCommit(userId, stored);
+        return stored;
     }
 
     /**
-     * Get all messages for a conversation with user validation
+     * Reconcile the denormalized message stats of every conversation with its messages.
+     * Runs in batches of {@code app.conversations.repair-batch-size}. Each repair is one UPDATE
+     * that recomputes the stats from the messages table, so messages written after the check
+     * are not lost.
+     * Also backfills conversations created before the stats were stored.
      */
-    @Transactional(readOnly = true)
-    public List<MessageDTO> getConversationMessages(Long conversationId, Long userId) {
-        // Verify conversation belongs to user
-        Conversation conversation = conversationRepository.findById(conversationId)
-                .orElseThrow(() -> new RuntimeException("Conversation not found"));
-
-        if (!Objects.equals(conversation.getUser().getId(), userId)) {
-            throw new RuntimeException("Unauthorized: Conversation does not belong to user");
+    @Scheduled(fixedDelayString = "${app.conversations.repair-interval-ms:3600000}")
+    public int repairStats() {
+        int repaired = 0;
+        Long afterId = 0L;
+        PageRequest batch = PageRequest.of(0, Math.max(1, repairBatchSize));
+        List<ConversationRepository.ConversationStatsView> stats;
+        do {
+            stats = conversationRepository.findStatsAfter(afterId, batch);
+            for (ConversationRepository.ConversationStatsView row : stats) {
+                if (!statsMatch(row)) {
+                    List<MessageDTO> latest = messageRepository.findLatestPage(row.getId(), PageRequest.of(0, 1));
+                    MessageDTO newest = latest.isEmpty() ? null : latest.get(0);
+                    repaired += conversationRepository.repairStats(row.getId(),
+                            newest != null ? newest.getTimestamp() : null,
+                            newest != null ? Conversation.previewOf(newest.getContent()) : null);
+                }
+                afterId = row.getId();
+            }
+        } while (stats.size() == batch.getPageSize());
+
+        if (repaired > 0) {
+            log.info("Repaired message stats of {} conversations", repaired);
         }
+        return repaired;
+    }
 
-        return messageRepository.findByConversationIdOrderByTimestampAsc(conversationId)
-                .stream()
-                .map(this::convertMessageToDTO)
-                .collect(Collectors.toList());
+    private static boolean statsMatch(ConversationRepository.ConversationStatsView row) {
+        return row.getMessageCount() != null
+                && row.getMessageCount() == row.getActualCount()
+                && Objects.equals(row.getLastMessageAt(), row.getActualLastMessageAt());
     }
 
     /**
-     * Get messages without user validation (internal use)
+     * One page of a conversation's messages with user validation, oldest first.
+     * Without {@code before} this is the latest page; otherwise the page just older than
+     * message {@code before}. {@code nextCursor} is the id to pass as {@code before} next.
      */
     @Transactional(readOnly = true)
-    private List<MessageDTO> getConversationMessagesInternal(Long conversationId) {
-        return messageRepository.findByConversationIdOrderByTimestampAsc(conversationId)
-                .stream()
-                .map(this::convertMessageToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<MessageDTO> getConversationMessages(Long conversationId, Long userId, Integer limit, Long before) {
+        if (!conversationRepository.existsByIdAndUserId(conversationId, userId)) {
+            throw new RuntimeException("Conversation not found or unauthorized");
+        }
+        return getMessagePage(conversationId, limit, before);
+    }
+
+    /**
+     * Page of messages without user validation (internal use)
+     */
+    private CursorPage<MessageDTO> getMessagePage(Long conversationId, Integer limit, Long before) {
+        int size = Math.min(Math.max(1, maxMessagePageSize), limit != null && limit > 0 ? limit : defaultMessagePageSize);
+        // One extra row tells whether older messages remain
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        List<MessageDTO> newestFirst;
+        if (before == null) {
+            newestFirst = messageRepository.findLatestPage(conversationId, page);
+        } else {
+            LocalDateTime timestamp = messageRepository.findTimestamp(conversationId, before)
+                    .orElseThrow(() -> new IllegalArgumentException("Message " + before + " is not in this conversation."));
+            newestFirst = messageRepository.findPageBefore(conversationId, timestamp, before, page);
+        }
+
+        boolean hasMore = newestFirst.size() > size;
+        List<MessageDTO> messages = new ArrayList<>(hasMore ? newestFirst.subList(0, size) : newestFirst);
+        Collections.reverse(messages);
+        String nextCursor = hasMore ? String.valueOf(messages.get(0).getId()) : null;
+        return new CursorPage<>(messages, nextCursor, hasMore);
     }
 
     /**
@@ -214,16 +338,36 @@ public class ConversationService {
                 .documentTitle(conversation.getDocument().getTitle())
                 .userId(conversation.getUser().getId())
                 .startedAt(conversation.getStartedAt())
-                .messageCount((int) messageRepository.countByConversationId(conversation.getId()))
+                .messageCount(conversation.getMessageCount())
+                .lastMessageAt(conversation.getLastMessageAt())
+                .lastMessagePreview(conversation.getLastMessagePreview())
                 .build();
 
         if (includeMessages) {
-            dto.setMessages(getConversationMessagesInternal(conversation.getId()));
+            CursorPage<MessageDTO> latest = getMessagePage(conversation.getId(), null, null);
+            dto.setMessages(latest.getItems());
+            dto.setHasMoreMessages(latest.isHasMore());
         }
 
         return dto;
     }
 
+    /**
+     * Convert a listing projection to DTO; messages are not included
+     */
+    private ConversationDTO convertSummaryToDTO(ConversationRepository.ConversationSummaryView summary) {
+        return ConversationDTO.builder()
+                .id(summary.getId())
+                .documentId(summary.getDocumentId())
+                .documentTitle(summary.getDocumentTitle())
+                .userId(summary.getUserId())
+                .startedAt(summary.getStartedAt())
+                .messageCount(summary.getMessageCount())
+                .lastMessageAt(summary.getLastMessageAt())
+                .lastMessagePreview(summary.getLastMessagePreview())
+                .build();
+    }
+
     /**
      * Convert Message entity to DTO
      */
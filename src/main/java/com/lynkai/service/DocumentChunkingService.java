@@ -0,0 +1,81 @@
+package com.lynkai.service;
+
+import com.lynkai.model.Document;
+import com.lynkai.model.DocumentChunk;
+import com.lynkai.repository.DocumentChunkRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Splits a document's text into chunks and writes them as {@link DocumentChunk} rows.
+ * <p>
+ * Chunks are persisted as the chunker produces them and the persistence context
+ * is flushed and cleared every {@code app.chunking.batch-size} rows, so each
+ * flush goes out as one JDBC batch and memory stays flat however long the
+ * document is. Ids come from a pooled sequence, one fetch per batch.
+ */
+@Service
+@Slf4j
+public class DocumentChunkingService {
+
+    private final DocumentChunkRepository chunkRepository;
+    private final TextChunker textChunker;
+    private final VectorSearchService vectorSearchService;
+    private final UserVectorIndexService userVectorIndexService;
+    private final int batchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public DocumentChunkingService(DocumentChunkRepository chunkRepository,
+                                   TextChunker textChunker,
+                                   VectorSearchService vectorSearchService,
+                                   UserVectorIndexService userVectorIndexService,
+                                   @Value("${app.chunking.batch-size:500}") int batchSize) {
+        this.chunkRepository = chunkRepository;
+        this.textChunker = textChunker;
+        this.vectorSearchService = vectorSearchService;
+        this.userVectorIndexService = userVectorIndexService;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Replace the chunks of a document with chunks of {@code text}.
+     * Returns the number of chunks written.
+     */
+    @Transactional
+    public int chunkDocument(Long documentId, String text) {
+        int deleted = chunkRepository.deleteAllByDocumentId(documentId);
+
+        // Works without hibernate.jdbc.batch_size being set globally
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+        Document document = entityManager.getReference(Document.class, documentId);
+
+        int[] count = {0};
+        textChunker.chunk(text, chunkText -> {
+            entityManager.persist(DocumentChunk.builder()
+                    .document(document)
+                    .chunkIndex(count[0]++)
+                    .textContent(chunkText)
+                    .build());
+            if (count[0] % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        });
+        entityManager.flush();
+        entityManager.clear();
+        vectorSearchService.invalidateAfterCommit(documentId);
+        if (deleted > 0) {
+            userVectorIndexService.removeDocumentAfterCommit(documentId);
+        }
+
+        log.info("Wrote {} chunks for document {} (replaced {})", count[0], documentId, deleted);
+        return count[0];
+    }
+}
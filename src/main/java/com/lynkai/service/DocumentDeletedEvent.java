@@ -0,0 +1,7 @@
+package com.lynkai.service;
+
+/**
+ * Published when a document's rows have been deleted. The cleanup still owed outside
+ * the database is recorded in the {@link com.lynkai.model.DocumentCleanup} {@code cleanupId}.
+ */
+public record DocumentDeletedEvent(Long documentId, Long cleanupId) {}
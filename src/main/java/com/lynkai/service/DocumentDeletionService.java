@@ -0,0 +1,240 @@
+package com.lynkai.service;
+
+import com.lynkai.model.DocumentCleanup;
+import com.lynkai.model.ProcessingStatus;
+import com.lynkai.repository.ConversationRepository;
+import com.lynkai.repository.DocumentChunkRepository;
+import com.lynkai.repository.DocumentCleanupRepository;
+import com.lynkai.repository.DocumentRepository;
+import com.lynkai.repository.DocumentSummaryRepository;
+import com.lynkai.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Deletes documents with set-based statements instead of cascading through the entity graph.
+ * <p>
+ * The document is first marked {@link ProcessingStatus#DELETING}, which hides it from its owner.
+ * Messages, conversations and chunks are then deleted bottom-up, at most
+ * {@code app.deletion.batch-size} rows per transaction, followed by the summaries and the
+ * document row. Nothing is loaded into the persistence context. The transaction that deletes
+ * the row records a {@link DocumentCleanup}; once it commits, the stored file, previews and
+ * vector index entries are cleaned up asynchronously and the record is dropped. Deletions
+ * interrupted by a restart, and cleanups that failed, are retried by a periodic sweep.
+ */
+@Service
+@Slf4j
+public class DocumentDeletionService {
+
+    private final DocumentRepository documentRepository;
+    private final MessageRepository messageRepository;
+    private final ConversationRepository conversationRepository;
+    private final DocumentChunkRepository chunkRepository;
+    private final DocumentSummaryRepository summaryRepository;
+    private final DocumentCleanupRepository cleanupRepository;
+    private final DocumentStorageService storageService;
+    private final DocumentPreviewService previewService;
+    private final ConversationContextCache contextCache;
+    private final MessageSearchService searchService;
+    private final VectorSearchService vectorSearchService;
+    private final UserVectorIndexService userVectorIndexService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.deletion.batch-size:1000}")
+    private int batchSize;
+
+    // Cleanups younger than this are left to the listener that was started for them
+    @Value("${app.deletion.cleanup-retry-delay-ms:60000}")
+    private long cleanupRetryDelayMs;
+
+    // Documents being purged on this node, so the sweep does not race a request
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    // Cleanups running on this node, by DocumentCleanup id
+    private final Set<Long> cleaningUp = ConcurrentHashMap.newKeySet();
+
+    public DocumentDeletionService(DocumentRepository documentRepository,
+                                   MessageRepository messageRepository,
+                                   ConversationRepository conversationRepository,
+                                   DocumentChunkRepository chunkRepository,
+                                   DocumentSummaryRepository summaryRepository,
+                                   DocumentCleanupRepository cleanupRepository,
+                                   DocumentStorageService storageService,
+                                   DocumentPreviewService previewService,
+                                   ConversationContextCache contextCache,
+                                   MessageSearchService searchService,
+                                   VectorSearchService vectorSearchService,
+                                   UserVectorIndexService userVectorIndexService,
+                                   ApplicationEventPublisher eventPublisher,
+                                   PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.messageRepository = messageRepository;
+        this.conversationRepository = conversationRepository;
+        this.chunkRepository = chunkRepository;
+        this.summaryRepository = summaryRepository;
+        this.cleanupRepository = cleanupRepository;
+        this.storageService = storageService;
+        this.previewService = previewService;
+        this.contextCache = contextCache;
+        this.searchService = searchService;
+        this.vectorSearchService = vectorSearchService;
+        this.userVectorIndexService = userVectorIndexService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Delete one of the user's documents with everything attached to it.
+     * Returns false if the document does not exist, is not theirs or is already being deleted.
+     */
+    public boolean deleteDocument(Long documentId, Long userId) {
+        if (documentRepository.markDeleting(documentId, userId) == 0) {
+            return false;
+        }
+        purge(documentId);
+        return true;
+    }
+
+    /**
+     * Finish deletions that were interrupted, e.g. by a restart, and retry cleanups that failed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.deletion.sweep-interval-ms:300000}")
+    public void resumeInterrupted() {
+        for (Long documentId : documentRepository.findIdsByProcessingStatus(ProcessingStatus.DELETING)) {
+            try {
+                purge(documentId);
+            } catch (RuntimeException e) {
+                log.error("Resuming deletion of document {} failed", documentId, e);
+            }
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(cleanupRetryDelayMs * 1_000_000);
+        cleanupRepository.findByCreatedAtBefore(cutoff).forEach(this::cleanUp);
+    }
+
+    /**
+     * Remove what lives outside the database once the document row is gone.
+     */
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onDocumentDeleted(DocumentDeletedEvent event) {
+        cleanupRepository.findById(event.cleanupId()).ifPresent(this::cleanUp);
+    }
+
+    // Every step may be repeated; the record is only dropped once all of them succeeded
+    private void cleanUp(DocumentCleanup cleanup) {
+        if (!cleaningUp.add(cleanup.getId())) {
+            return;
+        }
+        try {
+            if (cleanup.getContentHash() != null) {
+                if (!cleanup.isFileReleased()) {
+                    // Claimed in the release transaction, so a retry never drops a second reference
+                    storageService.release(cleanup.getContentHash(),
+                            () -> cleanupRepository.markFileReleased(cleanup.getId()) == 1);
+                }
+                // Other documents may share the bytes; previews go with the last of them
+                if (!storageService.isStored(cleanup.getContentHash())) {
+                    previewService.evict(cleanup.getContentHash());
+                }
+            } else {
+                storageService.delete(Paths.get(cleanup.getFilePath()));
+                previewService.evict("doc" + cleanup.getDocumentId());
+            }
+
+            vectorSearchService.invalidate(cleanup.getDocumentId());
+            // An index that cannot be updated is discarded and rebuilt from the database
+            userVectorIndexService.removeDocument(cleanup.getUserId(), cleanup.getDocumentId());
+            cleanupRepository.deleteById(cleanup.getId());
+            log.info("Cleaned up files and indexes of deleted document {}", cleanup.getDocumentId());
+        } catch (RuntimeException e) {
+            log.warn("Cleanup of deleted document {} failed; the sweep retries it: {}",
+                    cleanup.getDocumentId(), e.getMessage());
+        } finally {
+            cleaningUp.remove(cleanup.getId());
+        }
+    }
+
+    private void purge(Long documentId) {
+        if (!inFlight.add(documentId)) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Long ownerId = documentRepository.findOwnerIdById(documentId).orElse(null);
+            int messages = deleteInBatches(documentId, messageRepository::findIdsByDocumentId,
+                    messageRepository::deleteAllByIdIn);
+            int conversations = deleteInBatches(documentId, conversationRepository::findIdsByDocumentId, ids -> {
+                contextCache.evictAfterCommit(ids);
+                if (ownerId != null) {
+                    searchService.removeConversationsAfterCommit(ownerId, ids);
+                }
+                return conversationRepository.deleteAllByIdIn(ids);
+            });
+            int chunks = deleteInBatches(documentId, chunkRepository::findIdsByDocumentId,
+                    chunkRepository::deleteAllByIdIn);
+
+            transactionTemplate.executeWithoutResult(status -> {
+                DocumentRepository.DocumentFileView file = documentRepository.findFileViewById(documentId).orElse(null);
+                if (file == null) {
+                    return;
+                }
+                summaryRepository.purgeByDocumentId(documentId);
+                // Catches chunks written by an extraction that finished while the batches ran
+                chunkRepository.deleteAllByDocumentId(documentId);
+                documentRepository.purgeById(documentId);
+                DocumentCleanup cleanup = cleanupRepository.save(DocumentCleanup.builder()
+                        .documentId(documentId)
+                        .userId(file.getUserId())
+                        .contentHash(file.getContentHash())
+                        .filePath(file.getFilePath())
+                        .createdAt(LocalDateTime.now())
+                        .build());
+                eventPublisher.publishEvent(new DocumentDeletedEvent(documentId, cleanup.getId()));
+            });
+            log.info("Deleted document {} ({} messages, {} conversations, {} chunks) in {} ms",
+                    documentId, messages, conversations, chunks, System.currentTimeMillis() - start);
+        } finally {
+            inFlight.remove(documentId);
+        }
+    }
+
+    // Select a bounded page of ids, delete exactly those, commit, repeat until none are left
+    private int deleteInBatches(Long documentId, IdPageQuery query, ToIntFunction<List<Long>> delete) {
+        Pageable page = PageRequest.of(0, Math.max(1, batchSize));
+        int total = 0;
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<Long> ids = query.apply(documentId, page);
+                return ids.isEmpty() ? 0 : delete.applyAsInt(ids);
+            });
+            if (deleted == null || deleted == 0) {
+                return total;
+            }
+            total += deleted;
+        }
+    }
+
+    private interface IdPageQuery {
+        List<Long> apply(Long documentId, Pageable page);
+    }
+}
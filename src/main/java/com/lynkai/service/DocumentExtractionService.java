@@ -0,0 +1,304 @@
+package com.lynkai.service;
+
+import com.lynkai.model.Document;
+import com.lynkai.model.DocumentFormat;
+import com.lynkai.model.ProcessingStatus;
+import com.lynkai.model.StoredFile;
+import com.lynkai.repository.DocumentRepository;
+import com.lynkai.repository.StoredFileRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.hpsf.SummaryInformation;
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts document metadata (page count, text) on a bounded background pool,
+ * so uploads never hold a request thread or a DB connection while parsing.
+ * Progress is tracked durably through {@link Document#getProcessingStatus()}.
+ * <p>
+ * A claimed job carries the claiming node's {@code app.extraction.node-id} and a lease
+ * that the node renews every sweep. Only jobs whose lease is older than
+ * {@code app.extraction.lease-ms}, or that this node held before it restarted, are put
+ * back to PENDING, so a restart never re-runs jobs other nodes are still extracting.
+ */
+@Service
+@Slf4j
+public class DocumentExtractionService {
+
+    private final DocumentRepository documentRepository;
+    private final StoredFileRepository storedFileRepository;
+    private final PdfPageCounter pdfPageCounter;
+    private final DocxPageCounter docxPageCounter;
+    private final DocumentTextExtractor textExtractor;
+    private final DocumentChunkingService chunkingService;
+    private final AdmissionControlService admissionControlService;
+    private final ThreadPoolExecutor executor;
+
+    // Documents queued or running on this node, to avoid double submission
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Must be unique per node, and stable across restarts to recover its own jobs without waiting out the lease
+    private final String nodeId;
+    private final long leaseMs;
+
+    public DocumentExtractionService(DocumentRepository documentRepository,
+                                     StoredFileRepository storedFileRepository,
+                                     PdfPageCounter pdfPageCounter,
+                                     DocxPageCounter docxPageCounter,
+                                     DocumentTextExtractor textExtractor,
+                                     DocumentChunkingService chunkingService,
+                                     AdmissionControlService admissionControlService,
+                                     @Value("${app.extraction.workers:2}") int workers,
+                                     @Value("${app.extraction.queue-capacity:100}") int queueCapacity,
+                                     @Value("${app.extraction.node-id:}") String nodeId,
+                                     @Value("${app.extraction.lease-ms:300000}") long leaseMs) {
+        this.documentRepository = documentRepository;
+        this.storedFileRepository = storedFileRepository;
+        this.pdfPageCounter = pdfPageCounter;
+        this.docxPageCounter = docxPageCounter;
+        this.textExtractor = textExtractor;
+        this.chunkingService = chunkingService;
+        this.admissionControlService = admissionControlService;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.leaseMs = leaseMs;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "extraction-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queue a document once the surrounding transaction has committed,
+     * so the worker is guaranteed to see the row.
+     */
+    public void submitAfterCommit(Long documentId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(documentId);
+                }
+            });
+        } else {
+            submit(documentId);
+        }
+    }
+
+    /**
+     * Queue a document for extraction. When the queue is full the document
+     * stays PENDING and is picked up again by {@link #resubmitPending()}.
+     */
+    public void submit(Long documentId) {
+        if (!inFlight.add(documentId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    extract(documentId);
+                } finally {
+                    inFlight.remove(documentId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(documentId);
+            log.warn("Extraction queue full, document {} stays pending", documentId);
+        }
+    }
+
+    /**
+     * Number of documents waiting for a worker on this node.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Jobs this node was running when it stopped were left EXTRACTING; put them back in the queue.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedJobs() {
+        int reset = documentRepository.releaseInterruptedExtractions(
+                LocalDateTime.now().minus(Duration.ofMillis(leaseMs)), nodeId);
+        if (reset > 0) {
+            log.info("Reset {} interrupted extraction jobs to PENDING", reset);
+        }
+        resubmitPending();
+    }
+
+    @Scheduled(fixedDelayString = "${app.extraction.sweep-interval-ms:30000}")
+    public void resubmitPending() {
+        // Renew before looking for stale leases, so a long sweep interval cannot expire our own
+        if (!inFlight.isEmpty()) {
+            documentRepository.renewExtractionLeases(List.copyOf(inFlight), nodeId, LocalDateTime.now());
+        }
+        // Jobs of nodes that died and never came back
+        int stale = documentRepository.releaseInterruptedExtractions(
+                LocalDateTime.now().minus(Duration.ofMillis(leaseMs)), null);
+        if (stale > 0) {
+            log.warn("Reset {} extraction jobs with expired leases to PENDING", stale);
+        }
+
+        List<Long> pending = documentRepository.findIdsByProcessingStatus(ProcessingStatus.PENDING);
+        for (Long documentId : pending) {
+            if (executor.getQueue().remainingCapacity() == 0) {
+                break;
+            }
+            submit(documentId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static String defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "node-" + UUID.randomUUID();
+        }
+    }
+
+    private void extract(Long documentId) {
+        Document document = documentRepository.findById(documentId).orElse(null);
+        if (document == null) {
+            return;
+        }
+
+        // Over the parse budget the job is not claimed, so it stays PENDING for the next sweep
+        long size = document.getFileSize() != null ? document.getFileSize() : 0;
+        try (AdmissionControlService.Permit permit =
+                     admissionControlService.tryAdmitExtraction(document.getUser().getId(), size)) {
+            if (permit == null) {
+                log.debug("Extraction of document {} deferred by admission control", documentId);
+                return;
+            }
+            // Claim the job; another node or an earlier submission may already own it
+            if (documentRepository.claimForExtraction(documentId, nodeId, LocalDateTime.now()) == 0) {
+                return;
+            }
+            extractClaimed(documentId, document);
+        }
+    }
+
+    private void extractClaimed(Long documentId, Document document) {
+        try {
+            // A duplicate of an already extracted file only needs the cached result
+            StoredFile stored = document.getContentHash() != null
+                    ? storedFileRepository.findBySha256(document.getContentHash()).orElse(null)
+                    : null;
+            if (stored != null && stored.getPageCount() != null && stored.getTextLength() != null) {
+                String text = textExtractor.loadText(stored);
+                chunkingService.chunkDocument(documentId, text);
+                documentRepository.completeExtraction(documentId, stored.getPageCount(), text);
+                log.info("Extraction for document {} served from file cache", documentId);
+                return;
+            }
+
+            Path path = Paths.get(document.getFilePath());
+            DocumentFormat format = document.getFormat() != null ? document.getFormat() : DocumentFormat.UNKNOWN;
+
+            int pageCount;
+            if (stored != null && stored.getPageCount() != null) {
+                pageCount = stored.getPageCount();
+            } else {
+                pageCount = detectPageCount(path, format);
+                if (stored != null) {
+                    storedFileRepository.cachePageCount(stored.getSha256(), pageCount);
+                }
+            }
+
+            Long userId = document.getUser().getId();
+            String text = stored != null
+                    ? textExtractor.extract(stored, pageCount, userId)
+                    : textExtractor.extract(path, format, pageCount, userId);
+            chunkingService.chunkDocument(documentId, text);
+
+            documentRepository.completeExtraction(documentId, pageCount, text);
+            log.info("Extraction finished for document {}: {} pages, {} chars", documentId, pageCount, text.length());
+        } catch (Exception e) {
+            log.error("Extraction failed for document {}", documentId, e);
+            documentRepository.failExtraction(documentId, truncate(e.getMessage()));
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "Extraction failed";
+        }
+        return message.length() <= 500 ? message : message.substring(0, 500);
+    }
+
+    private int detectPageCount(Path filePath, DocumentFormat format) throws Exception {
+        // 🧾 PDF
+        if (format == DocumentFormat.PDF) {
+            return pdfPageCounter.countPages(filePath);
+        }
+
+        // 📝 DOCX
+        if (format == DocumentFormat.DOCX) {
+            return docxPageCounter.countPages(filePath);
+        }
+
+        // 📄 DOC (Word 97-2003)
+        if (format == DocumentFormat.DOC) {
+            try (InputStream is = Files.newInputStream(filePath);
+                 POIFSFileSystem fs = new POIFSFileSystem(is);
+                 HWPFDocument doc = new HWPFDocument(fs)) {
+
+                SummaryInformation info = doc.getSummaryInformation();
+                if (info != null) {
+                    int pageCount = info.getPageCount();
+                    if (pageCount > 0) {
+                        log.debug("DOC detected: {} pages", pageCount);
+                        return pageCount;
+                    }
+                }
+
+                // Fallback
+                log.debug("DOC page count not available, defaulting to 1");
+                return 1;
+            }
+        }
+
+        // Default
+        log.debug("Unknown file type, defaulting to 1 page");
+        return 1;
+    }
+}
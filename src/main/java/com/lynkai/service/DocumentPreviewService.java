@@ -0,0 +1,334 @@
+package com.lynkai.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Downscaled page images of stored PDFs, rendered with PDFBox and cached on disk
+ * under {@code app.preview.dir}.
+ * <p>
+ * Renders are named {@code <sha256>-p<page>-w<width>.<ext>}, so every document
+ * sharing the same bytes shares the same previews. The cache holds at most
+ * {@code app.preview.cache-bytes}; least recently served renders are evicted first.
+ * At most {@code app.preview.max-renders} pages are rendered at once; callers that
+ * cannot get a slot within {@code app.preview.render-wait-ms} are turned away
+ * rather than queued behind a burst of cold previews.
+ */
+@Service
+@Slf4j
+public class DocumentPreviewService {
+
+    private static final String PDF_MIME = "application/pdf";
+    private static final int WIDTH_STEP = 32;
+    private static final int MIN_WIDTH = 32;
+
+    // Pages far taller than wide (receipts, scrolls) would otherwise render into huge bitmaps
+    private static final float MAX_ASPECT = 4f;
+
+    @Value("${app.preview.dir:previews}")
+    private String previewDir;
+
+    @Value("${app.preview.cache-bytes:268435456}")
+    private long cacheBytes;
+
+    @Value("${app.preview.default-width:320}")
+    private int defaultWidth;
+
+    @Value("${app.preview.max-width:1600}")
+    private int maxWidth;
+
+    @Value("${app.preview.render-wait-ms:2000}")
+    private long renderWaitMs;
+
+    private final Semaphore renderSlots;
+
+    // Cached renders in access order, with their sizes; guarded by itself
+    private final LinkedHashMap<String, Long> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    // Renders in progress; concurrent requests for the same image wait for one render
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> rendering = new ConcurrentHashMap<>();
+
+    private final boolean webpAvailable = ImageIO.getImageWritersByFormatName("webp").hasNext();
+
+    public DocumentPreviewService(@Value("${app.preview.max-renders:2}") int maxRenders) {
+        this.renderSlots = new Semaphore(Math.max(1, maxRenders), true);
+    }
+
+    public enum Format {
+        PNG("png", "image/png"),
+        WEBP("webp", "image/webp");
+
+        private final String extension;
+        private final String mimeType;
+
+        Format(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    // A cached render ready to send
+    public record Preview(Path path, String key, Format format) {}
+
+    /**
+     * Pick up renders left on disk by earlier runs; recency is approximated by modification time.
+     */
+    @PostConstruct
+    void loadCache() throws IOException {
+        Path root = Paths.get(previewDir);
+        Files.createDirectories(root);
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(root)) {
+            entries.filter(Files::isRegularFile).forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(DocumentPreviewService::lastModified));
+        synchronized (lru) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".part")) {
+                    deleteQuietly(file);
+                    continue;
+                }
+                long size = file.toFile().length();
+                lru.put(name, size);
+                cachedBytes += size;
+            }
+            evictOverBudget();
+        }
+        log.info("Preview cache: {} renders, {} bytes", files.size(), cachedBytes);
+    }
+
+    /**
+     * The image of page {@code page} (1-based) of a stored PDF, about {@code width} pixels wide.
+     * Throws IllegalArgumentException for non-PDF sources and out-of-range pages or widths,
+     * and RejectedExecutionException when the image has to be rendered but no render slot frees up in time.
+     */
+    public Preview preview(FileDownloadService.DownloadTarget source, Long documentId,
+                           Integer page, Integer width, String format) throws IOException {
+        if (!PDF_MIME.equals(source.contentType())) {
+            throw new IllegalArgumentException("Previews are only available for PDF documents.");
+        }
+        int pageNumber = page != null ? page : 1;
+        if (pageNumber < 1) {
+            throw new IllegalArgumentException("Page numbers start at 1.");
+        }
+        Format imageFormat = resolveFormat(format);
+        int imageWidth = snapWidth(width != null ? width : defaultWidth);
+
+        // Content-addressed when possible; files stored before hashing are keyed by document
+        String owner = source.contentHash() != null ? source.contentHash() : "doc" + documentId;
+        String key = owner + "-p" + pageNumber + "-w" + imageWidth + "." + imageFormat.extension;
+
+        Path cached = lookup(key);
+        if (cached != null) {
+            return new Preview(cached, key, imageFormat);
+        }
+
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> existing = rendering.putIfAbsent(key, mine);
+        if (existing != null) {
+            return new Preview(await(existing), key, imageFormat);
+        }
+        try {
+            Path rendered = render(source.path(), key, pageNumber - 1, imageWidth, imageFormat);
+            mine.complete(rendered);
+            return new Preview(rendered, key, imageFormat);
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(key, mine);
+        }
+    }
+
+    /**
+     * Drop every cached render of a stored file, e.g. once its last document is deleted.
+     */
+    public void evict(String contentHash) {
+        String prefix = contentHash + "-";
+        List<String> removed = new ArrayList<>();
+        synchronized (lru) {
+            Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Long> entry = it.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    cachedBytes -= entry.getValue();
+                    removed.add(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+        removed.forEach(name -> deleteQuietly(Paths.get(previewDir).resolve(name)));
+    }
+
+    private Format resolveFormat(String format) {
+        if (format == null || format.isEmpty()) {
+            return Format.PNG;
+        }
+        return switch (format.toLowerCase(Locale.ROOT)) {
+            case "png" -> Format.PNG;
+            // Without an ImageIO WebP writer on the classpath, WebP requests get PNG
+            case "webp" -> webpAvailable ? Format.WEBP : Format.PNG;
+            default -> throw new IllegalArgumentException("Unsupported preview format: " + format);
+        };
+    }
+
+    // Widths are bucketed so that arbitrary client sizes do not fragment the cache
+    private int snapWidth(int requested) {
+        if (requested < MIN_WIDTH || requested > maxWidth) {
+            throw new IllegalArgumentException("Preview width must be between " + MIN_WIDTH + " and " + maxWidth + ".");
+        }
+        return Math.min(maxWidth, (requested + WIDTH_STEP - 1) / WIDTH_STEP * WIDTH_STEP);
+    }
+
+    private Path lookup(String key) {
+        Path path = Paths.get(previewDir).resolve(key);
+        synchronized (lru) {
+            Long size = lru.get(key);
+            if (size == null) {
+                return null;
+            }
+            if (Files.isRegularFile(path)) {
+                return path;
+            }
+            // Removed behind our back; render again
+            lru.remove(key);
+            cachedBytes -= size;
+            return null;
+        }
+    }
+
+    private Path render(Path pdf, String key, int pageIndex, int width, Format format) throws IOException {
+        boolean acquired;
+        try {
+            acquired = renderSlots.tryAcquire(renderWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a render slot");
+        }
+        if (!acquired) {
+            throw new RejectedExecutionException("All preview renderers are busy");
+        }
+
+        long start = System.nanoTime();
+        Path root = Paths.get(previewDir);
+        Path temp = root.resolve(UUID.randomUUID() + ".part");
+        try {
+            BufferedImage image;
+            try (PDDocument document = PDDocument.load(pdf.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+                if (pageIndex >= document.getNumberOfPages()) {
+                    throw new IllegalArgumentException("Document has only " + document.getNumberOfPages() + " pages.");
+                }
+                // Rendering straight at the target scale is both the cheapest and the sharpest downscale
+                PDRectangle box = document.getPage(pageIndex).getCropBox();
+                float pageWidth = rotated(document, pageIndex) ? box.getHeight() : box.getWidth();
+                float pageHeight = rotated(document, pageIndex) ? box.getWidth() : box.getHeight();
+                float scale = width / pageWidth;
+                if (pageHeight * scale > width * MAX_ASPECT) {
+                    scale = width * MAX_ASPECT / pageHeight;
+                }
+                image = new PDFRenderer(document).renderImage(pageIndex, scale, ImageType.RGB);
+            }
+
+            if (!ImageIO.write(image, format.extension, temp.toFile())) {
+                throw new IOException("No ImageIO writer for " + format.extension);
+            }
+            Path target = root.resolve(key);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            admit(key, Files.size(target));
+            log.debug("Rendered preview {} in {} ms", key, (System.nanoTime() - start) / 1_000_000);
+            return target;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        } finally {
+            renderSlots.release();
+        }
+    }
+
+    private static boolean rotated(PDDocument document, int pageIndex) {
+        return document.getPage(pageIndex).getRotation() % 180 != 0;
+    }
+
+    private void admit(String key, long size) {
+        synchronized (lru) {
+            Long previous = lru.put(key, size);
+            cachedBytes += size - (previous != null ? previous : 0);
+            evictOverBudget();
+        }
+    }
+
+    // Caller holds the lru lock; the entry just admitted is the last one evicted
+    private void evictOverBudget() {
+        Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+        while (cachedBytes > cacheBytes && lru.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            cachedBytes -= eldest.getValue();
+            it.remove();
+            deleteQuietly(Paths.get(previewDir).resolve(eldest.getKey()));
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete preview {}: {}", path, e.getMessage());
+        }
+    }
+}
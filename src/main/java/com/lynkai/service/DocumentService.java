@@ -1,174 +1,208 @@
 package com.lynkai.service;
 
+import com.lynkai.dto.CursorPage;
+import com.lynkai.dto.DocumentListItem;
 import com.lynkai.dto.DocumentResponse;
+import com.lynkai.dto.DocumentStatusResponse;
 import com.lynkai.model.Document;
+import com.lynkai.model.ProcessingStatus;
+import com.lynkai.model.StoredFile;
 import com.lynkai.model.User;
 import com.lynkai.repository.DocumentRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.apache.poi.hpsf.SummaryInformation;
-import org.apache.poi.hwpf.HWPFDocument;
-import org.apache.poi.poifs.filesystem.POIFSFileSystem;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
 @RequiredArgsConstructor
+@Slf4j
 public class DocumentService {
 
     private final DocumentRepository documentRepository;
+    private final DocumentStorageService storageService;
+    private final DocumentExtractionService extractionService;
 
-    @Value("${app.upload.dir:uploads}")
-    private String uploadDir;
+    @Value("${app.documents.page-size:20}")
+    private int defaultPageSize;
 
-    private int detectPageCount(Path filePath, String mimeType) {
-        try {
-            String fileName = filePath.getFileName().toString().toLowerCase();
-
-            // 🧾 PDF
-            if (fileName.endsWith(".pdf")) {
-                try (var pdf = org.apache.pdfbox.pdmodel.PDDocument.load(filePath.toFile())) {
-                    int pageCount = pdf.getNumberOfPages();
-                    System.out.println("PDF detected: " + pageCount + " pages");
-                    return pageCount;
-                }
-            }
-
-            // 📝 DOCX
-            if (fileName.endsWith(".docx")) {
-                try (InputStream is = Files.newInputStream(filePath);
-                     XWPFDocument docx = new XWPFDocument(is)) {
-
-                    // Try to get page count from document properties
-                    try {
-                        int pages = docx.getProperties()
-                                .getExtendedProperties()
-                                .getUnderlyingProperties()
-                                .getPages();
-
-                        if (pages > 0) {
-                            System.out.println("DOCX detected from properties: " + pages + " pages");
-                            return pages;
-                        }
-                    } catch (Exception e) {
-                        System.out.println("Could not read DOCX page count from properties: " + e.getMessage());
-                    }
-
-                    // Better estimation based on content
-                    int totalParagraphs = docx.getParagraphs().size();
-                    int totalTables = docx.getTables().size();
-
-                    // Count actual text content (ignore empty paragraphs)
-                    int contentParagraphs = 0;
-                    for (var paragraph : docx.getParagraphs()) {
-                        String text = paragraph.getText();
-                        if (text != null && !text.trim().isEmpty()) {
-                            contentParagraphs++;
-                        }
-                    }
-
-                    // Estimate: ~35-40 paragraphs per page, tables count as 5 paragraphs each
-                    int contentUnits = contentParagraphs + (totalTables * 5);
-                    int estimatedPages = Math.max(1, (int) Math.ceil(contentUnits / 35.0));
-
-                    System.out.println("DOCX estimation - Total paragraphs: " + totalParagraphs +
-                            ", Content paragraphs: " + contentParagraphs +
-                            ", Tables: " + totalTables +
-                            ", Estimated pages: " + estimatedPages);
-
-                    return estimatedPages;
-                }
-            }
-
-            // 📄 DOC (Word 97-2003)
-            if (fileName.endsWith(".doc")) {
-                try (InputStream is = Files.newInputStream(filePath);
-                     POIFSFileSystem fs = new POIFSFileSystem(is);
-                     HWPFDocument doc = new HWPFDocument(fs)) {
-
-                    SummaryInformation info = doc.getSummaryInformation();
-                    if (info != null) {
-                        int pageCount = info.getPageCount();
-                        if (pageCount > 0) {
-                            System.out.println("DOC detected: " + pageCount + " pages");
-                            return pageCount;
-                        }
-                    }
-
-                    // Fallback
-                    System.out.println("DOC page count not available, defaulting to 1");
-                    return 1;
-                }
-            }
-
-            // Default
-            System.out.println("Unknown file type, defaulting to 1 page");
-            return 1;
-
-        } catch (Exception e) {
-            System.err.println("Failed to detect page count for: " + filePath + " -> " + e.getMessage());
-            e.printStackTrace();
-            return 1;
-        }
-    }
+    @Value("${app.documents.max-page-size:100}")
+    private int maxPageSize;
 
     public DocumentResponse saveDocument(MultipartFile file, String title, User user) throws IOException {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("File cannot be empty.");
         }
 
-        // ✅ Ensure upload directory exists
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
-        // ✅ Generate safe filename
-        String safeFileName = UUID.randomUUID() + "_" + sanitizeFilename(file.getOriginalFilename());
-        Path filePath = uploadPath.resolve(safeFileName);
+        return saveDocument(file.getInputStream(), file.getOriginalFilename(), title, user);
+    }
 
-        // ✅ Save file
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Store an upload read straight from a stream and register it for the user.
+     * The stream is consumed once: hash, size and format come out of that same pass.
+     * When the same bytes were uploaded and extracted before, the queued job only
+     * reuses the cached text and writes this document's chunks.
+     */
+    public DocumentResponse saveDocument(InputStream in, String originalFilename, String title, User user) throws IOException {
+        return createDocument(storageService.store(in, originalFilename).file(), title, user);
+    }
 
-        // ✅ Detect file type and count pages
-        int pageCount = detectPageCount(filePath, file.getContentType());
-        System.out.println("Final page count for " + title + ": " + pageCount);
+    /**
+     * Register a document for a file already in the store (holding one reference for it)
+     * and queue its extraction once the transaction commits. The reference is committed
+     * separately by the store, so it is given back if this transaction rolls back.
+     */
+    public DocumentResponse createDocument(StoredFile stored, String title, User user) {
+        releaseOnRollback(stored.getSha256());
 
-        // ✅ Build document
+        // ✅ Build document; page count, text and chunks are filled in by the extraction worker
         Document document = Document.builder()
                 .title(title)
-                .filePath(filePath.toString())
-                .pageCount(pageCount)
-                .content(null)
+                .filePath(stored.getPath())
+                .pageCount(stored.getPageCount())
+                .contentHash(stored.getSha256())
+                .fileSize(stored.getSize())
+                .format(stored.getFormat())
+                .isProcessed(false)
+                .processingStatus(ProcessingStatus.PENDING)
                 .createdAt(LocalDateTime.now())
                 .user(user)
                 .build();
 
         Document saved = documentRepository.save(document);
-
-        // Verify it was saved
-        System.out.println("Saved document with pageCount: " + saved.getPageCount());
+        extractionService.submitAfterCommit(saved.getId());
 
         return DocumentResponse.fromEntity(saved);
     }
 
-    public List<DocumentResponse> getUserDocuments(User user) {
-        return documentRepository.findAllByUser(user)
-                .stream()
-                .map(DocumentResponse::fromEntity)
-                .collect(Collectors.toList());
+    private void releaseOnRollback(String sha256) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                try {
+                    storageService.release(sha256);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to release stored file {} after rollback", sha256, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * One page of a user's documents, newest first, without their extracted content.
+     * Pages are keyset-paginated on (createdAt, id): pass the previous page's
+     * {@code nextCursor} to continue. {@code status} and {@code titlePrefix} are optional filters.
+     */
+    public CursorPage<DocumentListItem> getUserDocuments(Long userId, String cursor, Integer limit,
+                                                         ProcessingStatus status, String titlePrefix) {
+        int size = Math.min(Math.max(1, maxPageSize), limit != null && limit > 0 ? limit : defaultPageSize);
+        // One extra row tells whether another page follows
+        PageRequest page = PageRequest.of(0, size + 1);
+        String pattern = titlePrefix == null || titlePrefix.isEmpty() ? null : likePrefix(titlePrefix);
+
+        List<DocumentListItem> items;
+        if (cursor == null || cursor.isEmpty()) {
+            items = documentRepository.findListFirstPage(userId, status, pattern, page);
+        } else {
+            DocumentCursor after = DocumentCursor.decode(cursor);
+            items = documentRepository.findListPageAfter(userId, status, pattern, after.createdAt(), after.id(), page);
+        }
+
+        boolean hasMore = items.size() > size;
+        if (hasMore) {
+            items = items.subList(0, size);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            DocumentListItem last = items.get(items.size() - 1);
+            nextCursor = new DocumentCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    // LIKE pattern matching titles that start with the literal prefix; '!' is the escape character
+    private static String likePrefix(String prefix) {
+        return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+    /**
+     * Position in the document listing: the (createdAt, id) of the last row returned.
+     * Sent to clients as an opaque base64url token.
+     */
+    private record DocumentCursor(LocalDateTime createdAt, Long id) {
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static DocumentCursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Malformed cursor.");
+                }
+                return new DocumentCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.valueOf(raw.substring(separator + 1)));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed cursor.", e);
+            }
+        }
+    }
+
+    /**
+     * Extraction status of a document, or null if it does not exist or is not owned by the user.
+     */
+    public DocumentStatusResponse getDocumentStatus(Long id, Long userId) {
+        return documentRepository.findById(id)
+                .filter(document -> Objects.equals(document.getUser().getId(), userId))
+                .map(DocumentStatusResponse::fromEntity)
+                .orElse(null);
+    }
+
+    public boolean isOwnedBy(Long id, Long userId) {
+        return documentRepository.findById(id)
+                .filter(document -> document.getProcessingStatus() != ProcessingStatus.DELETING)
+                .map(document -> Objects.equals(document.getUser().getId(), userId))
+                .orElse(false);
+    }
+
+    /**
+     * What to send for a document download, or null if the document does not exist.
+     */
+    public FileDownloadService.DownloadTarget getDownloadTarget(Long id) {
+        return documentRepository.findById(id)
+                .map(document -> {
+                    Path path = Paths.get(document.getFilePath());
+                    return new FileDownloadService.DownloadTarget(
+                            path,
+                            document.getContentHash(),
+                            FileDownloadService.contentTypeOf(document.getFormat(), path),
+                            document.getTitle());
+                })
+                .orElse(null);
     }
 
     public DocumentResponse getDocumentById(Long id) {
@@ -192,9 +226,4 @@ public class DocumentService {
         Document updated = documentRepository.save(document);
         return DocumentResponse.fromEntity(updated);
     }
-
-    // ✅ Utility method to avoid dangerous characters in filenames
-    private String sanitizeFilename(String original) {
-        return original == null ? "unnamed" : original.replaceAll("[^a-zA-Z0-9.\\-_]", "_");
-    }
 }
\ No newline at end of file
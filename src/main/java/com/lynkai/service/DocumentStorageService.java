@@ -0,0 +1,342 @@
+package com.lynkai.service;
+
+import com.lynkai.model.DocumentFormat;
+import com.lynkai.model.StoredFile;
+import com.lynkai.repository.StoredFilePageRepository;
+import com.lynkai.repository.StoredFileRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed file store under {@code app.upload.dir}.
+ * <p>
+ * Uploads are streamed once to a temporary file while being hashed, counted and
+ * sniffed, then either moved to {@code <sha256><ext>} or, when those bytes are
+ * already stored, discarded in favour of the existing file. Each stored file keeps
+ * a reference count of the documents pointing at it.
+ */
+@Service
+@Slf4j
+public class DocumentStorageService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LOCK_STRIPES = 64;
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private final StoredFileRepository storedFileRepository;
+    private final StoredFilePageRepository storedFilePageRepository;
+    private final TransactionTemplate requiresNew;
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    // Streamed bodies are not covered by the multipart limits, so the same cap is applied here
+    @Value("${app.upload.max-size:${spring.servlet.multipart.max-file-size:50MB}}")
+    private DataSize maxUploadSize;
+
+    public DocumentStorageService(StoredFileRepository storedFileRepository,
+                                  StoredFilePageRepository storedFilePageRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.storedFileRepository = storedFileRepository;
+        this.storedFilePageRepository = storedFilePageRepository;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // Result of a single streaming pass over an upload
+    public record StoredUpload(Path path, String sha256, long size, DocumentFormat format) {}
+
+    // A stored file plus whether this upload reused bytes that were already on disk
+    public record StoreResult(StoredFile file, boolean deduplicated) {}
+
+    /**
+     * Largest single upload accepted, in bytes ({@code app.upload.max-size}).
+     */
+    public long getMaxUploadBytes() {
+        return maxUploadSize.toBytes();
+    }
+
+    /**
+     * Stream {@code in} into the store and take one reference on the resulting file,
+     * allowing at most {@link #getMaxUploadBytes()} bytes.
+     */
+    public StoreResult store(InputStream in, String originalFilename) throws IOException {
+        return store(in, originalFilename, getMaxUploadBytes());
+    }
+
+    /**
+     * Stream {@code in} into the store and take one reference on the resulting file.
+     * The stream is read exactly once and closed afterwards. Reading stops with
+     * MaxUploadSizeExceededException as soon as more than {@code maxBytes} arrive;
+     * nothing is kept in that case.
+     */
+    public StoreResult store(InputStream in, String originalFilename, long maxBytes) throws IOException {
+        StoredUpload upload = streamToTemp(in, originalFilename, maxBytes);
+        if (upload.size() == 0) {
+            delete(upload.path());
+            throw new IllegalArgumentException("File cannot be empty.");
+        }
+        return register(upload);
+    }
+
+    /**
+     * Take over a file already fully written under the upload directory (e.g. an
+     * assembled resumable upload) and take one reference on the stored result.
+     * The file is hashed in place and moved into the store, or deleted when the same
+     * bytes are already stored. When {@code expectedSha256} is given and does not match,
+     * nothing is registered, the file is left where it is and IllegalArgumentException is thrown.
+     */
+    public StoreResult adopt(Path file, String originalFilename, String expectedSha256) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        DocumentFormat format;
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int read = in.readNBytes(buffer, 0, DocumentFormat.SNIFF_LENGTH);
+            format = DocumentFormat.sniff(buffer, read, originalFilename);
+            while (read > 0) {
+                digest.update(buffer, 0, read);
+                size += read;
+                read = in.read(buffer);
+            }
+        }
+        if (size == 0) {
+            throw new IllegalArgumentException("File cannot be empty.");
+        }
+
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+            throw new IllegalArgumentException("Checksum mismatch: expected " + expectedSha256 + ", got " + sha256);
+        }
+        return register(new StoredUpload(file, sha256, size, format));
+    }
+
+    /**
+     * Give back one reference taken by {@link #store}. The last reference removes
+     * the stored file, its cached pages and the bytes on disk; returns whether that happened.
+     */
+    public boolean release(String sha256) {
+        return release(sha256, () -> true);
+    }
+
+    /**
+     * {@link #release(String)}, but only if {@code claim}, run first in the same
+     * transaction, returns true. A caller that records the release in {@code claim}
+     * can retry without ever giving back the same reference twice.
+     */
+    public boolean release(String sha256, BooleanSupplier claim) {
+        ReentrantLock lock = stripes[Math.floorMod(sha256.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            String orphan = requiresNew.execute(status -> {
+                if (!claim.getAsBoolean()) {
+                    return null;
+                }
+                storedFileRepository.decrementRefCount(sha256);
+                StoredFile file = storedFileRepository.findBySha256(sha256).orElse(null);
+                if (file == null || file.getRefCount() > 0) {
+                    return null;
+                }
+                storedFilePageRepository.deleteByStoredFileId(file.getId());
+                storedFileRepository.delete(file);
+                return file.getPath();
+            });
+            if (orphan == null) {
+                return false;
+            }
+            delete(Paths.get(orphan));
+            log.debug("Released last reference to {}", orphan);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether a file with this content is in the store.
+     */
+    public boolean isStored(String sha256) {
+        return storedFileRepository.existsBySha256(sha256);
+    }
+
+    /**
+     * What to send for a file requested by name from the upload directory, or null
+     * unless the name is a file directly in it. In-flight uploads and resumable
+     * sessions live in hidden subdirectories and are never served.
+     */
+    public FileDownloadService.DownloadTarget getDownloadTarget(String filename) {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path path = root.resolve(filename).normalize();
+        if (!root.equals(path.getParent()) || path.getFileName().toString().startsWith(".")) {
+            return null;
+        }
+
+        // Content-addressed files are named <sha256><ext>; older uploads have no hash
+        String name = path.getFileName().toString();
+        int dot = name.indexOf('.');
+        String stem = dot < 0 ? name : name.substring(0, dot);
+        StoredFile stored = SHA256_HEX.matcher(stem).matches()
+                ? storedFileRepository.findBySha256(stem).orElse(null)
+                : null;
+
+        return new FileDownloadService.DownloadTarget(
+                path,
+                stored != null ? stored.getSha256() : null,
+                FileDownloadService.contentTypeOf(stored != null ? stored.getFormat() : null, path),
+                name);
+    }
+
+    /**
+     * Remove a stored file, ignoring files that are already gone.
+     */
+    public void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete stored file {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Move a fully written temporary file into the store, or drop it if the same
+     * content is already there. The reference is committed in its own transaction
+     * while the hash stripe is locked, so concurrent identical uploads on this node
+     * always see each other.
+     */
+    private StoreResult register(StoredUpload upload) throws IOException {
+        ReentrantLock lock = stripes[Math.floorMod(upload.sha256().hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            StoredFile existing = acquireExisting(upload.sha256());
+            if (existing != null) {
+                delete(upload.path());
+                log.debug("Upload deduplicated against {}", existing.getPath());
+                return new StoreResult(existing, true);
+            }
+
+            Path target = Paths.get(uploadDir).resolve(upload.sha256() + upload.format().getExtension());
+            Files.move(upload.path(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            try {
+                StoredFile created = requiresNew.execute(status -> storedFileRepository.save(StoredFile.builder()
+                        .sha256(upload.sha256())
+                        .path(target.toString())
+                        .size(upload.size())
+                        .format(upload.format())
+                        .refCount(1)
+                        .build()));
+                return new StoreResult(created, false);
+            } catch (DataIntegrityViolationException e) {
+                // Another node stored the same bytes first; the file we moved is identical
+                existing = acquireExisting(upload.sha256());
+                if (existing == null) {
+                    deleteUnlessStored(upload.sha256(), target);
+                    throw e;
+                }
+                return new StoreResult(existing, true);
+            } catch (RuntimeException e) {
+                deleteUnlessStored(upload.sha256(), target);
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A file moved into the store whose row was never written is an orphan, unless another node's row took it over
+    private void deleteUnlessStored(String sha256, Path target) {
+        try {
+            if (storedFileRepository.existsBySha256(sha256)) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            // Without an answer the file may be another node's; leaking it beats losing it
+            log.warn("Cannot tell whether {} is still referenced, keeping it: {}", target, e.getMessage());
+            return;
+        }
+        delete(target);
+    }
+
+    private StoredFile acquireExisting(String sha256) {
+        return requiresNew.execute(status -> storedFileRepository.incrementRefCount(sha256) > 0
+                ? storedFileRepository.findBySha256(sha256).orElse(null)
+                : null);
+    }
+
+    private StoredUpload streamToTemp(InputStream in, String originalFilename, long maxBytes) throws IOException {
+        Path tempDir = Paths.get(uploadDir).resolve(".tmp");
+        Files.createDirectories(tempDir);
+        Path target = tempDir.resolve(UUID.randomUUID() + ".part");
+
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+
+        try (in; FileChannel channel = FileChannel.open(target,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+
+            // The first bytes decide the format; they are written like any other chunk
+            int read = in.readNBytes(buffer, 0, DocumentFormat.SNIFF_LENGTH);
+            DocumentFormat format = DocumentFormat.sniff(buffer, read, originalFilename);
+
+            while (read > 0) {
+                size += read;
+                if (size > maxBytes) {
+                    throw new MaxUploadSizeExceededException(maxBytes);
+                }
+                digest.update(buffer, 0, read);
+                writeFully(channel, ByteBuffer.wrap(buffer, 0, read));
+                read = in.read(buffer);
+            }
+
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            log.debug("Received {} bytes ({}, sha256={})", size, format, sha256);
+            return new StoredUpload(target, sha256, size, format);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer chunk) throws IOException {
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
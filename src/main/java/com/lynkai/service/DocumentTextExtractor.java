@@ -0,0 +1,329 @@
+package com.lynkai.service;
+
+import com.lynkai.model.DocumentFormat;
+import com.lynkai.model.StoredFile;
+import com.lynkai.model.StoredFilePage;
+import com.lynkai.repository.StoredFilePageRepository;
+import com.lynkai.repository.StoredFileRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.hwpf.extractor.WordExtractor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts plain text from PDF, DOCX and DOC files.
+ * <p>
+ * A PDF is split into ranges of {@code app.extraction.text.pages-per-batch} pages,
+ * stripped in parallel on a pool of {@code app.extraction.text.parallelism} threads.
+ * PDFBox documents are not thread-safe, so every range loads its own copy of the
+ * file, with scratch buffers on disk. The first range in flight runs under the
+ * extraction permit of the job; every further copy is charged to the extraction
+ * admission budget at the file's size, and when the budget is spent the file goes on
+ * with the ranges it has. Ranges are persisted in page order as soon as they and all
+ * earlier ones are done, so page offsets are known at write time and a long document
+ * becomes readable progressively.
+ * Text is stored per {@link StoredFile}, so duplicates of an extracted file reuse it.
+ */
+@Service
+@Slf4j
+public class DocumentTextExtractor {
+
+    // Separator placed between pages in the full document text
+    static final String PAGE_SEPARATOR = "\n\n";
+
+    private static final String WORD_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    private final StoredFilePageRepository pageRepository;
+    private final StoredFileRepository storedFileRepository;
+    private final AdmissionControlService admissionControlService;
+    private final int pagesPerBatch;
+    private final int parallelism;
+    private final ForkJoinPool rangePool;
+    private final XMLInputFactory xmlInputFactory;
+
+    // Stored files being extracted on this node; duplicates wait for the same result
+    private final ConcurrentHashMap<Long, CompletableFuture<String>> inProgress = new ConcurrentHashMap<>();
+
+    public DocumentTextExtractor(StoredFilePageRepository pageRepository,
+                                 StoredFileRepository storedFileRepository,
+                                 AdmissionControlService admissionControlService,
+                                 @Value("${app.extraction.text.pages-per-batch:25}") int pagesPerBatch,
+                                 @Value("${app.extraction.text.parallelism:4}") int parallelism) {
+        this.pageRepository = pageRepository;
+        this.storedFileRepository = storedFileRepository;
+        this.admissionControlService = admissionControlService;
+        this.pagesPerBatch = Math.max(1, pagesPerBatch);
+        this.parallelism = Math.max(1, parallelism);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.rangePool = new ForkJoinPool(this.parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("pdf-text-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Full text of a stored file whose pages were already extracted.
+     */
+    public String loadText(StoredFile storedFile) {
+        return String.join(PAGE_SEPARATOR, pageRepository.findTextsByStoredFileId(storedFile.getId()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rangePool.shutdownNow();
+    }
+
+    /**
+     * Extract the text of a stored file, persisting its pages, and return the full text.
+     * Parallel page ranges are charged to {@code userId}'s extraction budget.
+     */
+    public String extract(StoredFile storedFile, int pageCount, Long userId) throws IOException {
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inProgress.putIfAbsent(storedFile.getId(), mine);
+        if (running != null) {
+            return running.join();
+        }
+
+        try {
+            String text = extractAndStore(storedFile, pageCount, userId);
+            mine.complete(text);
+            return text;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inProgress.remove(storedFile.getId());
+        }
+    }
+
+    /**
+     * Extract the text of a file that is not in the store. Nothing is persisted.
+     */
+    public String extract(Path path, DocumentFormat format, int pageCount, Long userId) throws IOException {
+        StringBuilder text = new StringBuilder();
+        forEachPageRange(path, format, pageCount, userId, pages -> appendPages(text, pages));
+        return text.toString();
+    }
+
+    private String extractAndStore(StoredFile storedFile, int pageCount, Long userId) throws IOException {
+        pageRepository.deleteByStoredFileId(storedFile.getId());
+
+        StringBuilder text = new StringBuilder();
+        int[] nextPage = {1};
+        forEachPageRange(Path.of(storedFile.getPath()), storedFile.getFormat(), pageCount, userId, pages -> {
+            List<StoredFilePage> rows = new ArrayList<>(pages.size());
+            for (String pageText : pages) {
+                if (!text.isEmpty()) {
+                    text.append(PAGE_SEPARATOR);
+                }
+                rows.add(StoredFilePage.builder()
+                        .storedFile(storedFile)
+                        .pageNumber(nextPage[0]++)
+                        .charOffset(text.length())
+                        .text(pageText)
+                        .build());
+                text.append(pageText);
+            }
+            pageRepository.saveAll(rows);
+        });
+
+        storedFileRepository.cacheTextLength(storedFile.getId(), (long) text.length());
+        log.info("Extracted {} pages ({} chars) from {}", nextPage[0] - 1, text.length(), storedFile.getPath());
+        return text.toString();
+    }
+
+    private static void appendPages(StringBuilder text, List<String> pages) {
+        for (String page : pages) {
+            if (!text.isEmpty()) {
+                text.append(PAGE_SEPARATOR);
+            }
+            text.append(page);
+        }
+    }
+
+    private interface PageRangeConsumer {
+        void accept(List<String> pages) throws IOException;
+    }
+
+    /**
+     * Hand the pages of a file to {@code consumer} in page order, one range at a time.
+     */
+    private void forEachPageRange(Path path, DocumentFormat format, int pageCount, Long userId,
+                                  PageRangeConsumer consumer) throws IOException {
+        switch (format) {
+            case PDF -> forEachPdfRange(path, pageCount, userId, consumer);
+            case DOCX -> consumer.accept(List.of(extractDocx(path)));
+            case DOC -> consumer.accept(List.of(extractDoc(path)));
+            default -> consumer.accept(List.of());
+        }
+    }
+
+    // A range being stripped, and the extra permit it holds, if any
+    private record Range(ForkJoinTask<List<String>> task, AdmissionControlService.Permit permit) {}
+
+    private void forEachPdfRange(Path path, int pageCount, Long userId, PageRangeConsumer consumer) throws IOException {
+        if (pageCount <= pagesPerBatch) {
+            consumer.accept(stripRange(path, 1, pageCount));
+            return;
+        }
+
+        long fileSize = Files.size(path);
+        Deque<Range> inFlight = new ArrayDeque<>();
+        boolean ownPermitFree = true;
+        int next = 1;
+        try {
+            while (next <= pageCount || !inFlight.isEmpty()) {
+                // Top up to the pool's parallelism; every copy after the first must be admitted
+                while (next <= pageCount && inFlight.size() < parallelism) {
+                    AdmissionControlService.Permit permit = null;
+                    if (!ownPermitFree) {
+                        permit = admissionControlService.tryAdmitExtraction(userId, fileSize);
+                        if (permit == null) {
+                            break;
+                        }
+                    }
+                    int first = next;
+                    int last = Math.min(pageCount, first + pagesPerBatch - 1);
+                    inFlight.add(new Range(rangePool.submit(() -> stripRange(path, first, last)), permit));
+                    ownPermitFree = false;
+                    next = last + 1;
+                }
+
+                Range head = inFlight.poll();
+                try {
+                    consumer.accept(await(head.task()));
+                } finally {
+                    if (head.permit() != null) {
+                        head.permit().close();
+                    } else {
+                        ownPermitFree = true;
+                    }
+                }
+            }
+        } finally {
+            for (Range range : inFlight) {
+                range.task().cancel(false);
+                if (range.permit() != null) {
+                    range.permit().close();
+                }
+            }
+        }
+    }
+
+    // Pages first..last of a PDF from a copy of its own; pages past the end of the file are left out
+    private static List<String> stripRange(Path path, int first, int last) throws IOException {
+        try (PDDocument document = PDDocument.load(path.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            int end = Math.min(last, document.getNumberOfPages());
+            PDFTextStripper stripper = new PDFTextStripper();
+            List<String> texts = new ArrayList<>(Math.max(0, end - first + 1));
+            for (int page = first; page <= end; page++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("PDF text extraction interrupted");
+                }
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                texts.add(stripper.getText(document).strip());
+            }
+            return texts;
+        }
+    }
+
+    private static List<String> await(ForkJoinTask<List<String>> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PDF text extraction interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("PDF text extraction failed", e.getCause());
+        }
+    }
+
+    // One StAX pass over word/document.xml; paragraphs become lines
+    private String extractDocx(Path path) throws IOException {
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            ZipEntry entry = zip.getEntry("word/document.xml");
+            if (entry == null) {
+                throw new IOException("DOCX has no word/document.xml");
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+                StringBuilder text = new StringBuilder();
+                boolean inText = false;
+                try {
+                    while (reader.hasNext()) {
+                        int event = reader.next();
+                        if (event == XMLStreamConstants.START_ELEMENT && WORD_NS.equals(reader.getNamespaceURI())) {
+                            switch (reader.getLocalName()) {
+                                case "t" -> inText = true;
+                                case "tab" -> text.append('\t');
+                                case "br", "cr" -> text.append('\n');
+                                default -> {
+                                }
+                            }
+                        } else if (event == XMLStreamConstants.CHARACTERS && inText) {
+                            text.append(reader.getText());
+                        } else if (event == XMLStreamConstants.END_ELEMENT && WORD_NS.equals(reader.getNamespaceURI())) {
+                            switch (reader.getLocalName()) {
+                                case "t" -> inText = false;
+                                case "p" -> text.append('\n');
+                                default -> {
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+                return text.toString().strip();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed DOCX XML: " + e.getMessage(), e);
+        }
+    }
+
+    private static String extractDoc(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path);
+             WordExtractor extractor = new WordExtractor(in)) {
+            return extractor.getText().strip();
+        }
+    }
+}
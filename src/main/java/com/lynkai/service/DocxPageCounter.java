@@ -0,0 +1,151 @@
+package com.lynkai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads or estimates the page count of a DOCX file in near-constant memory.
+ * <p>
+ * The package is opened with {@link ZipFile}, so only the central directory and
+ * the entries we ask for are read. {@code docProps/app.xml} usually carries the
+ * page count Word saved; when it does not, a single StAX pass over
+ * {@code word/document.xml} counts paragraphs, tables and page breaks without
+ * building a DOM.
+ */
+@Component
+@Slf4j
+public class DocxPageCounter {
+
+    private static final String WORD_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    // Estimate: ~35-40 paragraphs per page, tables count as 5 paragraphs each
+    private static final double PARAGRAPHS_PER_PAGE = 35.0;
+    private static final int TABLE_WEIGHT = 5;
+
+    private final XMLInputFactory xmlInputFactory;
+
+    public DocxPageCounter() {
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public int countPages(Path file) throws IOException {
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            int pages = readSavedPageCount(zip);
+            if (pages > 0) {
+                log.debug("DOCX page count from app.xml: {}", pages);
+                return pages;
+            }
+            return estimatePageCount(zip);
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed DOCX XML: " + e.getMessage(), e);
+        }
+    }
+
+    private int readSavedPageCount(ZipFile zip) throws IOException, XMLStreamException {
+        ZipEntry entry = zip.getEntry("docProps/app.xml");
+        if (entry == null) {
+            return -1;
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "Pages".equals(reader.getLocalName())) {
+                        String text = reader.getElementText().trim();
+                        return text.matches("\\d{1,9}") ? Integer.parseInt(text) : -1;
+                    }
+                }
+                return -1;
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Count body-level paragraphs with text, body-level tables and explicit page breaks.
+     * Paragraphs inside tables are covered by the table weight.
+     */
+    private int estimatePageCount(ZipFile zip) throws IOException, XMLStreamException {
+        ZipEntry entry = zip.getEntry("word/document.xml");
+        if (entry == null) {
+            throw new IOException("DOCX has no word/document.xml");
+        }
+
+        int contentParagraphs = 0;
+        int tables = 0;
+        int pageBreaks = 0;
+
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+            try {
+                int tableDepth = 0;
+                boolean inParagraph = false;
+                boolean inText = false;
+                boolean paragraphHasText = false;
+
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT && WORD_NS.equals(reader.getNamespaceURI())) {
+                        switch (reader.getLocalName()) {
+                            case "tbl" -> {
+                                if (tableDepth++ == 0) {
+                                    tables++;
+                                }
+                            }
+                            case "p" -> {
+                                inParagraph = tableDepth == 0;
+                                paragraphHasText = false;
+                            }
+                            case "t" -> inText = inParagraph;
+                            case "br" -> {
+                                if ("page".equals(reader.getAttributeValue(WORD_NS, "type"))) {
+                                    pageBreaks++;
+                                }
+                            }
+                            default -> {
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.CHARACTERS && inText && !paragraphHasText) {
+                        paragraphHasText = !reader.isWhiteSpace() && !reader.getText().isBlank();
+                    } else if (event == XMLStreamConstants.END_ELEMENT && WORD_NS.equals(reader.getNamespaceURI())) {
+                        switch (reader.getLocalName()) {
+                            case "tbl" -> tableDepth--;
+                            case "t" -> inText = false;
+                            case "p" -> {
+                                if (inParagraph && paragraphHasText) {
+                                    contentParagraphs++;
+                                }
+                                inParagraph = false;
+                            }
+                            default -> {
+                            }
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        int contentUnits = contentParagraphs + tables * TABLE_WEIGHT;
+        int estimatedPages = Math.max(1, (int) Math.ceil(contentUnits / PARAGRAPHS_PER_PAGE));
+        int pages = Math.max(estimatedPages, pageBreaks + 1);
+
+        log.debug("DOCX estimation - content paragraphs: {}, tables: {}, page breaks: {}, estimated pages: {}",
+                contentParagraphs, tables, pageBreaks, pages);
+        return pages;
+    }
+}
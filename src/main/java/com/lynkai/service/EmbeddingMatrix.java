@@ -0,0 +1,117 @@
+package com.lynkai.service;
+
+import com.lynkai.model.EmbeddingCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * A document's chunk embeddings as one contiguous block of fixed-size codes in a
+ * direct (off-heap) buffer, in the layout of an {@link EmbeddingCodec}.
+ * Codes are of unit vectors, so scores against a normalized query approximate
+ * (FLOAT32: equal) the cosine similarity.
+ */
+final class EmbeddingMatrix {
+
+    private final EmbeddingCodec codec;
+    private final int dimension;
+    private final int codeLength;
+    private final long[] chunkIds;
+    private final int[] chunkIndexes;
+    private final ByteBuffer codes;
+    private final FloatBuffer floats;
+    private int size;
+
+    EmbeddingMatrix(EmbeddingCodec codec, int capacity, int dimension) {
+        this.codec = codec;
+        this.dimension = dimension;
+        this.codeLength = codec.codeLength(dimension);
+        this.chunkIds = new long[capacity];
+        this.chunkIndexes = new int[capacity];
+        this.codes = ByteBuffer.allocateDirect(capacity * codeLength).order(ByteOrder.LITTLE_ENDIAN);
+        // Header-less float32 rows can go straight to the similarity kernel
+        this.floats = codec == EmbeddingCodec.FLOAT32 ? codes.asFloatBuffer() : null;
+    }
+
+    void add(long chunkId, int chunkIndex, byte[] code) {
+        if (code.length != codeLength) {
+            throw new IllegalStateException("Chunk " + chunkId + " has a " + code.length
+                    + "-byte code, expected " + codeLength);
+        }
+        codes.put(size * codeLength, code);
+        chunkIds[size] = chunkId;
+        chunkIndexes[size] = chunkIndex;
+        size++;
+    }
+
+    /**
+     * {@code scores[r]} = similarity of row r to a normalized query, for every row.
+     */
+    void scoreAll(SimilarityKernel kernel, float[] query, float[] scores) {
+        switch (codec) {
+            case FLOAT32 -> kernel.dotAll(floats, size, dimension, query, scores);
+            case INT8 -> scoreInt8(query, scores);
+            case BINARY -> scoreBinary(query, scores);
+        }
+    }
+
+    EmbeddingCodec codec() {
+        return codec;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long chunkId(int row) {
+        return chunkIds[row];
+    }
+
+    int chunkIndex(int row) {
+        return chunkIndexes[row];
+    }
+
+    // Off-heap bytes plus the id arrays
+    long sizeInBytes() {
+        return (long) codes.capacity() + chunkIds.length * (long) (Long.BYTES + Integer.BYTES);
+    }
+
+    // The query is quantized the same way, so the inner loop is an integer dot product
+    private void scoreInt8(float[] query, float[] scores) {
+        byte[] queryCode = EmbeddingCodec.INT8.encode(query);
+        float queryScale = ByteBuffer.wrap(queryCode).order(ByteOrder.LITTLE_ENDIAN).getFloat();
+        byte[] q = Arrays.copyOfRange(queryCode, Float.BYTES, queryCode.length);
+
+        byte[] row = new byte[dimension];
+        for (int r = 0; r < size; r++) {
+            int base = r * codeLength;
+            float scale = codes.getFloat(base);
+            codes.get(base + Float.BYTES, row);
+            int sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                sum += row[i] * q[i];
+            }
+            scores[r] = sum * scale * queryScale;
+        }
+    }
+
+    // Hamming distance between sign bits, mapped to the cosine it estimates: cos(pi * h / dim)
+    private void scoreBinary(float[] query, float[] scores) {
+        long[] bits = EmbeddingCodec.signBits(query);
+        double angleStep = Math.PI / dimension;
+        for (int r = 0; r < size; r++) {
+            int base = r * codeLength + Integer.BYTES;
+            int distance = 0;
+            for (int w = 0; w < bits.length; w++) {
+                distance += Long.bitCount(codes.getLong(base + w * Long.BYTES) ^ bits[w]);
+            }
+            scores[r] = (float) Math.cos(distance * angleStep);
+        }
+    }
+}
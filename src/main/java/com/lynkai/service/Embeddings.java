@@ -0,0 +1,54 @@
+package com.lynkai.service;
+
+import com.lynkai.model.EmbeddingCodec;
+
+/**
+ * Helpers shared by the similarity search code.
+ */
+public final class Embeddings {
+
+    private Embeddings() {
+    }
+
+    /**
+     * Codec of a stored embedding; rows written before codecs existed are FLOAT32.
+     */
+    public static EmbeddingCodec codecOf(EmbeddingCodec stored) {
+        return stored != null ? stored : EmbeddingCodec.FLOAT32;
+    }
+
+    /**
+     * Best available vector of a stored chunk: the full-precision copy if there is one.
+     */
+    public static float[] decode(EmbeddingCodec codec, byte[] embedding, byte[] embeddingFull) {
+        if (embeddingFull != null) {
+            return EmbeddingCodec.FLOAT32.decode(embeddingFull);
+        }
+        return codecOf(codec).decode(embedding);
+    }
+
+    /**
+     * Scale {@code vector} to unit length in place; zero vectors are left as they are.
+     */
+    public static void normalize(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum == 0) {
+            return;
+        }
+        float scale = (float) (1.0 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+
+    static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
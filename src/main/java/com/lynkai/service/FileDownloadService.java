@@ -0,0 +1,255 @@
+package com.lynkai.service;
+
+import com.lynkai.model.DocumentFormat;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends stored files with HTTP caching and byte-range support.
+ * <p>
+ * Responses carry a strong ETag derived from the content hash, so repeat opens
+ * revalidate with a 304 instead of a full download. Range requests (single and
+ * multi-range) are answered with 206. File bytes go out through Tomcat's
+ * sendfile when the connector supports it, otherwise through
+ * {@link FileChannel#transferTo}, never through a heap copy of the file.
+ */
+@Service
+public class FileDownloadService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Stored files are content-addressed and never change once hashed
+    private static final String IMMUTABLE_CACHE = "private, max-age=86400";
+    private static final String REVALIDATE_CACHE = "private, no-cache";
+
+    // A file to send; contentHash may be null for files stored before hashing existed
+    public record DownloadTarget(Path path, String contentHash, String contentType, String filename) {}
+
+    /**
+     * Content type from the format sniffed at upload time, falling back to the
+     * file extension (no filesystem probing) for files stored before sniffing existed.
+     */
+    public static String contentTypeOf(DocumentFormat format, Path path) {
+        if (format != null && format != DocumentFormat.UNKNOWN) {
+            return format.getMimeType();
+        }
+        return MediaTypeFactory.getMediaType(path.getFileName().toString())
+                .map(MediaType::toString)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    public void send(DownloadTarget target, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path path = target.path();
+        if (!Files.isRegularFile(path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        String etag = target.contentHash() != null ? "\"" + target.contentHash() + "\"" : null;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, etag != null ? IMMUTABLE_CACHE : REVALIDATE_CACHE);
+
+        // Sets ETag / Last-Modified, and answers 304 or 412 when the preconditions say so
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        boolean notModified = etag != null
+                ? webRequest.checkNotModified(etag, lastModified)
+                : webRequest.checkNotModified(lastModified);
+        if (notModified) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                .filename(target.filename(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        List<long[]> regions;
+        try {
+            regions = requestedRegions(request, etag, lastModified, length);
+        } catch (IllegalArgumentException e) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        boolean head = HttpMethod.HEAD.matches(request.getMethod());
+        if (regions.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            sendRegion(path, 0, length, target.contentType(), request, response, head);
+        } else if (regions.size() == 1) {
+            long[] region = regions.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(region, length));
+            sendRegion(path, region[0], region[1], target.contentType(), request, response, head);
+        } else {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            sendMultipart(path, regions, length, target.contentType(), response, head);
+        }
+    }
+
+    /**
+     * Regions as {start, count}; empty means the whole file, which is also the answer to
+     * a Range header that cannot be parsed (RFC 9110 says to ignore it). Ranges starting
+     * past the end are dropped; IllegalArgumentException is thrown when none is left.
+     */
+    private List<long[]> requestedRegions(HttpServletRequest request, String etag, long lastModified, long length) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, etag, lastModified)) {
+            return List.of();
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+
+        List<long[]> regions = new ArrayList<>();
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start;
+            long end;
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                continue; // first byte past the end of the file
+            }
+            if (end < start) {
+                continue; // suffix of zero bytes
+            }
+            regions.add(new long[]{start, end - start + 1});
+            total += end - start + 1;
+        }
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("No satisfiable range");
+        }
+        // Same guard Spring applies to resource regions: overlapping ranges must not amplify the file
+        if (total > length) {
+            throw new IllegalArgumentException("Ranges exceed file length");
+        }
+        return regions;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void sendRegion(Path path, long start, long count, String contentType,
+                                   HttpServletRequest request, HttpServletResponse response,
+                                   boolean head) throws IOException {
+        response.setContentType(contentType);
+        response.setContentLengthLong(count);
+        if (head || count == 0) {
+            return;
+        }
+
+        // Let Tomcat hand the region to the kernel after the servlet returns
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transfer(channel, start, count, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private static void sendMultipart(Path path, List<long[]> regions, long length, String contentType,
+                                      HttpServletResponse response, boolean head) throws IOException {
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (long[] region : regions) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(region, length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + region[1];
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int i = 0; i < regions.size(); i++) {
+                writeFully(out, ByteBuffer.wrap(partHeaders.get(i)));
+                transfer(channel, regions.get(i)[0], regions.get(i)[1], out);
+            }
+        }
+        writeFully(out, ByteBuffer.wrap(closing));
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel out) throws IOException {
+        while (count > 0) {
+            long sent = channel.transferTo(position, count, out);
+            if (sent <= 0) {
+                throw new EOFException("File ended before the requested range");
+            }
+            position += sent;
+            count -= sent;
+        }
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static String contentRange(long[] region, long length) {
+        return "bytes " + region[0] + "-" + (region[0] + region[1] - 1) + "/" + length;
+    }
+}
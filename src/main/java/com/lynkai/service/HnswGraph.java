@@ -0,0 +1,417 @@
+package com.lynkai.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * Hierarchical navigable small world graph over the vectors of a {@link VectorSegmentStore}.
+ * <p>
+ * Nodes are the store's node numbers. Similarity is the dot product of normalized
+ * vectors, so higher is closer. Tombstoned nodes stay in the graph for navigation
+ * but are never returned. Not thread-safe; {@link UserVectorIndex} serializes writers.
+ */
+final class HnswGraph {
+
+    private static final int SNAPSHOT_MAGIC = 0x4C594E47;
+
+    private final VectorSegmentStore store;
+    private final SimilarityKernel kernel;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom();
+
+    // links[node][level] = {count, neighbour...}
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswGraph(VectorSegmentStore store, SimilarityKernel kernel, int m, int efConstruction) {
+        this.store = store;
+        this.kernel = kernel;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.links = new int[Math.max(64, store.size())][][];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Link a node that was just appended to the store. Nodes must be inserted in order.
+     */
+    void insert(int node) {
+        if (node != size) {
+            throw new IllegalStateException("Expected node " + size + ", got " + node);
+        }
+        if (node == links.length) {
+            links = Arrays.copyOf(links, node * 2);
+        }
+
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + maxConnections(l)];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        float[] query = store.vector(node);
+        int current = entryPoint;
+        float currentScore = store.dot(kernel, current, query);
+        for (int l = maxLevel; l > level; l--) {
+            long best = greedy(query, current, currentScore, l);
+            current = nodeOf(best);
+            currentScore = scoreOf(best);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            long[] candidates = searchLayer(query, current, currentScore, efConstruction, l, new BitSet(size));
+            int[] selected = selectNeighbours(query, candidates, m);
+            int[] own = links[node][l];
+            own[0] = selected.length;
+            System.arraycopy(selected, 0, own, 1, selected.length);
+            for (int neighbour : selected) {
+                connect(neighbour, node, l);
+            }
+            current = nodeOf(candidates[0]);
+            currentScore = scoreOf(candidates[0]);
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * Up to {@code k} live nodes closest to a normalized query, as encoded (score, node) pairs, best first.
+     */
+    long[] search(float[] query, int k, int ef) {
+        if (entryPoint < 0) {
+            return new long[0];
+        }
+        int current = entryPoint;
+        float currentScore = store.dot(kernel, current, query);
+        for (int l = maxLevel; l > 0; l--) {
+            long best = greedy(query, current, currentScore, l);
+            current = nodeOf(best);
+            currentScore = scoreOf(best);
+        }
+
+        long[] candidates = searchLayer(query, current, currentScore, Math.max(ef, k), 0, new BitSet(size));
+        long[] live = new long[Math.min(k, candidates.length)];
+        int count = 0;
+        for (int i = 0; i < candidates.length && count < live.length; i++) {
+            if (!store.isDeleted(nodeOf(candidates[i]))) {
+                live[count++] = candidates[i];
+            }
+        }
+        return count == live.length ? live : Arrays.copyOf(live, count);
+    }
+
+    static int nodeOf(long encoded) {
+        return (int) encoded;
+    }
+
+    static float scoreOf(long encoded) {
+        int sortable = (int) (encoded >>> 32);
+        return Float.intBitsToFloat(sortable ^ ((sortable >> 31) & 0x7fffffff));
+    }
+
+    // Packs a score and node so that comparing the longs compares scores first
+    private static long encode(float score, int node) {
+        int bits = Float.floatToIntBits(score);
+        int sortable = bits ^ ((bits >> 31) & 0x7fffffff);
+        return ((long) sortable << 32) | (node & 0xffffffffL);
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private long greedy(float[] query, int start, float startScore, int level) {
+        int current = start;
+        float best = startScore;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float score = store.dot(kernel, neighbours[i], query);
+                if (score > best) {
+                    best = score;
+                    current = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return encode(best, current);
+    }
+
+    /**
+     * Beam search on one layer; returns up to {@code ef} encoded candidates, best first.
+     */
+    private long[] searchLayer(float[] query, int start, float startScore, int ef, int level, BitSet visited) {
+        LongHeap candidates = new LongHeap(ef * 2);   // best first, stored inverted
+        LongHeap results = new LongHeap(ef + 1);      // worst first
+        long first = encode(startScore, start);
+        candidates.push(~first);
+        results.push(first);
+        visited.set(start);
+
+        while (!candidates.isEmpty()) {
+            long candidate = ~candidates.pop();
+            if (results.size() >= ef && candidate < results.peek()) {
+                break;
+            }
+            int[] neighbours = links[nodeOf(candidate)][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                long encoded = encode(store.dot(kernel, neighbour, query), neighbour);
+                if (results.size() < ef || encoded > results.peek()) {
+                    candidates.push(~encoded);
+                    results.push(encoded);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+
+        long[] sorted = new long[results.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = results.pop();
+        }
+        return sorted;
+    }
+
+    /**
+     * Neighbour selection heuristic from the HNSW paper: keep a candidate only if it is
+     * closer to the base than to any neighbour already kept, then top up with the
+     * closest of the rest. Candidates are encoded relative to the base, best first.
+     */
+    private int[] selectNeighbours(float[] base, long[] candidates, int limit) {
+        int[] selected = new int[Math.min(limit, candidates.length)];
+        float[][] selectedVectors = new float[selected.length][];
+        boolean[] taken = new boolean[candidates.length];
+        int count = 0;
+
+        for (int i = 0; i < candidates.length && count < selected.length; i++) {
+            int candidate = nodeOf(candidates[i]);
+            float toBase = scoreOf(candidates[i]);
+            float[] vector = store.vector(candidate);
+            boolean diverse = true;
+            for (int j = 0; j < count; j++) {
+                if (dot(vector, selectedVectors[j]) > toBase) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count] = candidate;
+                selectedVectors[count] = vector;
+                taken[i] = true;
+                count++;
+            }
+        }
+        for (int i = 0; i < candidates.length && count < selected.length; i++) {
+            if (!taken[i]) {
+                selected[count++] = nodeOf(candidates[i]);
+            }
+        }
+        return selected;
+    }
+
+    // Add a back-link, re-selecting the neighbour's links when it has too many
+    private void connect(int node, int neighbour, int level) {
+        int[] list = links[node][level];
+        int max = maxConnections(level);
+        if (list[0] < max) {
+            list[++list[0]] = neighbour;
+            return;
+        }
+
+        float[] base = store.vector(node);
+        long[] candidates = new long[max + 1];
+        for (int i = 1; i <= max; i++) {
+            candidates[i - 1] = encode(store.dot(kernel, list[i], base), list[i]);
+        }
+        candidates[max] = encode(store.dot(kernel, neighbour, base), neighbour);
+        Arrays.sort(candidates);
+        reverse(candidates);
+
+        int[] selected = selectNeighbours(base, candidates, max);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    /**
+     * Write the graph to {@code file} atomically (temp file, then move).
+     */
+    void writeSnapshot(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(m);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int node = 0; node < size; node++) {
+                int[][] levels = links[node];
+                out.writeInt(levels.length);
+                for (int[] neighbours : levels) {
+                    out.writeInt(neighbours[0]);
+                    for (int i = 1; i <= neighbours[0]; i++) {
+                        out.writeInt(neighbours[i]);
+                    }
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a snapshot written by {@link #writeSnapshot}. Returns false, leaving the graph
+     * empty, when the file is missing, was built with another M, or covers nodes the
+     * store does not have.
+     */
+    boolean readSnapshot(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != m) {
+                return false;
+            }
+            int nodes = in.getInt();
+            if (nodes > store.size()) {
+                return false;
+            }
+            int entry = in.getInt();
+            int top = in.getInt();
+
+            int[][][] loaded = new int[Math.max(64, store.size())][][];
+            for (int node = 0; node < nodes; node++) {
+                int levels = in.getInt();
+                loaded[node] = new int[levels][];
+                for (int l = 0; l < levels; l++) {
+                    int count = in.getInt();
+                    int[] neighbours = new int[1 + maxConnections(l)];
+                    neighbours[0] = count;
+                    for (int i = 1; i <= count; i++) {
+                        neighbours[i] = in.getInt();
+                    }
+                    loaded[node][l] = neighbours;
+                }
+            }
+            links = loaded;
+            size = nodes;
+            entryPoint = entry;
+            maxLevel = top;
+            return true;
+        }
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static void reverse(long[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            long tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    // Binary min-heap of longs
+    private static final class LongHeap {
+        private long[] heap;
+        private int size;
+
+        LongHeap(int capacity) {
+            heap = new long[Math.max(4, capacity)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void push(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= last) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.lynkai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lynkai.dto.MessageDTO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Client for the RAG service's streaming endpoint, {@code POST <base-url>/chat/stream}.
+ * The service answers with Server-Sent Events whose data are answer tokens,
+ * terminated by a {@code [DONE]} event or the end of the response.
+ * <p>
+ * {@code timeout} bounds the whole answer and {@code idleTimeout} the wait for each
+ * line. A watchdog interrupts a read that overruns either; the interrupted read closes
+ * the response, which cancels the upstream request.
+ */
+final class HttpRagClient implements RagClient {
+
+    private static final String DONE = "[DONE]";
+    private static final long WATCHDOG_PERIOD_MS = 1000;
+
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final Duration timeout;
+    private final Duration idleTimeout;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("rag-watchdog").daemon().factory());
+
+    HttpRagClient(String baseUrl, Duration connectTimeout, Duration timeout, Duration idleTimeout,
+                  ObjectMapper objectMapper) {
+        this.httpClient = HttpClient.newBuilder().connectTimeout(connectTimeout).build();
+        this.endpoint = URI.create(baseUrl.endsWith("/") ? baseUrl + "chat/stream" : baseUrl + "/chat/stream");
+        this.timeout = timeout;
+        this.idleTimeout = idleTimeout;
+        this.objectMapper = objectMapper;
+    }
+
+    // Read state shared with the watchdog; guarded by its monitor
+    private static final class Deadline {
+        final Thread reader = Thread.currentThread();
+        final long end;
+        boolean reading;
+        long lastRead;
+        String expired;
+        boolean finished;
+
+        Deadline(Duration timeout) {
+            this.end = System.nanoTime() + timeout.toNanos();
+        }
+    }
+
+    @Override
+    public void streamAnswer(Query query, Consumer<String> onToken) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body(query))))
+                .build();
+
+        Deadline deadline = new Deadline(timeout);
+        ScheduledFuture<?> check = watchdog.scheduleWithFixedDelay(() -> expire(deadline),
+                WATCHDOG_PERIOD_MS, WATCHDOG_PERIOD_MS, TimeUnit.MILLISECONDS);
+        try {
+            read(request, onToken, deadline);
+        } catch (IOException | InterruptedException e) {
+            String expired;
+            synchronized (deadline) {
+                expired = deadline.expired;
+            }
+            if (expired != null) {
+                throw new IOException("RAG service " + expired, e);
+            }
+            throw e;
+        } finally {
+            check.cancel(false);
+            synchronized (deadline) {
+                deadline.finished = true;
+                if (deadline.expired != null) {
+                    // The watchdog's interrupt was for this read only
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        watchdog.shutdownNow();
+    }
+
+    private void expire(Deadline deadline) {
+        long now = System.nanoTime();
+        synchronized (deadline) {
+            if (deadline.finished || deadline.expired != null) {
+                return;
+            }
+            if (now - deadline.end > 0) {
+                deadline.expired = "did not finish the answer within " + timeout.toMillis() + " ms";
+            } else if (deadline.reading && now - deadline.lastRead > idleTimeout.toNanos()) {
+                deadline.expired = "sent nothing for " + idleTimeout.toMillis() + " ms";
+            } else {
+                return;
+            }
+            deadline.reader.interrupt();
+        }
+    }
+
+    private void read(HttpRequest request, Consumer<String> onToken, Deadline deadline)
+            throws IOException, InterruptedException {
+        // Lines are read as they arrive, so the first token is relayed before the answer is finished
+        HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        synchronized (deadline) {
+            deadline.reading = true;
+            deadline.lastRead = System.nanoTime();
+        }
+        try (Stream<String> lines = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("RAG service answered " + response.statusCode());
+            }
+            StringBuilder data = new StringBuilder();
+            boolean hasData = false;
+            Iterator<String> it = lines.iterator();
+            while (it.hasNext()) {
+                String line = it.next();
+                synchronized (deadline) {
+                    deadline.lastRead = System.nanoTime();
+                }
+                if (line.isEmpty()) {
+                    // End of an event; multi-line data is joined with newlines
+                    if (hasData) {
+                        if (DONE.contentEquals(data)) {
+                            return;
+                        }
+                        onToken.accept(data.toString());
+                    }
+                    data.setLength(0);
+                    hasData = false;
+                } else if (line.startsWith("data:")) {
+                    if (hasData) {
+                        data.append('\n');
+                    }
+                    data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+                    hasData = true;
+                }
+            }
+            if (hasData && !DONE.contentEquals(data)) {
+                onToken.accept(data.toString());
+            }
+        } catch (UncheckedIOException e) {
+            // The line stream wraps read failures, including an interrupted read
+            throw e.getCause();
+        }
+    }
+
+    private static Map<String, Object> body(Query query) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("document_id", query.ragDocumentId() != null ? query.ragDocumentId() : query.documentId());
+        body.put("question", query.question());
+        body.put("history", query.history().stream()
+                .map(HttpRagClient::turn)
+                .toList());
+        return body;
+    }
+
+    private static Map<String, String> turn(MessageDTO message) {
+        return Map.of("role", message.getSender(), "content", message.getContent());
+    }
+
+    @Override
+    public String name() {
+        return "http " + endpoint;
+    }
+}
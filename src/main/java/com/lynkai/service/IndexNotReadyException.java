@@ -0,0 +1,18 @@
+package com.lynkai.service;
+
+import lombok.Getter;
+
+/**
+ * A user's library index is still being built from the database.
+ * Callers should try again after {@link #getRetryAfterSeconds()}.
+ */
+@Getter
+public class IndexNotReadyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public IndexNotReadyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,265 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.MessageDTO;
+import com.lynkai.dto.SendMessageRequest;
+import com.lynkai.model.Conversation;
+import com.lynkai.repository.ConversationRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional group-commit path for chat messages ({@code app.messages.group-commit.enabled}).
+ * <p>
+ * Accepted messages wait in a bounded queue; a single flusher writes whatever has
+ * accumulated, up to {@code batch-size} messages or {@code max-delay-ms} after the
+ * first one, as one multi-row insert plus one stats update per conversation, all in
+ * one transaction. Callers are answered once their batch has committed. When the
+ * queue is full new messages are turned away rather than buffered without bound.
+ */
+@Service
+@Slf4j
+public class MessageGroupCommitService {
+
+    private static final String INSERT_MESSAGE =
+            "INSERT INTO messages (sender, content, timestamp, conversation_id) VALUES (?, ?, ?, ?)";
+
+    // Same rules as ConversationRepository.recordMessage, for several messages of one conversation at once
+    private static final String RECORD_MESSAGES = "UPDATE conversations SET message_count = message_count + ?, " +
+            "last_message_preview = CASE WHEN last_message_at IS NULL OR last_message_at <= ? " +
+            "THEN ? ELSE last_message_preview END, " +
+            "last_message_at = CASE WHEN last_message_at IS NULL OR last_message_at <= ? " +
+            "THEN ? ELSE last_message_at END " +
+            "WHERE id = ?";
+
+    private final ConversationRepository conversationRepository;
+    private final ConversationContextCache contextCache;
+    private final MessageSearchService searchService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.messages.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.messages.group-commit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.messages.group-commit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.messages.group-commit.max-delay-ms:5}")
+    private long maxDelayMs;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    public MessageGroupCommitService(ConversationRepository conversationRepository,
+                                     ConversationContextCache contextCache,
+                                     MessageSearchService searchService,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager) {
+        this.conversationRepository = conversationRepository;
+        this.contextCache = contextCache;
+        this.searchService = searchService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // A message accepted but not yet written
+    private record PendingMessage(Long userId, Long conversationId, String sender, String content,
+                                  LocalDateTime timestamp, CompletableFuture<MessageDTO> result) {}
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        running = true;
+        flusher = Thread.ofPlatform().name("message-group-commit").daemon().start(this::run);
+        log.info("Message group commit enabled: batches of up to {} messages every {} ms", batchSize, maxDelayMs);
+    }
+
+    /**
+     * Write what is still queued before the datasource goes away.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a message after checking the conversation belongs to the user. The future
+     * completes with the stored message once its batch commits; it fails with
+     * RejectedExecutionException right away when the queue is full.
+     */
+    public CompletableFuture<MessageDTO> submit(SendMessageRequest request, Long userId) {
+        if (request.getConversationId() == null || request.getSender() == null || request.getContent() == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("conversationId, sender and content are required."));
+        }
+        if (!conversationRepository.existsByIdAndUserId(request.getConversationId(), userId)) {
+            return CompletableFuture.failedFuture(new RuntimeException("Conversation not found or unauthorized"));
+        }
+
+        // Stored to the microsecond, so the acknowledged timestamp matches the row
+        LocalDateTime timestamp = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        PendingMessage pending = new PendingMessage(userId, request.getConversationId(), request.getSender(),
+                request.getContent(), timestamp, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Message queue is full"));
+        }
+        return pending.result();
+    }
+
+    private void run() {
+        int size = Math.max(1, batchSize);
+        List<PendingMessage> batch = new ArrayList<>(size);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Gather more until the batch is full or the first message has waited long enough
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < size) {
+                    if (queue.drainTo(batch, size - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Shutting down: stop accepting, but still write what was taken and what is queued
+                running = false;
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (RuntimeException e) {
+                log.error("Message group commit failed", e);
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        List<MessageDTO> stored;
+        try {
+            stored = transactionTemplate.execute(status -> write(batch));
+        } catch (DataAccessException e) {
+            // One bad message (e.g. its conversation was deleted meanwhile) must not fail the others
+            log.warn("Batch of {} messages failed, writing them one by one: {}", batch.size(), e.getMessage());
+            for (PendingMessage pending : batch) {
+                try {
+                    MessageDTO one = transactionTemplate.execute(status -> write(List.of(pending)).get(0));
+                    contextCache.append(one);
+                    searchService.index(pending.userId(), one);
+                    pending.result().complete(one);
+                } catch (RuntimeException single) {
+                    pending.result().completeExceptionally(single);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            contextCache.append(stored.get(i));
+            searchService.index(batch.get(i).userId(), stored.get(i));
+            batch.get(i).result().complete(stored.get(i));
+        }
+    }
+
+    private List<MessageDTO> write(List<PendingMessage> batch) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_MESSAGE, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        PendingMessage pending = batch.get(i);
+                        ps.setString(1, pending.sender());
+                        ps.setString(2, pending.content());
+                        ps.setTimestamp(3, Timestamp.valueOf(pending.timestamp()));
+                        ps.setLong(4, pending.conversationId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batch.size();
+                    }
+                },
+                keys);
+
+        // Messages are queued in order, so the last one seen per conversation is its newest
+        Map<Long, List<PendingMessage>> byConversation = new LinkedHashMap<>();
+        batch.forEach(pending -> byConversation.computeIfAbsent(pending.conversationId(), id -> new ArrayList<>()).add(pending));
+        List<Object[]> stats = new ArrayList<>(byConversation.size());
+        byConversation.forEach((conversationId, messages) -> {
+            PendingMessage last = messages.get(messages.size() - 1);
+            Timestamp at = Timestamp.valueOf(last.timestamp());
+            stats.add(new Object[]{messages.size(), at, Conversation.previewOf(last.content()), at, at, conversationId});
+        });
+        jdbcTemplate.batchUpdate(RECORD_MESSAGES, stats);
+
+        List<Map<String, Object>> generated = keys.getKeyList();
+        List<MessageDTO> stored = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage pending = batch.get(i);
+            stored.add(MessageDTO.builder()
+                    .id(i < generated.size() ? generatedId(generated.get(i)) : null)
+                    .sender(pending.sender())
+                    .content(pending.content())
+                    .timestamp(pending.timestamp())
+                    .conversationId(pending.conversationId())
+                    .build());
+        }
+        return stored;
+    }
+
+    // The key column is reported as ID, GENERATED_KEY, ... depending on the driver
+    private static Long generatedId(Map<String, Object> keys) {
+        Object value = keys.values().iterator().next();
+        return value instanceof Number number ? number.longValue() : null;
+    }
+}
@@ -0,0 +1,442 @@
+package com.lynkai.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One user's inverted index over message text, ranked with BM25.
+ * <p>
+ * Messages get consecutive document numbers in the order they are added. Each term's
+ * postings are a byte array of (document-number delta, term frequency) pairs, both
+ * varint-encoded, so most postings take two bytes. Searches share a read lock; adds,
+ * removals and compaction take the write lock. Removed messages are tombstones until
+ * {@link #compact()} rewrites the postings without them.
+ * <p>
+ * The whole index is written to a single snapshot file, together with the highest
+ * message id it contains, so that on open only newer messages have to be read back.
+ */
+final class MessageSearchIndex {
+
+    private static final int MAGIC = 0x4C4B5458; // "LKTX"
+    private static final int VERSION = 1;
+
+    // Standard BM25 parameters
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    // A search hit; higher scores rank first
+    record Hit(long messageId, long conversationId, float score) {}
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    // Per document number
+    private long[] messageIds = new long[64];
+    private long[] conversationIds = new long[64];
+    private int[] lengths = new int[64];
+    private final BitSet deleted = new BitSet();
+    private int docCount;
+    private int deletedCount;
+    private long liveLength;
+
+    private final Map<Long, Integer> docByMessage = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    // Highest message id ever added; messages above it are not indexed yet
+    private long watermark;
+
+    /**
+     * An empty index, or the one in {@code snapshot} if that file exists.
+     */
+    static MessageSearchIndex open(Path snapshot) throws IOException {
+        MessageSearchIndex index = new MessageSearchIndex();
+        if (Files.isRegularFile(snapshot)) {
+            index.load(snapshot);
+        }
+        return index;
+    }
+
+    /**
+     * Lower-cased, compatibility-normalized runs of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); ) {
+            int codePoint = i < normalized.length() ? normalized.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                // Overlong "words" (hashes, base64) are cut rather than indexed whole
+                terms.add(normalized.substring(start, Math.min(i, start + MAX_TERM_LENGTH)));
+                start = -1;
+            }
+            i += i < normalized.length() ? Character.charCount(codePoint) : 1;
+        }
+        return terms;
+    }
+
+    long watermark() {
+        lock.readLock().lock();
+        try {
+            return watermark;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    double tombstoneRatio() {
+        lock.readLock().lock();
+        try {
+            return docCount == 0 ? 0 : (double) deletedCount / docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean isDirty() {
+        return dirty.get();
+    }
+
+    /**
+     * Index a message; adding one that is already indexed does nothing.
+     */
+    void add(long messageId, long conversationId, String content) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        List<String> terms = tokenize(content);
+        terms.forEach(term -> frequencies.merge(term, 1, Integer::sum));
+
+        lock.writeLock().lock();
+        try {
+            if (docByMessage.containsKey(messageId)) {
+                return;
+            }
+            int doc = docCount;
+            if (doc == messageIds.length) {
+                int capacity = messageIds.length * 2;
+                messageIds = Arrays.copyOf(messageIds, capacity);
+                conversationIds = Arrays.copyOf(conversationIds, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            messageIds[doc] = messageId;
+            conversationIds[doc] = conversationId;
+            lengths[doc] = terms.size();
+            docCount++;
+            liveLength += terms.size();
+            docByMessage.put(messageId, doc);
+            watermark = Math.max(watermark, messageId);
+
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new Postings()).add(doc, frequency));
+            dirty.set(true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tombstone every message of the given conversations.
+     */
+    void removeConversations(Collection<Long> conversations) {
+        Set<Long> removed = Set.copyOf(conversations);
+        lock.writeLock().lock();
+        try {
+            for (int doc = 0; doc < docCount; doc++) {
+                if (!deleted.get(doc) && removed.contains(conversationIds[doc])) {
+                    deleted.set(doc);
+                    deletedCount++;
+                    liveLength -= lengths[doc];
+                    docByMessage.remove(messageIds[doc]);
+                    dirty.set(true);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The {@code limit} best BM25 matches for any of the query's terms, best first.
+     */
+    List<Hit> search(String query, int limit) {
+        List<String> terms = tokenize(query).stream().distinct().toList();
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int live = docCount - deletedCount;
+            if (live == 0) {
+                return List.of();
+            }
+            float averageLength = Math.max(1f, (float) liveLength / live);
+            float[] scores = new float[docCount];
+            BitSet matched = new BitSet(docCount);
+
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                // Document frequency still counts tombstones until the next compaction; close enough for ranking
+                float idf = (float) Math.log(1 + (live - list.docFreq + 0.5) / (list.docFreq + 0.5));
+                list.forEach((doc, frequency) -> {
+                    if (deleted.get(doc)) {
+                        return;
+                    }
+                    float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+                    scores[doc] += idf * frequency * (K1 + 1) / (frequency + norm);
+                    matched.set(doc);
+                });
+            }
+
+            // Min-heap of the best hits so far
+            PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, (a, b) -> {
+                int byScore = Float.compare(scores[a], scores[b]);
+                return byScore != 0 ? byScore : Long.compare(messageIds[a], messageIds[b]);
+            });
+            for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                best.add(doc);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            Hit[] hits = new Hit[best.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                int doc = best.poll();
+                hits[i] = new Hit(messageIds[doc], conversationIds[doc], scores[doc]);
+            }
+            return List.of(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the index to {@code snapshot} (through a temporary file) if it changed.
+     */
+    void snapshot(Path snapshot) throws IOException {
+        lock.readLock().lock();
+        try {
+            if (!dirty.compareAndSet(true, false)) {
+                return;
+            }
+            Files.createDirectories(snapshot.getParent());
+            Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".part");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                write(out);
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Renumber the live messages and rewrite every posting list without the tombstones.
+     */
+    void compact() {
+        lock.writeLock().lock();
+        try {
+            if (deletedCount == 0) {
+                return;
+            }
+            // Old document number -> new one, or -1; monotonic, so deltas stay positive
+            int[] renumbered = new int[docCount];
+            int live = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                if (deleted.get(doc)) {
+                    renumbered[doc] = -1;
+                } else {
+                    renumbered[doc] = live;
+                    messageIds[live] = messageIds[doc];
+                    conversationIds[live] = conversationIds[doc];
+                    lengths[live] = lengths[doc];
+                    docByMessage.put(messageIds[live], live);
+                    live++;
+                }
+            }
+
+            Iterator<Map.Entry<String, Postings>> terms = postings.entrySet().iterator();
+            while (terms.hasNext()) {
+                Map.Entry<String, Postings> entry = terms.next();
+                Postings rewritten = new Postings();
+                entry.getValue().forEach((doc, frequency) -> {
+                    if (renumbered[doc] >= 0) {
+                        rewritten.add(renumbered[doc], frequency);
+                    }
+                });
+                if (rewritten.docFreq == 0) {
+                    terms.remove();
+                } else {
+                    entry.setValue(rewritten);
+                }
+            }
+
+            docCount = live;
+            deletedCount = 0;
+            deleted.clear();
+            dirty.set(true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(watermark);
+        out.writeInt(docCount);
+        for (int doc = 0; doc < docCount; doc++) {
+            out.writeLong(messageIds[doc]);
+            out.writeLong(conversationIds[doc]);
+            out.writeInt(lengths[doc]);
+            out.writeBoolean(deleted.get(doc));
+        }
+        out.writeInt(postings.size());
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+            Postings list = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(list.docFreq);
+            out.writeInt(list.lastDoc);
+            out.writeInt(list.size);
+            out.write(list.data, 0, list.size);
+        }
+    }
+
+    private void load(Path snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a message index snapshot: " + snapshot);
+            }
+            watermark = in.readLong();
+            docCount = in.readInt();
+            int capacity = Math.max(64, docCount);
+            messageIds = new long[capacity];
+            conversationIds = new long[capacity];
+            lengths = new int[capacity];
+            for (int doc = 0; doc < docCount; doc++) {
+                messageIds[doc] = in.readLong();
+                conversationIds[doc] = in.readLong();
+                lengths[doc] = in.readInt();
+                if (in.readBoolean()) {
+                    deleted.set(doc);
+                    deletedCount++;
+                } else {
+                    liveLength += lengths[doc];
+                    docByMessage.put(messageIds[doc], doc);
+                }
+            }
+            int terms = in.readInt();
+            for (int i = 0; i < terms; i++) {
+                String term = in.readUTF();
+                Postings list = new Postings();
+                list.docFreq = in.readInt();
+                list.lastDoc = in.readInt();
+                list.size = in.readInt();
+                list.data = new byte[Math.max(8, list.size)];
+                in.readFully(list.data, 0, list.size);
+                postings.put(term, list);
+            }
+        }
+    }
+
+    private interface PostingVisitor {
+        void accept(int doc, int frequency);
+    }
+
+    /**
+     * One term's postings: varint (document delta, frequency) pairs in document order.
+     */
+    private static final class Postings {
+
+        private byte[] data = new byte[8];
+        private int size;
+        private int lastDoc = -1;
+        private int docFreq;
+
+        void add(int doc, int frequency) {
+            writeVarint(doc - lastDoc);
+            writeVarint(frequency);
+            lastDoc = doc;
+            docFreq++;
+        }
+
+        void forEach(PostingVisitor visitor) {
+            int position = 0;
+            int doc = -1;
+            while (position < size) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                int frequency = 0;
+                shift = 0;
+                do {
+                    b = data[position++];
+                    frequency |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += delta;
+                visitor.accept(doc, frequency);
+            }
+        }
+
+        private void writeVarint(int value) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+}
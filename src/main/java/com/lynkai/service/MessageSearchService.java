@@ -0,0 +1,361 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.MessageDTO;
+import com.lynkai.dto.MessageSearchResult;
+import com.lynkai.repository.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Full-text search over a user's conversation history: one {@link MessageSearchIndex}
+ * per user, snapshotted under {@code app.search.messages.dir}.
+ * <p>
+ * An index is opened on first search. It is built from the user's messages in the
+ * database, or caught up from its snapshot with the messages stored since. After that
+ * it follows changes incrementally: stored messages are added once their transaction
+ * commits, and deleted conversations are tombstoned. Dirty indexes are snapshotted every
+ * {@code app.search.messages.snapshot-interval-ms}. An index is compacted once tombstones
+ * exceed {@code app.search.messages.compaction-threshold} of its messages, and dropped
+ * once unused for {@code app.search.messages.idle-evict-ms}.
+ * <p>
+ * Catching up only reads messages above the highest id indexed, which misses ids that
+ * committed out of order and changes made by other nodes. So after opening, and at every
+ * snapshot interval, the index size is checked against the user's message count; an index
+ * that still disagrees after catching up is rebuilt from the database.
+ */
+@Service
+@Slf4j
+public class MessageSearchService {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final String SNAPSHOT_FILE = "messages.idx";
+    private static final int SNIPPET_LENGTH = 200;
+    private static final int SNIPPET_LEAD = 60;
+
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate readOnly;
+
+    @Value("${app.search.messages.dir:text-index}")
+    private String indexDir;
+
+    @Value("${app.search.messages.max-results:50}")
+    private int maxResults;
+
+    @Value("${app.search.messages.compaction-threshold:0.2}")
+    private double compactionThreshold;
+
+    @Value("${app.search.messages.idle-evict-ms:1800000}")
+    private long idleEvictMs;
+
+    // Indexes ready for search; the future lets concurrent callers wait for a single open/build
+    private final ConcurrentHashMap<Long, CompletableFuture<MessageSearchIndex>> indexes = new ConcurrentHashMap<>();
+
+    // Indexes taking new messages, including those still being built or caught up
+    private final ConcurrentHashMap<Long, MessageSearchIndex> live = new ConcurrentHashMap<>();
+
+    // When each open index was last searched, for idle eviction
+    private final ConcurrentHashMap<Long, Long> lastUsed = new ConcurrentHashMap<>();
+
+    public MessageSearchService(MessageRepository messageRepository, PlatformTransactionManager transactionManager) {
+        this.messageRepository = messageRepository;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+    }
+
+    /**
+     * The user's messages best matching {@code query}, best first.
+     */
+    public List<MessageSearchResult> search(Long userId, String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required.");
+        }
+        int size = Math.min(Math.max(1, maxResults), limit != null && limit > 0 ? limit : DEFAULT_LIMIT);
+
+        long start = System.nanoTime();
+        List<MessageSearchIndex.Hit> hits = indexFor(userId).search(query, size);
+        log.debug("Message search for user {} took {} µs", userId, (System.nanoTime() - start) / 1000);
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, MessageRepository.SearchHitView> rows = messageRepository.findSearchHits(
+                        userId, hits.stream().map(MessageSearchIndex.Hit::messageId).toList())
+                .stream()
+                .collect(Collectors.toMap(MessageRepository.SearchHitView::getId, Function.identity()));
+
+        List<String> terms = MessageSearchIndex.tokenize(query);
+        List<MessageSearchResult> results = new ArrayList<>(hits.size());
+        for (MessageSearchIndex.Hit hit : hits) {
+            MessageRepository.SearchHitView row = rows.get(hit.messageId());
+            if (row != null) {
+                results.add(MessageSearchResult.builder()
+                        .messageId(row.getId())
+                        .conversationId(row.getConversationId())
+                        .documentId(row.getDocumentId())
+                        .documentTitle(row.getDocumentTitle())
+                        .sender(row.getSender())
+                        .snippet(snippet(row.getContent(), terms))
+                        .timestamp(row.getTimestamp())
+                        .score(hit.score())
+                        .build());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Add a stored message to its owner's index once the surrounding transaction commits.
+     */
+    public void indexAfterCommit(Long userId, MessageDTO message) {
+        afterCommit(() -> index(userId, message));
+    }
+
+    /**
+     * Add a committed message to its owner's index. Indexes that are not open are left
+     * alone; they pick the message up from the database when next opened.
+     */
+    public void index(Long userId, MessageDTO message) {
+        MessageSearchIndex index = live.get(userId);
+        if (index != null && message.getId() != null) {
+            index.add(message.getId(), message.getConversationId(), message.getContent());
+        }
+    }
+
+    /**
+     * Tombstone the messages of deleted conversations once the surrounding transaction commits.
+     */
+    public void removeConversationsAfterCommit(Long userId, Collection<Long> conversationIds) {
+        List<Long> ids = List.copyOf(conversationIds);
+        afterCommit(() -> {
+            // A snapshot on disk would bring the messages back when opened; never triggers a build
+            if (!live.containsKey(userId) && !Files.isRegularFile(snapshotFor(userId))) {
+                return;
+            }
+            indexFor(userId).removeConversations(ids);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.messages.snapshot-interval-ms:60000}")
+    public void maintain() {
+        long now = System.currentTimeMillis();
+        indexes.forEach((userId, future) -> {
+            MessageSearchIndex index = future.getNow(null);
+            if (index == null) {
+                return;
+            }
+            try {
+                if (now - lastUsed.getOrDefault(userId, 0L) > idleEvictMs) {
+                    evict(userId, future, index);
+                    return;
+                }
+                if (!isComplete(userId, index) && !catchUp(userId, index)) {
+                    log.info("Message index for user {} disagrees with the database; rebuilding", userId);
+                    index = rebuild(userId);
+                    indexes.replace(userId, future, CompletableFuture.completedFuture(index));
+                }
+                if (index.tombstoneRatio() > compactionThreshold) {
+                    index.compact();
+                }
+                if (index.isDirty()) {
+                    index.snapshot(snapshotFor(userId));
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Maintenance of message index for user {} failed", userId, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintain();
+        indexes.clear();
+        live.clear();
+    }
+
+    // Text around the first query term found, so results show why they matched
+    static String snippet(String content, List<String> terms) {
+        if (content == null) {
+            return null;
+        }
+        String lower = content.toLowerCase(Locale.ROOT);
+        int match = -1;
+        for (String term : terms) {
+            int at = lower.indexOf(term);
+            if (at >= 0 && (match < 0 || at < match)) {
+                match = at;
+            }
+        }
+        // Lower-casing can change lengths in a few scripts, so the offset is only approximate
+        int start = Math.min(content.length(), match > SNIPPET_LEAD ? match - SNIPPET_LEAD : 0);
+        int end = Math.min(content.length(), start + SNIPPET_LENGTH);
+        if (start > 0 && start < content.length() && Character.isLowSurrogate(content.charAt(start))) {
+            start++;
+        }
+        if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+            end--;
+        }
+        return (start > 0 ? "…" : "") + content.substring(start, end) + (end < content.length() ? "…" : "");
+    }
+
+    private interface IndexAction {
+        void run() throws IOException;
+    }
+
+    private static void afterCommit(IndexAction action) {
+        Runnable guarded = () -> {
+            try {
+                action.run();
+            } catch (IOException | RuntimeException e) {
+                // The database stays the source of truth; search results are checked against it
+                log.error("Message index update failed", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guarded.run();
+                }
+            });
+        } else {
+            guarded.run();
+        }
+    }
+
+    private Path snapshotFor(Long userId) {
+        return Paths.get(indexDir).resolve("user-" + userId).resolve(SNAPSHOT_FILE);
+    }
+
+    // Dropped under the map's lock, so that reopening waits for the snapshot written here
+    private void evict(Long userId, CompletableFuture<MessageSearchIndex> future, MessageSearchIndex index) {
+        indexes.compute(userId, (id, present) -> {
+            if (present != future) {
+                return present;
+            }
+            live.remove(userId, index);
+            lastUsed.remove(userId);
+            try {
+                // Messages added after this are above its watermark or found by the count on reopening
+                index.snapshot(snapshotFor(userId));
+            } catch (IOException e) {
+                log.warn("Could not snapshot idle message index for user {}: {}", userId, e.getMessage());
+            }
+            log.debug("Dropped idle message index for user {}", userId);
+            return null;
+        });
+    }
+
+    private MessageSearchIndex indexFor(Long userId) {
+        lastUsed.put(userId, System.currentTimeMillis());
+        CompletableFuture<MessageSearchIndex> mine = new CompletableFuture<>();
+        CompletableFuture<MessageSearchIndex> existing = indexes.putIfAbsent(userId, mine);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+        }
+
+        try {
+            MessageSearchIndex index = openAndCatchUp(userId);
+            mine.complete(index);
+            return index;
+        } catch (IOException e) {
+            indexes.remove(userId, mine);
+            UncheckedIOException failure = new UncheckedIOException("Cannot open message index for user " + userId, e);
+            mine.completeExceptionally(failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            indexes.remove(userId, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private MessageSearchIndex openAndCatchUp(Long userId) throws IOException {
+        Path snapshot = snapshotFor(userId);
+        MessageSearchIndex index;
+        try {
+            index = MessageSearchIndex.open(snapshot);
+        } catch (IOException e) {
+            // A damaged snapshot is only a cache; rebuild from the database
+            log.warn("Discarding unreadable message index {}: {}", snapshot, e.getMessage());
+            Files.deleteIfExists(snapshot);
+            index = MessageSearchIndex.open(snapshot);
+        }
+
+        // Registered first, so messages stored while catching up are not missed
+        live.put(userId, index);
+        long start = System.currentTimeMillis();
+        int before = index.size();
+        try {
+            if (!catchUp(userId, index)) {
+                log.info("Message index snapshot for user {} disagrees with the database; rebuilding", userId);
+                index = rebuild(userId);
+                before = 0;
+            }
+            index.snapshot(snapshot);
+        } catch (IOException | RuntimeException e) {
+            live.remove(userId);
+            throw e;
+        }
+        log.info("Opened message index for user {}: {} messages, {} read from the database in {} ms",
+                userId, index.size(), index.size() - before, System.currentTimeMillis() - start);
+        return index;
+    }
+
+    /**
+     * Add the user's messages above the index's watermark. True when the index then holds
+     * as many messages as the database.
+     */
+    private boolean catchUp(Long userId, MessageSearchIndex index) {
+        long after = index.watermark();
+        Long stored = readOnly.execute(status -> {
+            try (Stream<MessageRepository.IndexedMessageView> rows =
+                         messageRepository.streamForIndexByUserId(userId, after)) {
+                rows.forEach(row -> index.add(row.getId(), row.getConversationId(), row.getContent()));
+            }
+            return messageRepository.countByConversationUserId(userId);
+        });
+        return stored != null && stored == index.size();
+    }
+
+    private boolean isComplete(Long userId, MessageSearchIndex index) {
+        return messageRepository.countByConversationUserId(userId) == index.size();
+    }
+
+    // A new index over all of the user's messages, taking new ones from the start
+    private MessageSearchIndex rebuild(Long userId) throws IOException {
+        // The old snapshot would otherwise survive a rebuild that finds no messages
+        Files.deleteIfExists(snapshotFor(userId));
+        MessageSearchIndex fresh = MessageSearchIndex.open(snapshotFor(userId));
+        live.put(userId, fresh);
+        catchUp(userId, fresh);
+        return fresh;
+    }
+}
@@ -0,0 +1,565 @@
+package com.lynkai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts PDF pages without loading the whole document.
+ * <p>
+ * The fast path follows {@code startxref} -> xref table -> trailer {@code /Root}
+ * -> catalog {@code /Pages} -> {@code /Count}, reading only a few small windows
+ * of the file. Files it cannot handle (cross-reference streams, objects inside
+ * object streams, damaged tables) fall back to PDFBox, with scratch buffers kept
+ * on disk and the parse aborted once the parsing thread has allocated more than
+ * {@code app.extraction.pdf.allocation-budget-bytes}. That is an allocation budget,
+ * not a limit on retained heap: it counts garbage too, so it only ever aborts early.
+ * <p>
+ * {@code PdfPageCountBenchmark} compares both paths with {@code PDDocument.load}.
+ */
+@Component
+@Slf4j
+public class PdfPageCounter {
+
+    private static final int TAIL_WINDOW = 2048;
+    private static final int MAX_XREF_SECTIONS = 64;
+    private static final long SCAN_BUDGET_BYTES = 1024 * 1024;
+    private static final byte[] STARTXREF = "startxref".getBytes(StandardCharsets.US_ASCII);
+
+    private final long allocationBudgetBytes;
+
+    public PdfPageCounter(@Value("${app.extraction.pdf.allocation-budget-bytes:67108864}") long allocationBudgetBytes) {
+        this.allocationBudgetBytes = allocationBudgetBytes;
+    }
+
+    public int countPages(Path file) throws IOException {
+        long started = System.nanoTime();
+        long allocatedBefore = AllocationBudget.allocatedBytes();
+
+        String method = "page tree";
+        int pages;
+        try {
+            pages = countFromPageTree(file);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Page tree lookup failed for {}: {}", file, e.getMessage());
+            pages = -1;
+        }
+
+        if (pages <= 0) {
+            method = "PDFBox";
+            pages = countWithPdfBox(file);
+        }
+
+        // Cost of each path, so the two can be compared on real uploads
+        log.debug("PDF page count {} for {} via {} in {} ms, {} KB allocated",
+                pages, file.getFileName(), method,
+                (System.nanoTime() - started) / 1_000_000,
+                (AllocationBudget.allocatedBytes() - allocatedBefore) / 1024);
+        return pages;
+    }
+
+    // Package-private for the benchmark, which measures this path on files the page tree handles
+    int countWithPdfBox(Path file) throws IOException {
+        AllocationBudget budget = new AllocationBudget(allocationBudgetBytes);
+        ScratchFile scratchFile = new ScratchFile(MemoryUsageSetting.setupTempFileOnly());
+        try (BudgetedRead source = new BudgetedRead(new RandomAccessBufferedFileInputStream(file.toFile()), budget)) {
+            PDFParser parser = new PDFParser(source, scratchFile);
+            parser.parse();
+            try (PDDocument document = parser.getPDDocument()) {
+                budget.check();
+                return document.getNumberOfPages();
+            }
+        } finally {
+            scratchFile.close();
+        }
+    }
+
+    private int countFromPageTree(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            PdfReader reader = new PdfReader(channel, SCAN_BUDGET_BYTES);
+
+            List<XrefSection> sections = new ArrayList<>();
+            Set<Long> visited = new HashSet<>();
+            long offset = findStartXref(channel);
+            while (offset >= 0 && sections.size() < MAX_XREF_SECTIONS && visited.add(offset)) {
+                XrefSection section = reader.readXrefSection(offset);
+                if (section == null) {
+                    return -1; // cross-reference stream
+                }
+                sections.add(section);
+                offset = section.prev();
+            }
+            if (sections.isEmpty() || !(sections.get(0).trailer().get("Root") instanceof ObjectRef root)) {
+                return -1;
+            }
+
+            if (!(reader.resolve(root, sections) instanceof Map<?, ?> catalog)
+                    || !(catalog.get("Pages") instanceof ObjectRef pagesRef)
+                    || !(reader.resolve(pagesRef, sections) instanceof Map<?, ?> pages)) {
+                return -1;
+            }
+
+            Object count = pages.get("Count");
+            if (count instanceof ObjectRef countRef) {
+                count = reader.resolve(countRef, sections);
+            }
+            return count instanceof Long value && value > 0 && value <= Integer.MAX_VALUE ? value.intValue() : -1;
+        }
+    }
+
+    private static long findStartXref(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int length = (int) Math.min(size, TAIL_WINDOW);
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        long tailStart = size - length;
+        while (tail.hasRemaining() && channel.read(tail, tailStart + tail.position()) > 0) {
+            // keep reading until the window is full
+        }
+        byte[] bytes = tail.array();
+
+        for (int i = tail.position() - STARTXREF.length; i >= 0; i--) {
+            if (matchesAt(bytes, i, STARTXREF)) {
+                int pos = i + STARTXREF.length;
+                while (pos < tail.position() && isWhitespace(bytes[pos])) {
+                    pos++;
+                }
+                long value = 0;
+                int digits = 0;
+                while (pos < tail.position() && bytes[pos] >= '0' && bytes[pos] <= '9' && digits < 18) {
+                    value = value * 10 + (bytes[pos++] - '0');
+                    digits++;
+                }
+                return digits > 0 && value < size ? value : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matchesAt(byte[] bytes, int index, byte[] pattern) {
+        for (int j = 0; j < pattern.length; j++) {
+            if (bytes[index + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == 0 || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == ' ';
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c == '(' || c == ')' || c == '<' || c == '>' || c == '[' || c == ']'
+                || c == '{' || c == '}' || c == '/' || c == '%';
+    }
+
+    private record ObjectRef(long number, long generation) {}
+
+    // One classic xref table: subsections as {firstObject, count, entriesOffset}
+    private record XrefSection(List<long[]> subsections, Map<String, Object> trailer, long prev) {}
+
+    /**
+     * Tiny PDF tokenizer over a sliding window of the file. It understands just
+     * enough syntax to walk xref tables and plain dictionaries, and gives up
+     * after scanning a fixed number of bytes.
+     */
+    private static final class PdfReader {
+
+        private static final Object STRING = new Object();
+        private static final int XREF_ENTRY_LENGTH = 20;
+
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer window = ByteBuffer.allocate(8192);
+        private long windowStart;
+        private long position;
+        private long budget;
+
+        PdfReader(FileChannel channel, long scanBudget) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.budget = scanBudget;
+            this.window.limit(0);
+        }
+
+        XrefSection readXrefSection(long offset) throws IOException {
+            position = offset;
+            if (!"xref".equals(nextToken())) {
+                return null;
+            }
+
+            List<long[]> subsections = new ArrayList<>();
+            while (true) {
+                Object first = nextToken();
+                if ("trailer".equals(first)) {
+                    break;
+                }
+                if (!(first instanceof Long start) || !(nextToken() instanceof Long count)) {
+                    throw new IOException("Malformed xref subsection");
+                }
+                skipWhitespace();
+                subsections.add(new long[]{start, count, position});
+                position += count * XREF_ENTRY_LENGTH;
+            }
+
+            if (!(parseValue() instanceof Map<?, ?> trailer)) {
+                throw new IOException("Malformed trailer");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> typed = (Map<String, Object>) trailer;
+            long prev = typed.get("Prev") instanceof Long value ? value : -1;
+            return new XrefSection(subsections, typed, prev);
+        }
+
+        Object resolve(ObjectRef ref, List<XrefSection> sections) throws IOException {
+            long offset = lookup(ref, sections);
+            if (offset < 0) {
+                return null;
+            }
+            position = offset;
+            if (!(nextToken() instanceof Long number) || number != ref.number()
+                    || !(nextToken() instanceof Long) || !"obj".equals(nextToken())) {
+                throw new IOException("Xref offset does not point at object " + ref.number());
+            }
+            return parseValue();
+        }
+
+        // Newest section wins; a free entry or an unknown object means we cannot resolve it here
+        private long lookup(ObjectRef ref, List<XrefSection> sections) throws IOException {
+            for (XrefSection section : sections) {
+                for (long[] subsection : section.subsections()) {
+                    long start = subsection[0];
+                    if (ref.number() < start || ref.number() >= start + subsection[1]) {
+                        continue;
+                    }
+                    position = subsection[2] + (ref.number() - start) * XREF_ENTRY_LENGTH;
+                    byte[] entry = new byte[18];
+                    for (int i = 0; i < entry.length; i++) {
+                        int c = read();
+                        if (c < 0) {
+                            throw new EOFException();
+                        }
+                        entry[i] = (byte) c;
+                    }
+                    if (entry[10] != ' ' || entry[16] != ' ') {
+                        throw new IOException("Malformed xref entry");
+                    }
+                    if (entry[17] != 'n') {
+                        return -1;
+                    }
+                    long offset = Long.parseLong(new String(entry, 0, 10, StandardCharsets.US_ASCII));
+                    long generation = Long.parseLong(new String(entry, 11, 5, StandardCharsets.US_ASCII));
+                    return generation == ref.generation() && offset < size ? offset : -1;
+                }
+            }
+            return -1;
+        }
+
+        Object parseValue() throws IOException {
+            Object token = nextToken();
+            if ("<<".equals(token)) {
+                Map<String, Object> dictionary = new HashMap<>();
+                while (true) {
+                    Object key = nextToken();
+                    if (">>".equals(key)) {
+                        return dictionary;
+                    }
+                    if (!(key instanceof String name) || !name.startsWith("/")) {
+                        throw new IOException("Malformed dictionary");
+                    }
+                    dictionary.put(name.substring(1), parseValue());
+                }
+            }
+            if ("[".equals(token)) {
+                List<Object> array = new ArrayList<>();
+                while (true) {
+                    long mark = position;
+                    if ("]".equals(nextToken())) {
+                        return array;
+                    }
+                    position = mark;
+                    array.add(parseValue());
+                }
+            }
+            if (token instanceof Long number) {
+                long mark = position;
+                try {
+                    if (nextToken() instanceof Long generation && "R".equals(nextToken())) {
+                        return new ObjectRef(number, generation);
+                    }
+                } catch (EOFException ignored) {
+                    // a number at the very end of the file
+                }
+                position = mark;
+            }
+            return token;
+        }
+
+        private Object nextToken() throws IOException {
+            skipWhitespace();
+            int c = read();
+            switch (c) {
+                case -1:
+                    throw new EOFException();
+                case '<':
+                    if (peek() == '<') {
+                        read();
+                        return "<<";
+                    }
+                    skipUntil('>');
+                    return STRING;
+                case '>':
+                    if (peek() == '>') {
+                        read();
+                        return ">>";
+                    }
+                    throw new IOException("Unexpected '>'");
+                case '(':
+                    skipLiteralString();
+                    return STRING;
+                case '[', ']', '{', '}':
+                    return String.valueOf((char) c);
+                case '/':
+                    return "/" + readRegular();
+                default:
+                    String word = (char) c + readRegular();
+                    if (word.matches("[+-]?\\d{1,18}")) {
+                        return Long.parseLong(word);
+                    }
+                    return word;
+            }
+        }
+
+        private String readRegular() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = peek()) >= 0 && !isWhitespace(c) && !isDelimiter(c)) {
+                sb.append((char) read());
+            }
+            return sb.toString();
+        }
+
+        private void skipWhitespace() throws IOException {
+            int c;
+            while ((c = peek()) >= 0) {
+                if (c == '%') {
+                    while ((c = peek()) >= 0 && c != '\n' && c != '\r') {
+                        read();
+                    }
+                } else if (isWhitespace(c)) {
+                    read();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void skipUntil(int terminator) throws IOException {
+            int c;
+            while ((c = read()) != terminator) {
+                if (c < 0) {
+                    throw new EOFException();
+                }
+            }
+        }
+
+        private void skipLiteralString() throws IOException {
+            int depth = 1;
+            while (depth > 0) {
+                int c = read();
+                if (c < 0) {
+                    throw new EOFException();
+                } else if (c == '\\') {
+                    read();
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                }
+            }
+        }
+
+        private int peek() throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            if (position < windowStart || position >= windowStart + window.limit()) {
+                fill();
+            }
+            return window.get((int) (position - windowStart)) & 0xFF;
+        }
+
+        private int read() throws IOException {
+            int c = peek();
+            if (c >= 0) {
+                position++;
+                if (--budget < 0) {
+                    throw new IOException("Scan budget exhausted");
+                }
+            }
+            return c;
+        }
+
+        private void fill() throws IOException {
+            window.clear();
+            windowStart = position;
+            while (window.hasRemaining() && channel.read(window, windowStart + window.position()) > 0) {
+                // keep reading until the window is full or the file ends
+            }
+            window.flip();
+        }
+    }
+
+    /**
+     * Aborts a parse once the current thread has allocated more than the budget.
+     * Allocated bytes include garbage already collected, so they are an upper bound
+     * on what the parse can retain on the heap, not a measure of it.
+     */
+    private static final class AllocationBudget {
+
+        private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+        private final long limit;
+        private final long start;
+
+        AllocationBudget(long limit) {
+            this.limit = limit;
+            this.start = allocatedBytes();
+        }
+
+        void check() throws IOException {
+            if (start >= 0 && allocatedBytes() - start > limit) {
+                throw new IOException("PDF parse exceeded allocation budget of " + limit + " bytes");
+            }
+        }
+
+        static long allocatedBytes() {
+            return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+        }
+
+        private static com.sun.management.ThreadMXBean threadBean() {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+                return bean;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Checks the allocation budget as PDFBox pulls bytes from the file.
+     */
+    private static final class BudgetedRead implements RandomAccessRead {
+
+        private static final int CHECK_INTERVAL = 4096;
+
+        private final RandomAccessBufferedFileInputStream delegate;
+        private final AllocationBudget budget;
+        private int singleReads;
+
+        BudgetedRead(RandomAccessBufferedFileInputStream delegate, AllocationBudget budget) {
+            this.delegate = delegate;
+            this.budget = budget;
+        }
+
+        private void tick() throws IOException {
+            if (++singleReads >= CHECK_INTERVAL) {
+                singleReads = 0;
+                budget.check();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            tick();
+            return delegate.read();
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            budget.check();
+            return delegate.read(b);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            budget.check();
+            return delegate.read(b, off, len);
+        }
+
+        @Override
+        public long getPosition() throws IOException {
+            return delegate.getPosition();
+        }
+
+        @Override
+        public void seek(long position) throws IOException {
+            budget.check();
+            delegate.seek(position);
+        }
+
+        @Override
+        public long length() throws IOException {
+            return delegate.length();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return delegate.isClosed();
+        }
+
+        @Override
+        public int peek() throws IOException {
+            tick();
+            return delegate.peek();
+        }
+
+        @Override
+        public void rewind(int bytes) throws IOException {
+            delegate.rewind(bytes);
+        }
+
+        @Override
+        public byte[] readFully(int length) throws IOException {
+            budget.check();
+            return delegate.readFully(length);
+        }
+
+        @Override
+        public boolean isEOF() throws IOException {
+            return delegate.isEOF();
+        }
+
+        @Override
+        public int available() throws IOException {
+            return delegate.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.MessageDTO;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Source of answers about a document, streamed token by token.
+ */
+interface RagClient {
+
+    /**
+     * A question about a document, with the conversation so far (oldest first).
+     */
+    record Query(Long documentId, Integer ragDocumentId, String question, List<MessageDTO> history) {}
+
+    /**
+     * Hand each piece of the answer to {@code onToken} as it arrives; returns once the answer is complete.
+     */
+    void streamAnswer(Query query, Consumer<String> onToken) throws IOException, InterruptedException;
+
+    String name();
+
+    /**
+     * Release what the client holds; called once at shutdown.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,42 @@
+package com.lynkai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Picks the RAG client once for the whole application: the HTTP client when
+ * {@code app.rag.base-url} is set, the local stub otherwise.
+ */
+@Component
+@Slf4j
+public class RagClientProvider {
+
+    private final RagClient client;
+
+    public RagClientProvider(@Value("${app.rag.base-url:}") String baseUrl,
+                             @Value("${app.rag.connect-timeout-ms:5000}") long connectTimeoutMs,
+                             @Value("${app.rag.timeout-ms:120000}") long timeoutMs,
+                             @Value("${app.rag.idle-timeout-ms:30000}") long idleTimeoutMs,
+                             @Value("${app.rag.stub.token-delay-ms:20}") long stubTokenDelayMs,
+                             ObjectMapper objectMapper) {
+        this.client = baseUrl == null || baseUrl.isBlank()
+                ? new StubRagClient(stubTokenDelayMs)
+                : new HttpRagClient(baseUrl.strip(), Duration.ofMillis(connectTimeoutMs), Duration.ofMillis(timeoutMs),
+                        Duration.ofMillis(idleTimeoutMs), objectMapper);
+        log.info("Chat answers streamed by the {} RAG client", client.name());
+    }
+
+    RagClient get() {
+        return client;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        client.close();
+    }
+}
@@ -0,0 +1,30 @@
+package com.lynkai.service;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Plain loop kernel, used when the Vector API module is not available.
+ */
+final class ScalarSimilarityKernel implements SimilarityKernel {
+
+    @Override
+    public void dotAll(FloatBuffer matrix, int rows, int dimension, float[] query, float[] scores) {
+        for (int row = 0; row < rows; row++) {
+            scores[row] = dot(matrix, row * dimension, query, dimension);
+        }
+    }
+
+    @Override
+    public float dot(FloatBuffer matrix, int offset, float[] query, int dimension) {
+        float sum = 0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += matrix.get(offset + i) * query[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
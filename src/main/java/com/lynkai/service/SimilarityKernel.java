@@ -0,0 +1,21 @@
+package com.lynkai.service;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Dot products of a query against rows of a row-major matrix.
+ */
+interface SimilarityKernel {
+
+    /**
+     * {@code scores[r] = dot(row r, query)} for each of the {@code rows} rows of {@code matrix}.
+     */
+    void dotAll(FloatBuffer matrix, int rows, int dimension, float[] query, float[] scores);
+
+    /**
+     * Dot product of {@code query} with the {@code dimension} floats of {@code matrix} starting at {@code offset}.
+     */
+    float dot(FloatBuffer matrix, int offset, float[] query, int dimension);
+
+    String name();
+}
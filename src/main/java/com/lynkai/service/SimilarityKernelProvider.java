@@ -0,0 +1,45 @@
+package com.lynkai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the similarity kernel once for the whole application: the SIMD kernel
+ * when the JVM was started with {@code --add-modules jdk.incubator.vector},
+ * a scalar loop otherwise.
+ */
+@Component
+@Slf4j
+public class SimilarityKernelProvider {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private final SimilarityKernel kernel;
+
+    public SimilarityKernelProvider(@Value("${app.search.simd:true}") boolean simd) {
+        this.kernel = simd ? loadVectorKernel() : new ScalarSimilarityKernel();
+        log.info("Vector search using the {} kernel", kernel.name());
+    }
+
+    SimilarityKernel get() {
+        return kernel;
+    }
+
+    private static SimilarityKernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            log.info("{} not enabled (start the JVM with --add-modules {}), falling back to scalar search",
+                    VECTOR_MODULE, VECTOR_MODULE);
+            return new ScalarSimilarityKernel();
+        }
+        try {
+            // Loaded by name so the class is never touched when the module is absent
+            return (SimilarityKernel) Class.forName("com.lynkai.service.VectorSimilarityKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Vector API kernel unavailable, falling back to scalar search: {}", e.getMessage());
+            return new ScalarSimilarityKernel();
+        }
+    }
+}
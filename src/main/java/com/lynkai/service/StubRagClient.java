@@ -0,0 +1,34 @@
+package com.lynkai.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Local stand-in for the RAG service: streams a canned answer word by word, so the
+ * chat endpoint can be exercised without the model running.
+ */
+final class StubRagClient implements RagClient {
+
+    private final long tokenDelayMs;
+
+    StubRagClient(long tokenDelayMs) {
+        this.tokenDelayMs = tokenDelayMs;
+    }
+
+    @Override
+    public void streamAnswer(Query query, Consumer<String> onToken) throws InterruptedException {
+        String answer = "This is a stub answer about document " + query.documentId()
+                + " to: \"" + query.question() + "\"";
+        String[] words = answer.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            if (tokenDelayMs > 0) {
+                Thread.sleep(tokenDelayMs);
+            }
+            onToken.accept(i == 0 ? words[i] : " " + words[i]);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+}
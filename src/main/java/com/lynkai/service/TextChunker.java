@@ -0,0 +1,127 @@
+package com.lynkai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.BreakIterator;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Splits text into overlapping chunks along sentence boundaries.
+ * <p>
+ * Sentences are packed into a chunk until the next one would push it past
+ * {@code app.chunking.size} characters. The following chunk starts with the
+ * trailing sentences of the previous one, up to {@code app.chunking.overlap}
+ * characters. A single sentence longer than the chunk size is cut at the last
+ * whitespace before the limit. Chunks are handed to the caller as they are
+ * produced, so the full list never has to exist in memory.
+ */
+@Component
+public class TextChunker {
+
+    private final int chunkSize;
+    private final int overlap;
+
+    public TextChunker(@Value("${app.chunking.size:1000}") int chunkSize,
+                       @Value("${app.chunking.overlap:200}") int overlap) {
+        if (chunkSize < 2) {
+            throw new IllegalArgumentException("Chunk size must be at least 2 characters.");
+        }
+        if (overlap < 0 || overlap >= chunkSize) {
+            throw new IllegalArgumentException("Chunk overlap must be smaller than the chunk size.");
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+    }
+
+    public void chunk(String text, Consumer<String> sink) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.ROOT);
+        sentences.setText(text);
+
+        // Sentences of the chunk being built, as [start, end) offsets into text
+        Deque<int[]> current = new ArrayDeque<>();
+        int currentLength = 0;
+        boolean hasNewContent = false;
+
+        int start = sentences.first();
+        for (int end = sentences.next(); end != BreakIterator.DONE; start = end, end = sentences.next()) {
+            for (int[] piece : splitLongSentence(text, start, end)) {
+                int pieceLength = piece[1] - piece[0];
+                if (currentLength + pieceLength > chunkSize && hasNewContent) {
+                    emit(text, current, sink);
+                    currentLength = keepOverlap(current);
+                    hasNewContent = false;
+                }
+                // Overlap plus a long piece may still not fit; drop the overlap in that case
+                while (currentLength + pieceLength > chunkSize && !current.isEmpty()) {
+                    int[] dropped = current.removeFirst();
+                    currentLength -= dropped[1] - dropped[0];
+                }
+                current.addLast(piece);
+                currentLength += pieceLength;
+                hasNewContent = true;
+            }
+        }
+
+        if (hasNewContent) {
+            emit(text, current, sink);
+        }
+    }
+
+    private static void emit(String text, Deque<int[]> sentences, Consumer<String> sink) {
+        String chunk = text.substring(sentences.peekFirst()[0], sentences.peekLast()[1]).strip();
+        if (!chunk.isEmpty()) {
+            sink.accept(chunk);
+        }
+    }
+
+    // Drop leading sentences until what is left fits in the overlap window
+    private int keepOverlap(Deque<int[]> sentences) {
+        int length = 0;
+        for (int[] sentence : sentences) {
+            length += sentence[1] - sentence[0];
+        }
+        while (!sentences.isEmpty() && length > overlap) {
+            int[] dropped = sentences.removeFirst();
+            length -= dropped[1] - dropped[0];
+        }
+        return length;
+    }
+
+    private int[][] splitLongSentence(String text, int start, int end) {
+        if (end - start <= chunkSize) {
+            return new int[][]{{start, end}};
+        }
+
+        int pieces = 0;
+        int[][] result = new int[(end - start) / (chunkSize / 2) + 2][];
+        int pos = start;
+        while (pos < end) {
+            int limit = Math.min(end, pos + chunkSize);
+            int cut = limit;
+            if (limit < end) {
+                for (int i = limit - 1; i > pos + chunkSize / 2; i--) {
+                    if (Character.isWhitespace(text.charAt(i))) {
+                        cut = i + 1;
+                        break;
+                    }
+                }
+                // No whitespace to cut at: at least keep surrogate pairs together
+                if (cut == limit && Character.isHighSurrogate(text.charAt(cut - 1)) && cut - 1 > pos) {
+                    cut--;
+                }
+            }
+            result[pieces++] = new int[]{pos, cut};
+            pos = cut;
+        }
+        return Arrays.copyOf(result, pieces);
+    }
+}
@@ -0,0 +1,369 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.CreateUploadSessionRequest;
+import com.lynkai.dto.DocumentResponse;
+import com.lynkai.dto.UploadSessionResponse;
+import com.lynkai.model.StoredFile;
+import com.lynkai.model.UploadSession;
+import com.lynkai.model.UploadSessionChunk;
+import com.lynkai.model.UploadSessionStatus;
+import com.lynkai.model.User;
+import com.lynkai.repository.UploadSessionChunkRepository;
+import com.lynkai.repository.UploadSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resumable uploads for files too large for a single request.
+ * <p>
+ * A session reserves a sparse file of the announced size under
+ * {@code <app.upload.dir>/.sessions}. Chunks of {@code app.upload.session.chunk-size}
+ * bytes may arrive in any order and in parallel; each is streamed to a file of its
+ * own, hashed on the way, and only once its length and SHA-256 check out copied to
+ * its position through a {@link FileChannel} and recorded. Copies of the same chunk
+ * are serialized, so a chunk is written into the session's file at most once. Completing the session hashes the assembled file
+ * in place, moves it into the content-addressed store and creates the document
+ * through {@link DocumentService#createDocument}, exactly like a single upload.
+ * Sessions expire {@code app.upload.session.ttl-ms} after their last chunk.
+ */
+@Service
+@Slf4j
+public class UploadSessionService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LOCK_STRIPES = 64;
+
+    private final UploadSessionRepository sessionRepository;
+    private final UploadSessionChunkRepository chunkRepository;
+    private final DocumentStorageService storageService;
+    private final DocumentService documentService;
+    // Serializes the copy-and-record step per (session, chunk)
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    @Value("${app.upload.session.chunk-size:8388608}")
+    private int chunkSize;
+
+    @Value("${app.upload.session.max-size:2147483648}")
+    private long maxSize;
+
+    @Value("${app.upload.session.ttl-ms:86400000}")
+    private long ttlMs;
+
+    public UploadSessionService(UploadSessionRepository sessionRepository,
+                                UploadSessionChunkRepository chunkRepository,
+                                DocumentStorageService storageService,
+                                DocumentService documentService) {
+        this.sessionRepository = sessionRepository;
+        this.chunkRepository = chunkRepository;
+        this.storageService = storageService;
+        this.documentService = documentService;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Size of the chunks new sessions are split into ({@code app.upload.session.chunk-size}), in bytes.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public UploadSessionResponse createSession(CreateUploadSessionRequest request, User user) throws IOException {
+        if (request.getTitle() == null || request.getTitle().isBlank()) {
+            throw new IllegalArgumentException("Title is required.");
+        }
+        Long totalSize = request.getTotalSize();
+        if (totalSize == null || totalSize <= 0) {
+            throw new IllegalArgumentException("totalSize must be positive.");
+        }
+        if (totalSize > maxSize) {
+            throw new IllegalArgumentException("Uploads are limited to " + maxSize + " bytes.");
+        }
+        String sha256 = request.getSha256();
+        if (sha256 != null && !sha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("sha256 must be 64 hex characters.");
+        }
+
+        // Sparse: no disk is used until chunks arrive
+        Path directory = Paths.get(uploadDir).resolve(".sessions");
+        Files.createDirectories(directory);
+        Path tempPath = directory.resolve(UUID.randomUUID() + ".part");
+        try (RandomAccessFile file = new RandomAccessFile(tempPath.toFile(), "rw")) {
+            file.setLength(totalSize);
+        }
+
+        UploadSession session = sessionRepository.save(UploadSession.builder()
+                .user(user)
+                .title(request.getTitle())
+                .filename(request.getFilename() != null ? request.getFilename() : request.getTitle())
+                .totalSize(totalSize)
+                .chunkSize(chunkSize)
+                .chunkCount((int) ((totalSize + chunkSize - 1) / chunkSize))
+                .expectedSha256(sha256 != null ? sha256.toLowerCase() : null)
+                .tempPath(tempPath.toString())
+                .status(UploadSessionStatus.OPEN)
+                .expiresAt(expiry())
+                .build());
+        log.info("Upload session {} opened: {} bytes in {} chunks", session.getId(), totalSize, session.getChunkCount());
+        return toResponse(session);
+    }
+
+    /**
+     * The session, or empty if it does not exist or belongs to someone else.
+     */
+    public Optional<UploadSessionResponse> getSession(Long sessionId, Long userId) {
+        return sessionRepository.findByIdAndUserId(sessionId, userId).map(this::toResponse);
+    }
+
+    /**
+     * Write chunk {@code chunkNumber} starting at byte {@code offset}. Re-sending a chunk that was
+     * already received with the same checksum is a no-op, so clients can blindly retry.
+     * Throws IllegalArgumentException when offset, length or checksum do not match (nothing is
+     * recorded and the chunk can be sent again) and IllegalStateException when the session no
+     * longer accepts chunks or the chunk was received with different content.
+     */
+    public Optional<UploadSessionResponse> writeChunk(Long sessionId, Long userId, int chunkNumber, long offset,
+                                                      String sha256, InputStream body) throws IOException {
+        UploadSession session = sessionRepository.findByIdAndUserId(sessionId, userId).orElse(null);
+        if (session == null) {
+            return Optional.empty();
+        }
+        if (session.getStatus() != UploadSessionStatus.OPEN) {
+            throw new IllegalStateException("Upload session is " + session.getStatus() + ".");
+        }
+        if (chunkNumber < 0 || chunkNumber >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Chunk number must be between 0 and " + (session.getChunkCount() - 1) + ".");
+        }
+        long expectedOffset = (long) chunkNumber * session.getChunkSize();
+        if (offset != expectedOffset) {
+            throw new IllegalArgumentException("Chunk " + chunkNumber + " starts at offset " + expectedOffset + ".");
+        }
+        if (sha256 == null || !sha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("A hex SHA-256 of the chunk is required.");
+        }
+
+        Optional<String> received = chunkRepository.findSha256(sessionId, chunkNumber);
+        if (received.isPresent()) {
+            if (!received.get().equalsIgnoreCase(sha256)) {
+                throw new IllegalStateException("Chunk " + chunkNumber + " was already received with different content.");
+            }
+            return Optional.of(toResponse(session));
+        }
+
+        int length = (int) Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+        Path assembly = Paths.get(session.getTempPath());
+        Path chunkFile = assembly.resolveSibling(assembly.getFileName() + "." + chunkNumber + "." + UUID.randomUUID());
+        try {
+            String actual = writeChunkFile(chunkFile, length, body);
+            if (!actual.equalsIgnoreCase(sha256)) {
+                throw new IllegalArgumentException("Checksum mismatch for chunk " + chunkNumber + ".");
+            }
+
+            ReentrantLock lock = stripes[Math.floorMod(Objects.hash(sessionId, chunkNumber), LOCK_STRIPES)];
+            lock.lock();
+            try {
+                // Another upload of this chunk may have been recorded while ours streamed
+                Optional<String> recorded = chunkRepository.findSha256(sessionId, chunkNumber);
+                if (recorded.isPresent()) {
+                    if (!recorded.get().equalsIgnoreCase(actual)) {
+                        throw new IllegalStateException("Chunk " + chunkNumber + " was already received with different content.");
+                    }
+                } else {
+                    copyInto(chunkFile, assembly, offset);
+                    chunkRepository.save(UploadSessionChunk.builder()
+                            .session(session)
+                            .chunkNumber(chunkNumber)
+                            .size(length)
+                            .sha256(actual)
+                            .build());
+                }
+            } catch (DataIntegrityViolationException e) {
+                // Recorded first by an upload of the same chunk on another node
+                log.debug("Chunk {} of upload session {} recorded concurrently", chunkNumber, sessionId);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            storageService.delete(chunkFile);
+        }
+        sessionRepository.extend(sessionId, expiry());
+        return sessionRepository.findById(sessionId).map(this::toResponse);
+    }
+
+    /**
+     * Turn a fully received session into a document. Throws IllegalStateException while
+     * chunks are missing and IllegalArgumentException when the whole-file checksum given at
+     * creation does not match; in that case the session is discarded.
+     */
+    public Optional<DocumentResponse> complete(Long sessionId, User user) throws IOException {
+        UploadSession session = sessionRepository.findByIdAndUserId(sessionId, user.getId()).orElse(null);
+        if (session == null) {
+            return Optional.empty();
+        }
+        if (session.getStatus() == UploadSessionStatus.COMPLETED) {
+            // A retried completion whose response was lost
+            return Optional.ofNullable(documentService.getDocumentById(session.getDocumentId()));
+        }
+        long received = chunkRepository.countBySessionId(sessionId);
+        if (received < session.getChunkCount()) {
+            throw new IllegalStateException((session.getChunkCount() - received) + " chunks are still missing.");
+        }
+        if (sessionRepository.transition(sessionId, UploadSessionStatus.OPEN, UploadSessionStatus.COMPLETING) == 0) {
+            throw new IllegalStateException("Upload session is already " + session.getStatus() + ".");
+        }
+
+        Path tempPath = Paths.get(session.getTempPath());
+        StoredFile stored;
+        try {
+            stored = storageService.adopt(tempPath, session.getFilename(), session.getExpectedSha256()).file();
+        } catch (IllegalArgumentException e) {
+            discard(session);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // The assembled file is untouched; let the client try completing again
+            sessionRepository.transition(sessionId, UploadSessionStatus.COMPLETING, UploadSessionStatus.OPEN);
+            throw e;
+        }
+
+        DocumentResponse document;
+        try {
+            document = documentService.createDocument(stored, session.getTitle(), user);
+        } catch (RuntimeException e) {
+            // createDocument gives the stored reference back when its transaction rolls back
+            discard(session);
+            throw e;
+        }
+        chunkRepository.deleteAllBySessionId(sessionId);
+        sessionRepository.complete(sessionId, document.getId(), expiry());
+        log.info("Upload session {} completed as document {}", sessionId, document.getId());
+        return Optional.of(document);
+    }
+
+    /**
+     * Abandon a session and free its disk space. Returns false if it does not exist or is not the user's.
+     */
+    public boolean abort(Long sessionId, Long userId) {
+        UploadSession session = sessionRepository.findByIdAndUserId(sessionId, userId).orElse(null);
+        if (session == null || session.getStatus() == UploadSessionStatus.COMPLETING) {
+            return false;
+        }
+        discard(session);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.upload.session.cleanup-interval-ms:3600000}")
+    public void removeExpired() {
+        int removed = 0;
+        for (UploadSession session : sessionRepository.findByExpiresAtBefore(LocalDateTime.now())) {
+            try {
+                discard(session);
+                removed++;
+            } catch (RuntimeException e) {
+                log.warn("Failed to remove expired upload session {}: {}", session.getId(), e.getMessage());
+            }
+        }
+        if (removed > 0) {
+            log.info("Removed {} expired upload sessions", removed);
+        }
+    }
+
+    private LocalDateTime expiry() {
+        return LocalDateTime.now().plus(Duration.ofMillis(ttlMs));
+    }
+
+    private void discard(UploadSession session) {
+        storageService.delete(Paths.get(session.getTempPath()));
+        chunkRepository.deleteAllBySessionId(session.getId());
+        sessionRepository.deleteById(session.getId());
+    }
+
+    // Stream exactly length bytes from body into a new file; returns their SHA-256
+    private static String writeChunkFile(Path path, int length, InputStream body) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int remaining = length;
+
+        try (body; FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (remaining > 0) {
+                int read = body.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IllegalArgumentException("Chunk is " + (length - remaining) + " bytes, expected " + length + ".");
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                remaining -= read;
+            }
+            if (body.read() >= 0) {
+                throw new IllegalArgumentException("Chunk is longer than the expected " + length + " bytes.");
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Copy a verified chunk file to its position in the session's file
+    private static void copyInto(Path chunkFile, Path assembly, long offset) throws IOException {
+        try (FileChannel source = FileChannel.open(chunkFile, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(assembly, StandardOpenOption.WRITE)) {
+            long size = source.size();
+            long copied = 0;
+            while (copied < size) {
+                copied += source.transferTo(copied, size - copied, target.position(offset + copied));
+            }
+        }
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session) {
+        // Chunk records are dropped once the file is in the store
+        boolean completed = session.getStatus() == UploadSessionStatus.COMPLETED;
+        return UploadSessionResponse.builder()
+                .id(session.getId())
+                .title(session.getTitle())
+                .filename(session.getFilename())
+                .totalSize(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .chunkCount(session.getChunkCount())
+                .receivedChunks(chunkRepository.findChunkNumbers(session.getId()))
+                .receivedBytes(completed ? session.getTotalSize() : chunkRepository.sumSize(session.getId()))
+                .status(session.getStatus())
+                .documentId(session.getDocumentId())
+                .expiresAt(session.getExpiresAt())
+                .build();
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
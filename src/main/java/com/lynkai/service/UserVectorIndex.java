@@ -0,0 +1,380 @@
+package com.lynkai.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * One user's HNSW index: a {@link VectorSegmentStore} plus the {@link HnswGraph} over it.
+ * <p>
+ * Searches share a read lock; inserts and deletes take the write lock. Compaction
+ * builds under the read lock and only takes the write lock to swap. The graph is snapshotted to {@code graph.bin}; nodes appended after the last
+ * snapshot are re-linked when the index is opened, so a restart only replays the
+ * tail instead of rebuilding. Deletes are tombstones until {@link #compact()}
+ * rewrites the index with live nodes only.
+ */
+@Slf4j
+final class UserVectorIndex implements Closeable {
+
+    private static final String GRAPH_FILE = "graph.bin";
+
+    // A search hit; score is the cosine similarity
+    record Hit(long chunkId, long documentId, float score) {}
+
+    private final Path directory;
+    private final SimilarityKernel kernel;
+    private final int m;
+    private final int efConstruction;
+    private final int segmentRows;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile boolean closed;
+
+    // Null until the first vector arrives and fixes the dimension
+    private VectorSegmentStore store;
+    private HnswGraph graph;
+    private final Map<Long, Integer> nodeByChunk = new HashMap<>();
+
+    private UserVectorIndex(Path directory, SimilarityKernel kernel, int m, int efConstruction, int segmentRows) {
+        this.directory = directory;
+        this.kernel = kernel;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.segmentRows = segmentRows;
+    }
+
+    static boolean exists(Path directory) {
+        return VectorSegmentStore.exists(directory) || Files.isDirectory(compactingOld(directory));
+    }
+
+    /**
+     * Remove an index that is not open, e.g. after a failed build.
+     */
+    static void delete(Path directory) throws IOException {
+        deleteRecursively(directory);
+        deleteRecursively(compacting(directory));
+        deleteRecursively(compactingOld(directory));
+    }
+
+    static UserVectorIndex open(Path directory, SimilarityKernel kernel,
+                                int m, int efConstruction, int segmentRows) throws IOException {
+        recoverInterruptedCompaction(directory);
+        UserVectorIndex index = new UserVectorIndex(directory, kernel, m, efConstruction, segmentRows);
+        if (VectorSegmentStore.exists(directory)) {
+            index.load();
+        }
+        return index;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return store == null ? 0 : store.size() - store.deletedCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    double tombstoneRatio() {
+        lock.readLock().lock();
+        try {
+            return store == null || store.size() == 0 ? 0 : (double) store.deletedCount() / store.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean isDirty() {
+        return dirty.get();
+    }
+
+    // Once closed, searches find nothing and updates fail; callers reopen the index
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Add or replace the vector of a chunk.
+     */
+    void upsert(long chunkId, long documentId, float[] vector) throws IOException {
+        float[] normalized = vector.clone();
+        Embeddings.normalize(normalized);
+
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            if (store == null) {
+                store = VectorSegmentStore.create(directory, normalized.length, segmentRows);
+                graph = new HnswGraph(store, kernel, m, efConstruction);
+            }
+            Integer previous = nodeByChunk.get(chunkId);
+            if (previous != null) {
+                store.markDeleted(previous);
+            }
+            int node = store.append(chunkId, documentId, normalized);
+            graph.insert(node);
+            nodeByChunk.put(chunkId, node);
+            dirty.set(true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tombstone every chunk of a document. Returns the number of chunks removed.
+     */
+    int removeDocument(long documentId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            if (store == null) {
+                return 0;
+            }
+            int removed = 0;
+            for (int node = 0; node < store.size(); node++) {
+                if (store.documentId(node) == documentId && !store.isDeleted(node)) {
+                    store.markDeleted(node);
+                    nodeByChunk.remove(store.chunkId(node));
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<Hit> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (store == null) {
+                return List.of();
+            }
+            if (query.length != store.dimension()) {
+                throw new IllegalArgumentException("Query has dimension " + query.length
+                        + ", library index has " + store.dimension());
+            }
+            float[] normalized = query.clone();
+            Embeddings.normalize(normalized);
+
+            long[] found = graph.search(normalized, k, ef);
+            List<Hit> hits = new ArrayList<>(found.length);
+            for (long encoded : found) {
+                int node = HnswGraph.nodeOf(encoded);
+                hits.add(new Hit(store.chunkId(node), store.documentId(node), HnswGraph.scoreOf(encoded)));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Persist the graph and flush the vector segments, if anything changed.
+     * Searches keep running meanwhile; writers wait.
+     */
+    void snapshot() throws IOException {
+        lock.readLock().lock();
+        try {
+            if (store == null || !dirty.compareAndSet(true, false)) {
+                return;
+            }
+            store.force();
+            graph.writeSnapshot(directory.resolve(GRAPH_FILE));
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the index with live nodes only, next to the current one, then swap
+     * directories. The copy is built under the read lock, so searches keep running;
+     * the write lock is only taken to apply what changed meanwhile and swap.
+     * Called by one thread at a time.
+     */
+    void compact() throws IOException {
+        long start = System.currentTimeMillis();
+        Path compacting = compacting(directory);
+        VectorSegmentStore compacted = null;
+        HnswGraph rebuilt;
+        int copied;
+        int[] moved;
+
+        lock.readLock().lock();
+        try {
+            if (store == null || store.deletedCount() == 0) {
+                return;
+            }
+            deleteRecursively(compacting);
+            compacted = VectorSegmentStore.create(compacting, store.dimension(), segmentRows);
+            rebuilt = new HnswGraph(compacted, kernel, m, efConstruction);
+            copied = store.size();
+            moved = new int[copied];
+            for (int node = 0; node < copied; node++) {
+                moved[node] = -1;
+                if (!store.isDeleted(node)) {
+                    moved[node] = compacted.append(store.chunkId(node), store.documentId(node), store.vector(node));
+                    rebuilt.insert(moved[node]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            discardCompaction(compacted, compacting);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (store == null) {
+                // Closed meanwhile
+                discardCompaction(compacted, compacting);
+                return;
+            }
+            int before = store.size();
+            // Writers may have run between the two locks: carry over their deletes and appends
+            for (int node = 0; node < copied; node++) {
+                if (moved[node] >= 0 && store.isDeleted(node)) {
+                    compacted.markDeleted(moved[node]);
+                }
+            }
+            for (int node = copied; node < store.size(); node++) {
+                if (!store.isDeleted(node)) {
+                    rebuilt.insert(compacted.append(store.chunkId(node), store.documentId(node), store.vector(node)));
+                }
+            }
+            rebuilt.writeSnapshot(compacting.resolve(GRAPH_FILE));
+            compacted.close();
+            compacted = null;
+
+            store.close();
+            store = null;
+            Path old = compactingOld(directory);
+            Files.move(directory, old, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(compacting, directory, StandardCopyOption.ATOMIC_MOVE);
+            deleteRecursively(old);
+
+            nodeByChunk.clear();
+            dirty.set(false);
+            load();
+            log.info("Compacted vector index {}: {} -> {} nodes in {} ms",
+                    directory, before, store.size(), System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            if (compacted != null) {
+                discardCompaction(compacted, compacting);
+            }
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void discardCompaction(VectorSegmentStore compacted, Path compacting) {
+        try {
+            if (compacted != null) {
+                compacted.close();
+            }
+            deleteRecursively(compacting);
+        } catch (IOException e) {
+            log.warn("Failed to remove partial compaction {}: {}", compacting, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            if (store != null) {
+                snapshotLocked();
+                store.close();
+                store = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Vector index " + directory + " is closed");
+        }
+    }
+
+    private void snapshotLocked() throws IOException {
+        if (dirty.compareAndSet(true, false)) {
+            store.force();
+            graph.writeSnapshot(directory.resolve(GRAPH_FILE));
+        }
+    }
+
+    private void load() throws IOException {
+        store = VectorSegmentStore.open(directory);
+        graph = new HnswGraph(store, kernel, m, efConstruction);
+        if (!graph.readSnapshot(directory.resolve(GRAPH_FILE))) {
+            graph = new HnswGraph(store, kernel, m, efConstruction);
+        }
+
+        int replayed = store.size() - graph.size();
+        for (int node = graph.size(); node < store.size(); node++) {
+            graph.insert(node);
+        }
+        for (int node = 0; node < store.size(); node++) {
+            if (!store.isDeleted(node)) {
+                nodeByChunk.put(store.chunkId(node), node);
+            }
+        }
+        if (replayed > 0) {
+            dirty.set(true);
+            log.info("Vector index {}: re-linked {} nodes not in the last snapshot", directory, replayed);
+        }
+    }
+
+    // A crash between the two directory moves leaves only the old copy
+    private static void recoverInterruptedCompaction(Path directory) throws IOException {
+        Path old = compactingOld(directory);
+        if (Files.isDirectory(old)) {
+            if (VectorSegmentStore.exists(directory)) {
+                deleteRecursively(old);
+            } else {
+                deleteRecursively(directory);
+                Files.move(old, directory, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        deleteRecursively(compacting(directory));
+    }
+
+    private static Path compacting(Path directory) {
+        return directory.resolveSibling(directory.getFileName() + ".compacting");
+    }
+
+    private static Path compactingOld(Path directory) {
+        return directory.resolveSibling(directory.getFileName() + ".old");
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
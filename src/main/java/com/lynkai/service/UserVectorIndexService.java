@@ -0,0 +1,454 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.ChunkSearchResult;
+import com.lynkai.repository.DocumentChunkRepository;
+import com.lynkai.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cross-library similarity search: one HNSW index per user under {@code app.index.dir}.
+ * <p>
+ * An index is opened on first use. If it has never been built, it is built from
+ * the embeddings already in the database on one of {@code app.index.build-threads}
+ * background threads, reading {@code app.index.build-batch-rows} rows per short
+ * transaction; searches meanwhile fail with {@link IndexNotReadyException} rather
+ * than hold a request thread for the whole build. After that it follows changes
+ * incrementally: stored embeddings are inserted, and re-chunked documents are
+ * tombstoned. Dirty graphs are snapshotted every
+ * {@code app.index.snapshot-interval-ms}. An index is compacted once tombstones
+ * exceed {@code app.index.compaction-threshold} of its nodes, and closed once unused
+ * for {@code app.index.idle-evict-ms}.
+ * <p>
+ * An update that fails after its transaction committed would leave the index
+ * behind the database for good, so the index is discarded instead and rebuilt from
+ * the database on next use.
+ */
+@Service
+@Slf4j
+public class UserVectorIndexService {
+
+    private static final int DEFAULT_K = 5;
+    private static final long BUILD_RETRY_AFTER_SECONDS = 5;
+
+    private final DocumentChunkRepository chunkRepository;
+    private final DocumentRepository documentRepository;
+    private final SimilarityKernel kernel;
+    private final TransactionTemplate readOnly;
+    private final ThreadPoolExecutor buildExecutor;
+
+    @Value("${app.index.dir:index}")
+    private String indexDir;
+
+    @Value("${app.index.m:16}")
+    private int m;
+
+    @Value("${app.index.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${app.index.ef-search:100}")
+    private int efSearch;
+
+    @Value("${app.index.segment-rows:65536}")
+    private int segmentRows;
+
+    @Value("${app.index.compaction-threshold:0.2}")
+    private double compactionThreshold;
+
+    @Value("${app.index.idle-evict-ms:1800000}")
+    private long idleEvictMs;
+
+    @Value("${app.index.build-batch-rows:1000}")
+    private int buildBatchRows;
+
+    @Value("${app.search.max-k:50}")
+    private int maxK;
+
+    // Open indexes; the future lets concurrent callers wait for a single open/build
+    private final ConcurrentHashMap<Long, CompletableFuture<UserVectorIndex>> indexes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> lastUsed = new ConcurrentHashMap<>();
+
+    public UserVectorIndexService(DocumentChunkRepository chunkRepository,
+                                  DocumentRepository documentRepository,
+                                  SimilarityKernelProvider kernelProvider,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.index.build-threads:2}") int buildThreads) {
+        this.chunkRepository = chunkRepository;
+        this.documentRepository = documentRepository;
+        this.kernel = kernelProvider.get();
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+
+        // Builds are single-flight per user, so the queue holds at most one per user
+        AtomicInteger threadCount = new AtomicInteger();
+        this.buildExecutor = new ThreadPoolExecutor(
+                buildThreads, buildThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "index-build-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * The {@code k} chunks across all of a user's documents most similar to {@code query}, best first.
+     *
+     * @throws IndexNotReadyException while the user's index is being built; the first search starts the build
+     */
+    public List<ChunkSearchResult> search(Long userId, float[] query, Integer k) {
+        if (query == null || query.length == 0) {
+            throw new IllegalArgumentException("Query vector is required.");
+        }
+        int limit = Math.min(Math.max(1, maxK), k != null && k > 0 ? k : DEFAULT_K);
+
+        long start = System.nanoTime();
+        UserVectorIndex index = readyIndexFor(userId);
+        List<UserVectorIndex.Hit> hits = index.search(query, limit, efSearch);
+        if (hits.isEmpty() && index.isClosed()) {
+            // Evicted while we were using it
+            hits = readyIndexFor(userId).search(query, limit, efSearch);
+        }
+        log.debug("Library search for user {} took {} µs", userId, (System.nanoTime() - start) / 1000);
+
+        // Hits whose chunk was deleted since it was indexed are dropped here
+        Map<Long, DocumentChunkRepository.ChunkTextView> chunks = chunkRepository.findTextsByIdIn(
+                        hits.stream().map(UserVectorIndex.Hit::chunkId).toList())
+                .stream()
+                .collect(Collectors.toMap(DocumentChunkRepository.ChunkTextView::getId, Function.identity()));
+
+        List<ChunkSearchResult> results = new ArrayList<>(hits.size());
+        for (UserVectorIndex.Hit hit : hits) {
+            DocumentChunkRepository.ChunkTextView chunk = chunks.get(hit.chunkId());
+            if (chunk != null) {
+                results.add(ChunkSearchResult.builder()
+                        .chunkId(hit.chunkId())
+                        .documentId(hit.documentId())
+                        .chunkIndex(chunk.getChunkIndex())
+                        .score(hit.score())
+                        .textContent(chunk.getTextContent())
+                        .build());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Insert freshly stored embeddings of a document (keyed by chunk index) once the
+     * surrounding transaction commits. Indexes that were never built are left alone;
+     * they pick the embeddings up from the database when first opened.
+     */
+    public void indexAfterCommit(Long documentId, Map<Integer, float[]> embeddingsByChunkIndex) {
+        afterCommit(() -> {
+            Long userId = documentRepository.findOwnerIdById(documentId).orElse(null);
+            if (userId == null) {
+                return;
+            }
+            List<DocumentChunkRepository.ChunkKeyView> keys =
+                    chunkRepository.findKeysByDocumentIdAndChunkIndexIn(documentId, embeddingsByChunkIndex.keySet());
+            update(userId, index -> {
+                for (DocumentChunkRepository.ChunkKeyView key : keys) {
+                    index.upsert(key.getId(), documentId, embeddingsByChunkIndex.get(key.getChunkIndex()));
+                }
+            });
+        });
+    }
+
+    /**
+     * Tombstone all chunks of a document once the surrounding transaction commits.
+     */
+    public void removeDocumentAfterCommit(Long documentId) {
+        afterCommit(() -> documentRepository.findOwnerIdById(documentId)
+                .ifPresent(userId -> update(userId, index -> index.removeDocument(documentId))));
+    }
+
+    /**
+     * Tombstone all chunks of a document whose row may already be gone, so the owner
+     * is given rather than looked up. Never triggers a build.
+     */
+    public void removeDocument(Long userId, Long documentId) {
+        update(userId, index -> index.removeDocument(documentId));
+    }
+
+    @Scheduled(fixedDelayString = "${app.index.snapshot-interval-ms:60000}")
+    public void maintain() {
+        long now = System.currentTimeMillis();
+        indexes.forEach((userId, future) -> {
+            UserVectorIndex index = future.getNow(null);
+            if (index == null) {
+                return;
+            }
+            if (now - lastUsed.getOrDefault(userId, 0L) > idleEvictMs) {
+                evict(userId, future, index);
+                return;
+            }
+            try {
+                if (index.tombstoneRatio() > compactionThreshold) {
+                    index.compact();
+                } else if (index.isDirty()) {
+                    index.snapshot();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Maintenance of vector index for user {} failed", userId, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+        indexes.forEach((userId, future) -> {
+            UserVectorIndex index = future.getNow(null);
+            if (index == null) {
+                return;
+            }
+            try {
+                index.close();
+            } catch (IOException e) {
+                log.warn("Failed to close vector index for user {}: {}", userId, e.getMessage());
+            }
+        });
+        indexes.clear();
+    }
+
+    private interface IndexUpdate {
+        void apply(UserVectorIndex index) throws IOException;
+    }
+
+    private static void afterCommit(Runnable action) {
+        Runnable guarded = () -> {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.error("Vector index update failed", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guarded.run();
+                }
+            });
+        } else {
+            guarded.run();
+        }
+    }
+
+    // Apply an update to the user's index if it is open or on disk; never triggers a build
+    private void update(Long userId, IndexUpdate update) {
+        if (!indexes.containsKey(userId) && !UserVectorIndex.exists(directoryFor(userId))) {
+            return;
+        }
+        UserVectorIndex index = null;
+        try {
+            index = indexFor(userId);
+            update.apply(index);
+        } catch (IOException | RuntimeException e) {
+            Exception failure = e;
+            if (index != null && index.isClosed()) {
+                // Evicted while we were using it: the reopened index has everything but this update
+                try {
+                    update.apply(indexFor(userId));
+                    return;
+                } catch (IOException | RuntimeException retry) {
+                    failure = retry;
+                }
+            }
+            log.error("Vector index update for user {} failed; discarding the index so it is rebuilt", userId, failure);
+            discard(userId);
+        }
+    }
+
+    /**
+     * Close and delete the user's index so the next use rebuilds it from the database.
+     * Deleting under the map entry's lock keeps a concurrent open from reading the files.
+     */
+    private void discard(Long userId) {
+        Path directory = directoryFor(userId);
+        while (true) {
+            CompletableFuture<UserVectorIndex> current = indexes.get(userId);
+            UserVectorIndex open = null;
+            if (current != null) {
+                try {
+                    open = current.join();
+                } catch (CompletionException e) {
+                    // A failed open removes its own entry; look again
+                    continue;
+                }
+            }
+            UserVectorIndex toClose = open;
+            boolean[] discarded = {false};
+            indexes.compute(userId, (id, present) -> {
+                if (present != current) {
+                    return present;
+                }
+                closeQuietly(userId, toClose);
+                try {
+                    UserVectorIndex.delete(directory);
+                } catch (IOException e) {
+                    log.error("Failed to delete vector index {}; it may be behind the database", directory, e);
+                }
+                discarded[0] = true;
+                return null;
+            });
+            if (discarded[0]) {
+                return;
+            }
+        }
+    }
+
+    private void evict(Long userId, CompletableFuture<UserVectorIndex> future, UserVectorIndex index) {
+        indexes.compute(userId, (id, present) -> {
+            if (present != future) {
+                return present;
+            }
+            closeQuietly(userId, index);
+            lastUsed.remove(userId);
+            log.debug("Closed idle vector index for user {}", userId);
+            return null;
+        });
+    }
+
+    private static void closeQuietly(Long userId, UserVectorIndex index) {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.close();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to close vector index for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private Path directoryFor(Long userId) {
+        return Paths.get(indexDir).resolve("user-" + userId);
+    }
+
+    // The user's index, waiting for it to be opened or built if need be
+    private UserVectorIndex indexFor(Long userId) {
+        try {
+            return open(userId).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+
+    // The user's index if it can be had without waiting for a build
+    private UserVectorIndex readyIndexFor(Long userId) {
+        try {
+            UserVectorIndex index = open(userId).getNow(null);
+            if (index == null) {
+                throw new IndexNotReadyException(
+                        "The library index is being built; try again shortly.", BUILD_RETRY_AFTER_SECONDS);
+            }
+            return index;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+
+    /**
+     * The single-flight future of the user's index. An index on disk is opened in the
+     * calling thread, which only maps its segments; one that must be built from the
+     * database is built on the build executor.
+     */
+    private CompletableFuture<UserVectorIndex> open(Long userId) {
+        lastUsed.put(userId, System.currentTimeMillis());
+        CompletableFuture<UserVectorIndex> mine = new CompletableFuture<>();
+        CompletableFuture<UserVectorIndex> existing = indexes.putIfAbsent(userId, mine);
+        if (existing != null) {
+            return existing;
+        }
+
+        Path directory = directoryFor(userId);
+        if (UserVectorIndex.exists(directory)) {
+            openInto(mine, userId, () -> {
+                UserVectorIndex index = UserVectorIndex.open(directory, kernel, m, efConstruction, segmentRows);
+                log.info("Opened vector index for user {} ({} live nodes)", userId, index.size());
+                return index;
+            });
+        } else {
+            try {
+                buildExecutor.execute(() -> openInto(mine, userId, () -> build(userId)));
+            } catch (RejectedExecutionException e) {
+                indexes.remove(userId, mine);
+                mine.completeExceptionally(e);
+            }
+        }
+        return mine;
+    }
+
+    private interface IndexOpener {
+        UserVectorIndex open() throws IOException;
+    }
+
+    private void openInto(CompletableFuture<UserVectorIndex> future, Long userId, IndexOpener opener) {
+        try {
+            future.complete(opener.open());
+        } catch (IOException e) {
+            indexes.remove(userId, future);
+            future.completeExceptionally(new UncheckedIOException("Cannot open vector index for user " + userId, e));
+        } catch (RuntimeException e) {
+            indexes.remove(userId, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    // Keyset pages in id order, each in its own short transaction, so a large library never pins one
+    private UserVectorIndex build(Long userId) throws IOException {
+        Path directory = directoryFor(userId);
+        UserVectorIndex index = UserVectorIndex.open(directory, kernel, m, efConstruction, segmentRows);
+        long start = System.currentTimeMillis();
+        try {
+            long after = 0;
+            List<DocumentChunkRepository.OwnedChunkVectorView> page;
+            do {
+                long from = after;
+                page = readOnly.execute(status -> chunkRepository.findVectorsPageByUserId(
+                        userId, from, PageRequest.of(0, buildBatchRows)));
+                for (DocumentChunkRepository.OwnedChunkVectorView row : page) {
+                    index.upsert(row.getId(), row.getDocumentId(), Embeddings.decode(
+                            row.getEmbeddingCodec(), row.getEmbedding(), row.getEmbeddingFull()));
+                    after = row.getId();
+                }
+            } while (page.size() == buildBatchRows);
+            index.snapshot();
+        } catch (IOException | RuntimeException e) {
+            // A half-built index on disk would be mistaken for a complete one next time
+            index.close();
+            UserVectorIndex.delete(directory);
+            throw e;
+        }
+        log.info("Built vector index for user {} from the database: {} nodes in {} ms",
+                userId, index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+}
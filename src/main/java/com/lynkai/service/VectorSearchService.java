@@ -0,0 +1,316 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.ChunkEmbeddingDTO;
+import com.lynkai.dto.ChunkSearchResult;
+import com.lynkai.model.EmbeddingCodec;
+import com.lynkai.repository.DocumentChunkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Top-k cosine search over the chunk embeddings of a document, in process.
+ * <p>
+ * A document's embeddings are loaded once into an off-heap {@link EmbeddingMatrix}
+ * and kept in an LRU cache bounded by {@code app.search.matrix-cache-bytes}.
+ * Embeddings are stored and scanned in the {@code app.search.codec} encoding.
+ * With a lossy codec and {@code app.search.rerank} on, the scan only shortlists
+ * {@code k * app.search.rerank-factor} chunks, which are then ranked on their
+ * full-precision vectors. Those are stored next to the code only while re-ranking is on.
+ * Float32 rows are scored with the kernel chosen by {@link SimilarityKernelProvider}.
+ */
+@Service
+@Slf4j
+public class VectorSearchService {
+
+    private static final int DEFAULT_K = 5;
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final DocumentChunkRepository chunkRepository;
+    private final UserVectorIndexService userVectorIndexService;
+    private final SimilarityKernel kernel;
+    private final long cacheBudgetBytes;
+    private final int maxK;
+    private final EmbeddingCodec codec;
+    private final boolean rerank;
+    private final int rerankFactor;
+
+    // Access-ordered: iteration starts at the least recently used matrix
+    private final LinkedHashMap<Long, EmbeddingMatrix> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    // Bumped on every invalidation, so a load that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public VectorSearchService(DocumentChunkRepository chunkRepository,
+                               UserVectorIndexService userVectorIndexService,
+                               SimilarityKernelProvider kernelProvider,
+                               @Value("${app.search.matrix-cache-bytes:268435456}") long cacheBudgetBytes,
+                               @Value("${app.search.max-k:50}") int maxK,
+                               @Value("${app.search.codec:float32}") String codec,
+                               @Value("${app.search.rerank:false}") boolean rerank,
+                               @Value("${app.search.rerank-factor:4}") int rerankFactor) {
+        this.chunkRepository = chunkRepository;
+        this.userVectorIndexService = userVectorIndexService;
+        this.kernel = kernelProvider.get();
+        this.cacheBudgetBytes = cacheBudgetBytes;
+        this.maxK = Math.max(1, maxK);
+        this.codec = EmbeddingCodec.valueOf(codec.trim().toUpperCase(Locale.ROOT));
+        this.rerank = rerank;
+        this.rerankFactor = Math.max(1, rerankFactor);
+    }
+
+    /**
+     * The {@code k} chunks of a document most similar to {@code query}, best first.
+     * Empty when the document has no embeddings yet.
+     */
+    @Transactional(readOnly = true)
+    public List<ChunkSearchResult> search(Long documentId, float[] query, Integer k) {
+        if (query == null || query.length == 0) {
+            throw new IllegalArgumentException("Query vector is required.");
+        }
+        int limit = Math.min(maxK, k != null && k > 0 ? k : DEFAULT_K);
+
+        EmbeddingMatrix matrix = matrixFor(documentId);
+        if (matrix == null || matrix.size() == 0) {
+            return List.of();
+        }
+        if (query.length != matrix.dimension()) {
+            throw new IllegalArgumentException("Query has dimension " + query.length
+                    + ", document embeddings have " + matrix.dimension());
+        }
+
+        long start = System.nanoTime();
+        float[] normalized = query.clone();
+        Embeddings.normalize(normalized);
+        float[] scores = new float[matrix.size()];
+        matrix.scoreAll(kernel, normalized, scores);
+
+        // Lossy codes only pick a shortlist; its order comes from the full-precision vectors
+        boolean rerank = this.rerank && matrix.codec().isLossy();
+        int[] top = topK(scores, rerank ? Math.min(matrix.size(), limit * rerankFactor) : limit);
+        if (rerank) {
+            top = rerank(matrix, top, normalized, scores, limit);
+        }
+        log.debug("Scored {} {} chunks of document {} in {} µs", matrix.size(), matrix.codec(), documentId,
+                (System.nanoTime() - start) / 1000);
+
+        List<Long> ids = new ArrayList<>(top.length);
+        for (int row : top) {
+            ids.add(matrix.chunkId(row));
+        }
+        Map<Long, String> texts = chunkRepository.findTextsByIdIn(ids).stream()
+                .collect(Collectors.toMap(DocumentChunkRepository.ChunkTextView::getId,
+                        DocumentChunkRepository.ChunkTextView::getTextContent));
+
+        List<ChunkSearchResult> results = new ArrayList<>(top.length);
+        for (int row : top) {
+            results.add(ChunkSearchResult.builder()
+                    .chunkId(matrix.chunkId(row))
+                    .documentId(documentId)
+                    .chunkIndex(matrix.chunkIndex(row))
+                    .score(scores[row])
+                    .textContent(texts.get(matrix.chunkId(row)))
+                    .build());
+        }
+        return results;
+    }
+
+    /**
+     * Store embeddings computed for a document's chunks, addressed by chunk index.
+     * Returns the number of chunks updated.
+     */
+    @Transactional
+    public int storeEmbeddings(Long documentId, List<ChunkEmbeddingDTO> embeddings) {
+        if (embeddings == null || embeddings.isEmpty()) {
+            throw new IllegalArgumentException("No embeddings provided.");
+        }
+        int dimension = -1;
+        for (ChunkEmbeddingDTO item : embeddings) {
+            if (item.getChunkIndex() == null || item.getEmbedding() == null || item.getEmbedding().length == 0) {
+                throw new IllegalArgumentException("Each embedding needs a chunkIndex and a non-empty vector.");
+            }
+            if (dimension != -1 && item.getEmbedding().length != dimension) {
+                throw new IllegalArgumentException("All embeddings of a document must have the same dimension.");
+            }
+            dimension = item.getEmbedding().length;
+        }
+
+        // Full precision is only worth keeping when the stored code is lossy and used for re-ranking
+        boolean keepFull = codec.isLossy() && rerank;
+        int updated = 0;
+        Map<Integer, float[]> byChunkIndex = new HashMap<>();
+        for (ChunkEmbeddingDTO item : embeddings) {
+            float[] normalized = item.getEmbedding().clone();
+            Embeddings.normalize(normalized);
+            updated += chunkRepository.updateEmbedding(documentId, item.getChunkIndex(), codec,
+                    codec.encode(normalized),
+                    keepFull ? EmbeddingCodec.FLOAT32.encode(normalized) : null);
+            byChunkIndex.put(item.getChunkIndex(), normalized);
+        }
+        invalidateAfterCommit(documentId);
+        userVectorIndexService.indexAfterCommit(documentId, byChunkIndex);
+        return updated;
+    }
+
+    /**
+     * Drop the cached matrix of a document once the current transaction (if any) commits.
+     */
+    public void invalidateAfterCommit(Long documentId) {
+        invalidate(documentId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(documentId);
+                }
+            });
+        }
+    }
+
+    public void invalidate(Long documentId) {
+        generation.incrementAndGet();
+        synchronized (cache) {
+            EmbeddingMatrix removed = cache.remove(documentId);
+            if (removed != null) {
+                cachedBytes -= removed.sizeInBytes();
+            }
+        }
+    }
+
+    private EmbeddingMatrix matrixFor(Long documentId) {
+        synchronized (cache) {
+            EmbeddingMatrix cached = cache.get(documentId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long loadedAt = generation.get();
+        EmbeddingMatrix matrix = load(documentId);
+        if (matrix != null && generation.get() == loadedAt) {
+            cache(documentId, matrix);
+        }
+        return matrix;
+    }
+
+    private EmbeddingMatrix load(Long documentId) {
+        long count = chunkRepository.countByDocumentIdAndEmbeddingIsNotNull(documentId);
+        if (count == 0) {
+            return null;
+        }
+
+        EmbeddingMatrix matrix = null;
+        int after = -1;
+        List<DocumentChunkRepository.ChunkEmbeddingView> page;
+        do {
+            page = chunkRepository.findEmbeddingsPage(documentId, after, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (DocumentChunkRepository.ChunkEmbeddingView row : page) {
+                EmbeddingCodec rowCodec = Embeddings.codecOf(row.getEmbeddingCodec());
+                if (matrix == null) {
+                    matrix = new EmbeddingMatrix(codec, (int) count, rowCodec.dimensionOf(row.getEmbedding()));
+                }
+                // Rows added after the count was taken do not fit; the next load picks them up
+                if (matrix.size() == count) {
+                    break;
+                }
+                matrix.add(row.getId(), row.getChunkIndex(), toMatrixCode(row.getEmbeddingCodec(), row.getEmbedding()));
+                after = row.getChunkIndex();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE && matrix != null && matrix.size() < count);
+        log.debug("Loaded {} embeddings for document {}", matrix != null ? matrix.size() : 0, documentId);
+        return matrix;
+    }
+
+    // Rows stored with another codec (or before codecs, unnormalized) are re-encoded
+    private byte[] toMatrixCode(EmbeddingCodec stored, byte[] embedding) {
+        if (stored == codec) {
+            return embedding;
+        }
+        float[] vector = Embeddings.codecOf(stored).decode(embedding);
+        Embeddings.normalize(vector);
+        return codec.encode(vector);
+    }
+
+    /**
+     * Re-score shortlisted rows against their full-precision vectors and return the
+     * best {@code limit}. {@code scores} is updated with the exact similarities.
+     */
+    private int[] rerank(EmbeddingMatrix matrix, int[] shortlist, float[] query, float[] scores, int limit) {
+        Map<Long, Integer> rowByChunk = new HashMap<>();
+        for (int row : shortlist) {
+            rowByChunk.put(matrix.chunkId(row), row);
+        }
+        for (DocumentChunkRepository.ChunkVectorView view : chunkRepository.findVectorsByIdIn(rowByChunk.keySet())) {
+            float[] vector = Embeddings.decode(view.getEmbeddingCodec(), view.getEmbedding(), view.getEmbeddingFull());
+            Embeddings.normalize(vector);
+            scores[rowByChunk.get(view.getId())] = Embeddings.dot(vector, query);
+        }
+
+        Integer[] ordered = Arrays.stream(shortlist).boxed().toArray(Integer[]::new);
+        Arrays.sort(ordered, (a, b) -> Float.compare(scores[b], scores[a]));
+        int[] top = new int[Math.min(limit, ordered.length)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = ordered[i];
+        }
+        return top;
+    }
+
+    private void cache(Long documentId, EmbeddingMatrix matrix) {
+        if (matrix.sizeInBytes() > cacheBudgetBytes) {
+            return;
+        }
+        synchronized (cache) {
+            EmbeddingMatrix previous = cache.put(documentId, matrix);
+            if (previous != null) {
+                cachedBytes -= previous.sizeInBytes();
+            }
+            cachedBytes += matrix.sizeInBytes();
+
+            Iterator<EmbeddingMatrix> eldest = cache.values().iterator();
+            while (cachedBytes > cacheBudgetBytes && eldest.hasNext()) {
+                EmbeddingMatrix evicted = eldest.next();
+                if (evicted == matrix) {
+                    continue;
+                }
+                cachedBytes -= evicted.sizeInBytes();
+                eldest.remove();
+            }
+        }
+    }
+
+    // Row numbers of the k highest scores, best first; a min-heap keeps the current top k
+    static int[] topK(float[] scores, int k) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1,
+                (a, b) -> Float.compare(scores[a], scores[b]));
+        for (int row = 0; row < scores.length; row++) {
+            if (heap.size() < k) {
+                heap.add(row);
+            } else if (scores[row] > scores[heap.peek()]) {
+                heap.poll();
+                heap.add(row);
+            }
+        }
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = heap.poll();
+        }
+        return top;
+    }
+}
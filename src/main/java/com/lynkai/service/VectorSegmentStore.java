@@ -0,0 +1,296 @@
+package com.lynkai.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Append-only vector storage for one user's index, on memory-mapped segment files.
+ * <p>
+ * Layout of the index directory:
+ * <ul>
+ *   <li>{@code nodes.bin} - header {magic, dimension, segmentRows}, then one {chunkId, documentId}
+ *       record per node. Its length decides how many nodes exist.</li>
+ *   <li>{@code vectors-NNNNN.seg} - normalized float32 vectors, {@code segmentRows}
+ *       per file, mapped read-write. A vector is written before its node record.</li>
+ *   <li>{@code deleted.bin} - node numbers of tombstoned nodes, appended as they are deleted.</li>
+ * </ul>
+ * Not thread-safe; {@link UserVectorIndex} serializes access.
+ */
+final class VectorSegmentStore implements Closeable {
+
+    private static final int MAGIC = 0x4C594E56;
+    private static final int HEADER_BYTES = 12;
+    private static final int NODE_BYTES = 16;
+
+    private final Path directory;
+    private final int dimension;
+    private final int segmentRows;
+    private final FileChannel nodesChannel;
+    private final FileChannel deletedChannel;
+    private final List<MappedByteBuffer> mappedSegments = new ArrayList<>();
+    private final List<FloatBuffer> segments = new ArrayList<>();
+
+    private long[] chunkIds;
+    private long[] documentIds;
+    private int size;
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    private VectorSegmentStore(Path directory, int dimension, int segmentRows,
+                               FileChannel nodesChannel, FileChannel deletedChannel) {
+        this.directory = directory;
+        this.dimension = dimension;
+        this.segmentRows = segmentRows;
+        this.nodesChannel = nodesChannel;
+        this.deletedChannel = deletedChannel;
+        this.chunkIds = new long[64];
+        this.documentIds = new long[64];
+    }
+
+    static boolean exists(Path directory) {
+        return Files.isRegularFile(directory.resolve("nodes.bin"));
+    }
+
+    static VectorSegmentStore create(Path directory, int dimension, int segmentRows) throws IOException {
+        // A single mapping is limited to 2 GB
+        segmentRows = Math.max(1, Math.min(segmentRows, Integer.MAX_VALUE / (dimension * Float.BYTES)));
+        Files.createDirectories(directory);
+        FileChannel nodes = FileChannel.open(directory.resolve("nodes.bin"),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(dimension).putInt(segmentRows).flip();
+        writeFully(nodes, header, 0);
+        FileChannel deleted = FileChannel.open(directory.resolve("deleted.bin"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new VectorSegmentStore(directory, dimension, segmentRows, nodes, deleted);
+    }
+
+    static VectorSegmentStore open(Path directory) throws IOException {
+        FileChannel nodes = FileChannel.open(directory.resolve("nodes.bin"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel deleted = null;
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(nodes, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a vector index: " + directory);
+            }
+            int dimension = header.getInt();
+            int segmentRows = header.getInt();
+
+            deleted = FileChannel.open(directory.resolve("deleted.bin"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            VectorSegmentStore store = new VectorSegmentStore(directory, dimension, segmentRows, nodes, deleted);
+            store.loadNodes();
+            store.loadDeleted();
+            // Map every existing segment now, so concurrent readers never have to
+            if (store.size > 0) {
+                store.segmentFor(store.size - 1);
+            }
+            return store;
+        } catch (IOException | RuntimeException e) {
+            nodes.close();
+            if (deleted != null) {
+                deleted.close();
+            }
+            throw e;
+        }
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int deletedCount() {
+        return deletedCount;
+    }
+
+    long chunkId(int node) {
+        return chunkIds[node];
+    }
+
+    long documentId(int node) {
+        return documentIds[node];
+    }
+
+    boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    /**
+     * Append a normalized vector and return its node number.
+     */
+    int append(long chunkId, long documentId, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector has dimension " + vector.length + ", index has " + dimension);
+        }
+        int node = size;
+        FloatBuffer segment = segmentFor(node);
+        segment.put(rowOffset(node), vector);
+
+        ByteBuffer record = ByteBuffer.allocate(NODE_BYTES).putLong(chunkId).putLong(documentId).flip();
+        writeFully(nodesChannel, record, HEADER_BYTES + (long) node * NODE_BYTES);
+
+        if (node == chunkIds.length) {
+            chunkIds = Arrays.copyOf(chunkIds, node * 2);
+            documentIds = Arrays.copyOf(documentIds, node * 2);
+        }
+        chunkIds[node] = chunkId;
+        documentIds[node] = documentId;
+        size++;
+        return node;
+    }
+
+    void markDeleted(int node) throws IOException {
+        if (deleted.get(node)) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES).putInt(node).flip();
+        writeFully(deletedChannel, record, deletedChannel.size());
+        deleted.set(node);
+        deletedCount++;
+    }
+
+    float dot(SimilarityKernel kernel, int node, float[] query) {
+        return kernel.dot(segmentFor(node), rowOffset(node), query, dimension);
+    }
+
+    float[] vector(int node) {
+        float[] vector = new float[dimension];
+        segmentFor(node).get(rowOffset(node), vector);
+        return vector;
+    }
+
+    /**
+     * Flush mapped vectors and node records to disk.
+     */
+    void force() throws IOException {
+        for (MappedByteBuffer segment : mappedSegments) {
+            segment.force();
+        }
+        nodesChannel.force(false);
+        deletedChannel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            nodesChannel.close();
+            deletedChannel.close();
+            mappedSegments.clear();
+            segments.clear();
+        }
+    }
+
+    private int rowOffset(int node) {
+        return (node % segmentRows) * dimension;
+    }
+
+    // Only appends map new segments, and those run under the index's write lock
+    private FloatBuffer segmentFor(int node) {
+        int index = node / segmentRows;
+        while (segments.size() <= index) {
+            mapSegment(segments.size());
+        }
+        return segments.get(index);
+    }
+
+    private void mapSegment(int index) {
+        Path file = directory.resolve(String.format("vectors-%05d.seg", index));
+        long bytes = (long) segmentRows * dimension * Float.BYTES;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping outlives the channel; the file is sized once, sparse where unused
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            mapped.order(ByteOrder.nativeOrder());
+            mappedSegments.add(mapped);
+            segments.add(mapped.asFloatBuffer());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map vector segment " + file, e);
+        }
+    }
+
+    private void loadNodes() throws IOException {
+        // A torn trailing record from a crash is ignored and overwritten by the next append
+        long records = (nodesChannel.size() - HEADER_BYTES) / NODE_BYTES;
+        if (records > Integer.MAX_VALUE) {
+            throw new IOException("Too many nodes in " + directory);
+        }
+        int count = (int) records;
+        chunkIds = new long[Math.max(64, count)];
+        documentIds = new long[Math.max(64, count)];
+
+        ByteBuffer buffer = ByteBuffer.allocate(NODE_BYTES * 4096);
+        long position = HEADER_BYTES;
+        int node = 0;
+        while (node < count) {
+            buffer.clear();
+            buffer.limit(Math.min(buffer.capacity(), (count - node) * NODE_BYTES));
+            readFully(nodesChannel, buffer, position);
+            position += buffer.limit();
+            buffer.flip();
+            while (buffer.remaining() >= NODE_BYTES) {
+                chunkIds[node] = buffer.getLong();
+                documentIds[node] = buffer.getLong();
+                node++;
+            }
+        }
+        size = count;
+    }
+
+    private void loadDeleted() throws IOException {
+        long records = deletedChannel.size() / Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(records * Integer.BYTES, 64 * 1024));
+        long position = 0;
+        long remaining = records;
+        while (remaining > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), remaining * Integer.BYTES));
+            readFully(deletedChannel, buffer, position);
+            position += buffer.limit();
+            remaining -= buffer.limit() / Integer.BYTES;
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                int node = buffer.getInt();
+                if (node >= 0 && node < size && !deleted.get(node)) {
+                    deleted.set(node);
+                    deletedCount++;
+                }
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of index file");
+            }
+            position += read;
+        }
+    }
+}
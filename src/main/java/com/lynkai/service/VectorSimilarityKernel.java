@@ -0,0 +1,77 @@
+package com.lynkai.service;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.FloatBuffer;
+
+/**
+ * SIMD kernel on {@code jdk.incubator.vector}, at the widest lane count the CPU offers.
+ * <p>
+ * On Java 21 the Vector API only loads off-heap data through the preview
+ * {@code MemorySegment} API, so rows are copied block by block into a small
+ * per-thread array and the lanes are fed from there. A block stays in L1/L2,
+ * so the copy costs far less than the multiply-adds that follow.
+ * Only instantiated reflectively, after checking the module is in the boot layer.
+ */
+final class VectorSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // 64 KB of floats per block
+    private static final int BLOCK_FLOATS = 16 * 1024;
+
+    private final ThreadLocal<float[]> scratch = ThreadLocal.withInitial(() -> new float[BLOCK_FLOATS]);
+
+    @Override
+    public void dotAll(FloatBuffer matrix, int rows, int dimension, float[] query, float[] scores) {
+        float[] block = scratch(dimension);
+        int rowsPerBlock = block.length / dimension;
+
+        for (int first = 0; first < rows; first += rowsPerBlock) {
+            int count = Math.min(rowsPerBlock, rows - first);
+            matrix.get(first * dimension, block, 0, count * dimension);
+            for (int row = 0; row < count; row++) {
+                scores[first + row] = dot(block, row * dimension, query, dimension);
+            }
+        }
+    }
+
+    @Override
+    public float dot(FloatBuffer matrix, int offset, float[] query, int dimension) {
+        float[] row = scratch(dimension);
+        matrix.get(offset, row, 0, dimension);
+        return dot(row, 0, query, dimension);
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + SPECIES.vectorBitSize();
+    }
+
+    private float[] scratch(int dimension) {
+        float[] block = scratch.get();
+        if (block.length < dimension) {
+            block = new float[dimension];
+            scratch.set(block);
+        }
+        return block;
+    }
+
+    private static float dot(float[] rows, int offset, float[] query, int dimension) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(dimension);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector a = FloatVector.fromArray(SPECIES, rows, offset + i);
+            FloatVector b = FloatVector.fromArray(SPECIES, query, i);
+            acc = a.fma(b, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < dimension; i++) {
+            sum += rows[offset + i] * query[i];
+        }
+        return sum;
+    }
+}
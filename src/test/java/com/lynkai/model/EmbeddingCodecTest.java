@@ -0,0 +1,116 @@
+package com.lynkai.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Each codec must stay within its stated error: float32 exact, int8 within half a
+ * quantization step, binary exact on signs and unit length.
+ */
+class EmbeddingCodecTest {
+
+    private static final int DIMENSION = 768;
+
+    private final SplittableRandom random = new SplittableRandom(11);
+
+    @Test
+    void codesHaveTheStatedLength() {
+        float[] vector = unitVector(DIMENSION);
+        for (EmbeddingCodec codec : EmbeddingCodec.values()) {
+            byte[] code = codec.encode(vector);
+            assertEquals(codec.codeLength(DIMENSION), code.length, codec.name());
+            assertEquals(DIMENSION, codec.dimensionOf(code), codec.name());
+        }
+        assertEquals(4 + 8 * 12, EmbeddingCodec.BINARY.codeLength(DIMENSION));
+        assertEquals(4 + 8, EmbeddingCodec.BINARY.codeLength(3));
+    }
+
+    @Test
+    void float32IsExact() {
+        float[] vector = unitVector(DIMENSION);
+
+        assertArrayEquals(vector, EmbeddingCodec.FLOAT32.decode(EmbeddingCodec.FLOAT32.encode(vector)));
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingCodec.FLOAT32.dimensionOf(new byte[6]));
+    }
+
+    @Test
+    void int8StaysWithinHalfAStep() {
+        for (int trial = 0; trial < 20; trial++) {
+            float[] vector = unitVector(DIMENSION);
+            float max = 0f;
+            for (float v : vector) {
+                max = Math.max(max, Math.abs(v));
+            }
+            float halfStep = max / 127f / 2f;
+
+            float[] decoded = EmbeddingCodec.INT8.decode(EmbeddingCodec.INT8.encode(vector));
+
+            for (int i = 0; i < DIMENSION; i++) {
+                assertEquals(vector[i], decoded[i], halfStep * 1.0001f);
+            }
+            // Close enough that a similarity moves by less than a hundredth
+            assertEquals(1.0, dot(vector, decoded), 0.01);
+        }
+    }
+
+    @Test
+    void int8KeepsTheZeroVector() {
+        float[] zero = new float[16];
+
+        assertArrayEquals(zero, EmbeddingCodec.INT8.decode(EmbeddingCodec.INT8.encode(zero)));
+    }
+
+    @Test
+    void binaryKeepsSignsAndUnitLength() {
+        // 70 components, so the second word is only partly used
+        float[] vector = unitVector(70);
+
+        float[] decoded = EmbeddingCodec.BINARY.decode(EmbeddingCodec.BINARY.encode(vector));
+
+        assertEquals(70, decoded.length);
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals(vector[i] > 0, decoded[i] > 0, "component " + i);
+        }
+        assertEquals(1.0, dot(decoded, decoded), 1e-5);
+        // The sign bits alone still point the same way as the original
+        assertTrue(dot(vector, decoded) > 0.5);
+    }
+
+    @Test
+    void signBitsPackLowBitFirst() {
+        float[] vector = new float[65];
+        vector[0] = 1f;
+        vector[63] = 0.5f;
+        vector[64] = 2f;
+        vector[1] = -1f;
+
+        assertArrayEquals(new long[]{1L | 1L << 63, 1L}, EmbeddingCodec.signBits(vector));
+    }
+
+    private float[] unitVector(int dimension) {
+        float[] vector = new float[dimension];
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < dimension; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,143 @@
+package com.lynkai.service;
+
+import com.lynkai.dto.ConversationDTO;
+import com.lynkai.dto.SendMessageRequest;
+import com.lynkai.model.Conversation;
+import com.lynkai.model.Document;
+import com.lynkai.model.Message;
+import com.lynkai.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Listing conversations must cost the same number of statements however many conversations there are,
+ * reading the message stats kept on each conversation.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ConversationService.class, ConversationContextCache.class, MessageSearchService.class})
+class ConversationServiceQueryCountTest {
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void listingIssuesConstantNumberOfStatements() {
+        User few = createUser("few");
+        User many = createUser("many");
+        createConversations(few, 2, 3);
+        createConversations(many, 40, 3);
+        entityManager.flush();
+        entityManager.clear();
+
+        long fewStatements = countStatements(few.getId(), 2);
+        long manyStatements = countStatements(many.getId(), 40);
+
+        assertEquals(1, fewStatements);
+        assertEquals(fewStatements, manyStatements);
+    }
+
+    @Test
+    void listingReadsStoredMessageStats() {
+        User user = createUser("stats");
+        createConversations(user, 1, 5);
+        entityManager.flush();
+        entityManager.clear();
+
+        ConversationDTO conversation = conversationService.getUserConversations(user.getId()).get(0);
+
+        assertEquals(5, conversation.getMessageCount());
+        assertEquals("Message 4", conversation.getLastMessagePreview());
+        assertNotNull(conversation.getLastMessageAt());
+        assertEquals("Document 0", conversation.getDocumentTitle());
+        assertEquals(user.getId(), conversation.getUserId());
+    }
+
+    @Test
+    void repairReconcilesDriftedStats() {
+        User user = createUser("drift");
+        Document document = createDocument(user, 0);
+        Conversation conversation = Conversation.builder().user(user).document(document).build();
+        entityManager.persist(conversation);
+        // Written behind the service's back, so the stored stats still say "no messages"
+        for (int j = 0; j < 3; j++) {
+            entityManager.persist(Message.builder()
+                    .sender("user")
+                    .content("Direct " + j)
+                    .conversation(conversation)
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(1, conversationService.repairStats());
+        entityManager.clear();
+
+        ConversationDTO repaired = conversationService.getUserConversations(user.getId()).get(0);
+        assertEquals(3, repaired.getMessageCount());
+        assertNotNull(repaired.getLastMessageAt());
+        assertNotNull(repaired.getLastMessagePreview());
+        assertEquals(0, conversationService.repairStats());
+    }
+
+    private long countStatements(Long userId, int expectedConversations) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<ConversationDTO> conversations = conversationService.getUserConversations(userId);
+
+        assertEquals(expectedConversations, conversations.size());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User createUser(String name) {
+        User user = User.builder()
+                .username(name)
+                .email(name + "@example.com")
+                .passwordHash("hash")
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Document createDocument(User user, int index) {
+        Document document = Document.builder()
+                .title("Document " + index)
+                .filePath("uploads/" + user.getUsername() + "-" + index + ".pdf")
+                .user(user)
+                .build();
+        entityManager.persist(document);
+        return document;
+    }
+
+    private void createConversations(User user, int conversations, int messagesEach) {
+        for (int i = 0; i < conversations; i++) {
+            Conversation conversation = Conversation.builder()
+                    .user(user)
+                    .document(createDocument(user, i))
+                    .build();
+            entityManager.persist(conversation);
+
+            for (int j = 0; j < messagesEach; j++) {
+                conversationService.addMessage(new SendMessageRequest(
+                        conversation.getId(), j % 2 == 0 ? "user" : "ai", "Message " + j), user.getId());
+            }
+        }
+    }
+}
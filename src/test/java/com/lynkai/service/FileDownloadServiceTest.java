@@ -0,0 +1,143 @@
+package com.lynkai.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Range handling follows RFC 9110: malformed ranges are ignored, and 416 is only for
+ * range sets of which nothing can be served.
+ */
+class FileDownloadServiceTest {
+
+    private static final String CONTENT = "0123456789";
+    private static final String HASH = "abc123";
+
+    private final FileDownloadService service = new FileDownloadService();
+
+    @TempDir
+    Path dir;
+
+    private FileDownloadService.DownloadTarget target;
+
+    @BeforeEach
+    void writeFile() throws IOException {
+        Path file = dir.resolve("file.txt");
+        Files.writeString(file, CONTENT, StandardCharsets.US_ASCII);
+        target = new FileDownloadService.DownloadTarget(file, HASH, "text/plain", "file.txt");
+    }
+
+    @Test
+    void sendsWholeFileWithoutRange() throws IOException {
+        MockHttpServletResponse response = send(null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+        assertEquals("\"" + HASH + "\"", response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void sendsSingleRange() throws IOException {
+        MockHttpServletResponse response = send("bytes=2-4");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-4/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("234", response.getContentAsString());
+    }
+
+    @Test
+    void sendsSuffixRange() throws IOException {
+        MockHttpServletResponse response = send("bytes=-3");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("789", response.getContentAsString());
+    }
+
+    @Test
+    void ignoresMalformedRange() throws IOException {
+        for (String header : new String[]{"bytes=abc", "bytes=5-2", "items=0-1", "bytes"}) {
+            MockHttpServletResponse response = send(header);
+
+            assertEquals(200, response.getStatus(), header);
+            assertEquals(CONTENT, response.getContentAsString(), header);
+        }
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws IOException {
+        MockHttpServletResponse response = send("bytes=10-20");
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void dropsUnsatisfiableRangesWhenOthersCanBeServed() throws IOException {
+        MockHttpServletResponse response = send("bytes=0-1,50-60");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-1/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("01", response.getContentAsString());
+    }
+
+    @Test
+    void sendsMultipleRangesAsMultipart() throws IOException {
+        MockHttpServletResponse response = send("bytes=0-1,8-9");
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges"));
+        String body = response.getContentAsString();
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+        assertEquals(body.getBytes(StandardCharsets.US_ASCII).length, response.getContentLengthLong());
+    }
+
+    @Test
+    void ignoresRangeWhenIfRangeDoesNotMatch() throws IOException {
+        MockHttpServletRequest request = request("bytes=0-1");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.send(target, request, response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void answersNotModifiedForMatchingEtag() throws IOException {
+        MockHttpServletRequest request = request(null);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + HASH + "\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.send(target, request, response);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    private MockHttpServletResponse send(String range) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.send(target, request(range), response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/documents/download/1");
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,151 @@
+package com.lynkai.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * On a small graph with a wide beam the search is exact, so every stored vector must
+ * find itself first, before and after a snapshot round trip.
+ */
+class HnswGraphTest {
+
+    private static final int DIMENSION = 16;
+    private static final int NODES = 300;
+
+    private final SimilarityKernel kernel = new ScalarSimilarityKernel();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsEachStoredVectorFirst() throws IOException {
+        try (VectorSegmentStore store = filledStore(dir.resolve("store"), NODES)) {
+            HnswGraph graph = linkAll(store);
+
+            for (int node = 0; node < NODES; node += 7) {
+                assertEquals(node, HnswGraph.nodeOf(graph.search(store.vector(node), 1, 100)[0]));
+            }
+        }
+    }
+
+    @Test
+    void neverReturnsTombstonedNodes() throws IOException {
+        try (VectorSegmentStore store = filledStore(dir.resolve("store"), NODES)) {
+            HnswGraph graph = linkAll(store);
+            store.markDeleted(42);
+
+            for (long hit : graph.search(store.vector(42), 10, 100)) {
+                assertFalse(HnswGraph.nodeOf(hit) == 42);
+            }
+        }
+    }
+
+    @Test
+    void snapshotRoundTripGivesTheSameResults() throws IOException {
+        Path directory = dir.resolve("store");
+        Path snapshot = directory.resolve("graph.bin");
+        long[] before;
+        try (VectorSegmentStore store = filledStore(directory, NODES)) {
+            HnswGraph graph = linkAll(store);
+            graph.writeSnapshot(snapshot);
+            before = graph.search(store.vector(10), 5, 50);
+        }
+
+        try (VectorSegmentStore store = VectorSegmentStore.open(directory)) {
+            HnswGraph loaded = new HnswGraph(store, kernel, 8, 100);
+            assertTrue(loaded.readSnapshot(snapshot));
+            assertEquals(NODES, loaded.size());
+            assertArrayEquals(before, loaded.search(store.vector(10), 5, 50));
+
+            // A snapshot built with another M is not used
+            assertFalse(new HnswGraph(store, kernel, 12, 100).readSnapshot(snapshot));
+        }
+    }
+
+    @Test
+    void indexReplaysNodesAppendedAfterTheSnapshot() throws IOException {
+        Path directory = dir.resolve("index");
+        try (VectorSegmentStore store = filledStore(directory, NODES)) {
+            linkAll(store).writeSnapshot(directory.resolve("graph.bin"));
+            // Appended after the snapshot, then the process dies
+            SplittableRandom random = new SplittableRandom(7);
+            for (int i = 0; i < 50; i++) {
+                store.append(NODES + i, 2, randomVector(random));
+            }
+        }
+
+        try (UserVectorIndex index = UserVectorIndex.open(directory, kernel, 8, 100, 64)) {
+            assertEquals(NODES + 50, index.size());
+            assertTrue(index.isDirty());
+            try (VectorSegmentStore store = VectorSegmentStore.open(directory)) {
+                for (int node = NODES; node < NODES + 50; node += 5) {
+                    assertEquals(node, index.search(store.vector(node), 1, 100).get(0).chunkId());
+                }
+            }
+        }
+    }
+
+    @Test
+    void compactionKeepsLiveNodesAndDropsDeletedOnes() throws IOException {
+        Path directory = dir.resolve("index");
+        SplittableRandom random = new SplittableRandom(3);
+        float[][] vectors = new float[NODES][];
+        try (UserVectorIndex index = UserVectorIndex.open(directory, kernel, 8, 100, 64)) {
+            for (int i = 0; i < NODES; i++) {
+                vectors[i] = randomVector(random);
+                index.upsert(i, i % 3, vectors[i]);
+            }
+            assertEquals(NODES / 3, index.removeDocument(0));
+            assertTrue(index.tombstoneRatio() > 0.3);
+
+            index.compact();
+
+            assertEquals(0.0, index.tombstoneRatio());
+            assertEquals(NODES - NODES / 3, index.size());
+            for (int i = 1; i < NODES; i += 3) {
+                assertEquals(i, index.search(vectors[i], 1, 100).get(0).chunkId());
+            }
+        }
+
+        try (UserVectorIndex index = UserVectorIndex.open(directory, kernel, 8, 100, 64)) {
+            assertEquals(NODES - NODES / 3, index.size());
+            assertFalse(index.isDirty());
+            index.search(vectors[0], 10, 100).forEach(hit -> assertFalse(hit.documentId() == 0));
+        }
+    }
+
+    private HnswGraph linkAll(VectorSegmentStore store) {
+        HnswGraph graph = new HnswGraph(store, kernel, 8, 100);
+        for (int node = 0; node < store.size(); node++) {
+            graph.insert(node);
+        }
+        return graph;
+    }
+
+    private static VectorSegmentStore filledStore(Path directory, int nodes) throws IOException {
+        VectorSegmentStore store = VectorSegmentStore.create(directory, DIMENSION, 64);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < nodes; i++) {
+            store.append(i, 1, randomVector(random));
+        }
+        return store;
+    }
+
+    private static float[] randomVector(SplittableRandom random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        Embeddings.normalize(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,126 @@
+package com.lynkai.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Postings are varint-encoded deltas, so the interesting cases are gaps and frequencies
+ * past one byte. A compacted or reloaded index must rank exactly like one built from
+ * its live messages alone.
+ */
+class MessageSearchIndexTest {
+
+    private static final int MESSAGES = 400;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tokenizesLowerCasedRunsOfLettersAndDigits() {
+        assertEquals(List.of("hello", "wörld", "42", "file"), MessageSearchIndex.tokenize("Hello, WÖRLD! 42 ﬁle"));
+        assertTrue(MessageSearchIndex.tokenize(" ... ").isEmpty());
+        assertEquals(64, MessageSearchIndex.tokenize("x".repeat(100)).get(0).length());
+    }
+
+    @Test
+    void compactedIndexRanksLikeOneBuiltFromLiveMessages() {
+        MessageSearchIndex index = new MessageSearchIndex();
+        MessageSearchIndex expected = new MessageSearchIndex();
+        for (int i = 0; i < MESSAGES; i++) {
+            index.add(id(i), conversation(i), content(i));
+            if (conversation(i) != 1) {
+                expected.add(id(i), conversation(i), content(i));
+            }
+        }
+
+        index.removeConversations(List.of(1L));
+        assertTrue(index.tombstoneRatio() > 0);
+        index.compact();
+
+        assertEquals(0, index.tombstoneRatio());
+        assertEquals(expected.size(), index.size());
+        assertSameHits(expected, index);
+    }
+
+    @Test
+    void snapshotRoundTripKeepsPostingsTombstonesAndWatermark() throws IOException {
+        MessageSearchIndex index = new MessageSearchIndex();
+        for (int i = 0; i < MESSAGES; i++) {
+            index.add(id(i), conversation(i), content(i));
+        }
+        index.removeConversations(List.of(2L));
+        Path snapshot = dir.resolve("user-1").resolve("messages.idx");
+
+        index.snapshot(snapshot);
+        MessageSearchIndex reloaded = MessageSearchIndex.open(snapshot);
+
+        assertFalse(index.isDirty());
+        assertEquals(index.watermark(), reloaded.watermark());
+        assertEquals(index.size(), reloaded.size());
+        assertEquals(index.tombstoneRatio(), reloaded.tombstoneRatio());
+        assertSameHits(index, reloaded);
+
+        // Compacting after the reload gives the same postings as compacting before it
+        index.compact();
+        reloaded.compact();
+        assertSameHits(index, reloaded);
+    }
+
+    @Test
+    void addingAnIndexedMessageAgainDoesNothing() {
+        MessageSearchIndex index = new MessageSearchIndex();
+        index.add(1, 1, "repeat repeat");
+        index.add(1, 1, "repeat repeat");
+
+        assertEquals(1, index.size());
+        assertEquals(1, index.search("repeat", 10).size());
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSnapshots() throws IOException {
+        Path snapshot = dir.resolve("messages.idx");
+        Files.writeString(snapshot, "not an index at all");
+
+        assertThrows(IOException.class, () -> MessageSearchIndex.open(snapshot));
+    }
+
+    private static void assertSameHits(MessageSearchIndex expected, MessageSearchIndex actual) {
+        for (String query : new String[]{"common", "rare", "heavy", "gap", "term7 common", "absent"}) {
+            assertEquals(expected.search(query, MESSAGES), actual.search(query, MESSAGES), query);
+        }
+    }
+
+    // Gaps between ids do not matter to postings, which count in document numbers
+    private static long id(int i) {
+        return 1000L + 3L * i;
+    }
+
+    private static long conversation(int i) {
+        return i % 5;
+    }
+
+    // "rare" and "gap" leave document deltas over 127; "heavy" has frequencies over 127
+    private static String content(int i) {
+        StringBuilder text = new StringBuilder("common term").append(i % 11);
+        if (i % 150 == 0) {
+            text.append(" rare");
+        }
+        if (i == 0 || i == MESSAGES - 1) {
+            text.append(" gap");
+        }
+        if (i % 50 == 3) {
+            text.append(" heavy".repeat(130 + i % 7));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,135 @@
+package com.lynkai.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The page-tree fast path must agree with PDFBox, and anything it cannot read must fall back to it.
+ * A counter with a one-byte allocation budget fails whenever PDFBox is used, so it only passes on the fast path.
+ */
+class PdfPageCounterTest {
+
+    private static final long NO_PDFBOX = 1;
+    private static final long ENOUGH = 64L * 1024 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void countsPdfBoxOutputFromPageTree() throws IOException {
+        Path file = writeBlankPdf(7);
+
+        assertEquals(7, new PdfPageCounter(NO_PDFBOX).countPages(file));
+    }
+
+    @Test
+    void followsPrevFromLinearizedFirstPageSection() throws IOException {
+        // The last startxref points at the first-page table, which only knows the hint object
+        String head = "%PDF-1.4\n";
+        String hint = "6 0 obj\n<< /Linearized 1 /N 3 >>\nendobj\n";
+        String firstPage = "xref\n6 1\n" + entry(head.length()) + "trailer\n<< /Size 7 /Root 1 0 R /Prev %s >>\n";
+        String[] objects = {
+                "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n",
+                "2 0 obj\n<< /Type /Pages /Kids [3 0 R 4 0 R 5 0 R] /Count 3 >>\nendobj\n",
+                "3 0 obj\n<< /Type /Page /Parent 2 0 R >>\nendobj\n",
+                "4 0 obj\n<< /Type /Page /Parent 2 0 R >>\nendobj\n",
+                "5 0 obj\n<< /Type /Page /Parent 2 0 R >>\nendobj\n",
+        };
+
+        int firstPageOffset = head.length() + hint.length();
+        // /Prev is zero-padded so its width is known before the main table's offset is
+        int offset = firstPageOffset + String.format(firstPage, pad(0)).length();
+        StringBuilder main = new StringBuilder("xref\n0 6\n0000000000 65535 f\r\n");
+        StringBuilder body = new StringBuilder();
+        for (String object : objects) {
+            main.append(entry(offset + body.length()));
+            body.append(object);
+        }
+        int mainOffset = offset + body.length();
+        main.append("trailer\n<< /Size 6 >>\n");
+
+        Path file = write(head + hint + String.format(firstPage, pad(mainOffset)) + body + main
+                + "startxref\n" + firstPageOffset + "\n%%EOF\n");
+
+        assertEquals(3, new PdfPageCounter(NO_PDFBOX).countPages(file));
+    }
+
+    @Test
+    void newestSectionWinsAfterIncrementalUpdate() throws IOException {
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        int catalog = pdf.length();
+        pdf.append("1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+        int pages = pdf.length();
+        pdf.append("2 0 obj\n<< /Type /Pages /Kids [] /Count 2 >>\nendobj\n");
+        int original = pdf.length();
+        pdf.append("xref\n0 3\n0000000000 65535 f\r\n").append(entry(catalog)).append(entry(pages))
+                .append("trailer\n<< /Size 3 /Root 1 0 R >>\n");
+
+        int updatedPages = pdf.length();
+        pdf.append("2 0 obj\n<< /Type /Pages /Kids [] /Count 5 >>\nendobj\n");
+        int update = pdf.length();
+        pdf.append("xref\n2 1\n").append(entry(updatedPages))
+                .append("trailer\n<< /Size 3 /Root 1 0 R /Prev ").append(original).append(" >>\n")
+                .append("startxref\n").append(update).append("\n%%EOF\n");
+
+        assertEquals(5, new PdfPageCounter(NO_PDFBOX).countPages(write(pdf.toString())));
+    }
+
+    @Test
+    void damagedStartxrefFallsBackToPdfBox() throws IOException {
+        byte[] bytes = Files.readAllBytes(writeBlankPdf(4));
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        int startxref = text.lastIndexOf("startxref\n") + "startxref\n".length();
+        int end = text.indexOf('\n', startxref);
+        // Still inside the file, but not at an xref table
+        String damaged = text.substring(0, startxref) + "9" + text.substring(end);
+        Path file = dir.resolve("damaged.pdf");
+        Files.write(file, damaged.getBytes(StandardCharsets.ISO_8859_1));
+
+        assertThrows(IOException.class, () -> new PdfPageCounter(NO_PDFBOX).countPages(file));
+        assertEquals(4, new PdfPageCounter(ENOUGH).countPages(file));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotPdf() throws IOException {
+        Path file = write("This is not a PDF at all.\nstartxref\n5\n%%EOF\n");
+
+        assertThrows(IOException.class, () -> new PdfPageCounter(ENOUGH).countPages(file));
+    }
+
+    private Path writeBlankPdf(int pages) throws IOException {
+        Path file = Files.createTempFile(dir, "blank-", ".pdf");
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                document.addPage(new PDPage());
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = Files.createTempFile(dir, "handmade-", ".pdf");
+        Files.writeString(file, content, StandardCharsets.US_ASCII);
+        return file;
+    }
+
+    // A 20-byte in-use xref entry
+    private static String entry(int offset) {
+        return String.format("%010d 00000 n\r\n", offset);
+    }
+
+    private static String pad(int value) {
+        return String.format("%010d", value);
+    }
+}
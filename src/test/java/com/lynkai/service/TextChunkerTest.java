@@ -0,0 +1,87 @@
+package com.lynkai.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextChunkerTest {
+
+    @Test
+    void rejectsChunkSizesItCannotSplitWith() {
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(100, 100));
+    }
+
+    @Test
+    void smallestChunkSizeSplitsLongSentences() {
+        List<String> chunks = chunk(new TextChunker(2, 0), "abcdefghij");
+
+        assertEquals(List.of("ab", "cd", "ef", "gh", "ij"), chunks);
+    }
+
+    @Test
+    void ignoresBlankText() {
+        assertTrue(chunk(new TextChunker(100, 10), " \n\t ").isEmpty());
+        assertTrue(chunk(new TextChunker(100, 10), null).isEmpty());
+    }
+
+    @Test
+    void packsSentencesAndRepeatsTrailingOnesAsOverlap() {
+        String text = "First sentence here. Second sentence here. Third sentence here. Fourth sentence here.";
+
+        List<String> chunks = chunk(new TextChunker(50, 25), text);
+
+        assertEquals(List.of(
+                "First sentence here. Second sentence here.",
+                "Second sentence here. Third sentence here.",
+                "Third sentence here. Fourth sentence here."), chunks);
+    }
+
+    @Test
+    void cutsLongSentencesAtAnyWhitespace() {
+        // No spaces at all: the only break opportunities are newlines and tabs
+        String text = "alpha\tbravo\ncharlie\tdelta\necho\tfoxtrot\ngolf\thotel";
+
+        List<String> chunks = chunk(new TextChunker(16, 0), text);
+
+        assertEquals(List.of("alpha\tbravo", "charlie\tdelta", "echo\tfoxtrot", "golf\thotel"), chunks);
+    }
+
+    @Test
+    void chunksNeverExceedTheChunkSize() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("Sentence number ").append(i).append(i % 7 == 0 ? " runs on and on without a stop" : ".")
+                    .append(i % 3 == 0 ? "\n" : " ");
+        }
+
+        List<String> chunks = chunk(new TextChunker(120, 40), text.toString());
+
+        assertTrue(chunks.size() > 1);
+        chunks.forEach(chunk -> assertTrue(chunk.length() <= 120, chunk));
+        assertTrue(chunks.get(0).startsWith("Sentence number 0"));
+        assertTrue(chunks.get(chunks.size() - 1).endsWith("Sentence number 199."));
+    }
+
+    @Test
+    void keepsSurrogatePairsTogetherWhenCuttingHard() {
+        String text = "a😀b😀c";
+
+        List<String> chunks = chunk(new TextChunker(2, 0), text);
+
+        assertEquals(text, String.join("", chunks));
+        chunks.forEach(chunk -> assertTrue(!Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)), chunk));
+    }
+
+    private static List<String> chunk(TextChunker chunker, String text) {
+        List<String> chunks = new ArrayList<>();
+        chunker.chunk(text, chunks::add);
+        return chunks;
+    }
+}
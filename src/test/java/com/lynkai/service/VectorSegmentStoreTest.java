@@ -0,0 +1,80 @@
+package com.lynkai.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The store is the durable half of a vector index: whatever was appended or tombstoned must
+ * read back the same after reopening, and a record torn by a crash must not be read at all.
+ */
+class VectorSegmentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackNodesAndTombstonesAfterReopening() throws IOException {
+        Path directory = dir.resolve("store");
+        try (VectorSegmentStore store = VectorSegmentStore.create(directory, 3, 2)) {
+            // Two rows per segment, so five nodes span three segments
+            for (int node = 0; node < 5; node++) {
+                assertEquals(node, store.append(100 + node, 7, vector(node)));
+            }
+            store.markDeleted(1);
+            store.markDeleted(3);
+        }
+
+        try (VectorSegmentStore store = VectorSegmentStore.open(directory)) {
+            assertEquals(3, store.dimension());
+            assertEquals(5, store.size());
+            assertEquals(2, store.deletedCount());
+            for (int node = 0; node < 5; node++) {
+                assertEquals(100 + node, store.chunkId(node));
+                assertEquals(7, store.documentId(node));
+                assertArrayEquals(vector(node), store.vector(node));
+            }
+            assertTrue(store.isDeleted(1));
+            assertTrue(store.isDeleted(3));
+            assertFalse(store.isDeleted(4));
+        }
+    }
+
+    @Test
+    void ignoresTornTrailingNodeRecord() throws IOException {
+        Path directory = dir.resolve("store");
+        try (VectorSegmentStore store = VectorSegmentStore.create(directory, 3, 16)) {
+            store.append(1, 1, vector(0));
+            store.append(2, 1, vector(1));
+        }
+        // A crash in the middle of the third record's write
+        try (FileChannel nodes = FileChannel.open(directory.resolve("nodes.bin"), StandardOpenOption.WRITE)) {
+            nodes.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 0, 0, 0, 0}), nodes.size());
+        }
+
+        try (VectorSegmentStore store = VectorSegmentStore.open(directory)) {
+            assertEquals(2, store.size());
+            // The next append takes the torn record's place
+            assertEquals(2, store.append(3, 1, vector(2)));
+        }
+        try (VectorSegmentStore store = VectorSegmentStore.open(directory)) {
+            assertEquals(3, store.size());
+            assertEquals(3, store.chunkId(2));
+            assertArrayEquals(vector(2), store.vector(2));
+        }
+    }
+
+    private static float[] vector(int seed) {
+        return new float[]{seed, seed + 0.5f, -seed};
+    }
+}